@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+//-------------------------------------------------------------------------
+/**
+ * Measures how a play request finds its sound. {@code findByName} is the
+ * sound bank's own name lookup, which every call that takes a sound's name
+ * makes; {@code findByFreshName} looks up a name that was built just before
+ * the call, so its hash code is not cached yet. {@code playByName} and
+ * {@code playByHandle} then play (and stop) a loaded sound through a
+ * {@link SoundPlayer} by name and by {@link SoundHandle}, to show what the
+ * lookup costs as part of a whole play.
+ *
+ * @author Tony Allevato
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LookupBenchmark
+{
+	//~ Fields ................................................................
+
+	@Param({ "16", "256" })
+	public int soundCount;
+
+	private SimulatedSoundEnvironment environment;
+	private SoundPlayer player;
+	private SoundBank bank;
+	private String[] names;
+	private SoundHandle[] sounds;
+	private int next;
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	@Setup
+	public void setUp() throws Exception
+	{
+		names = new String[soundCount];
+		sounds = new SoundHandle[soundCount];
+
+		for (int i = 0; i < soundCount; i++)
+		{
+			names[i] = "sound_" + i;
+		}
+
+		environment = SimulatedPlayers.environment(names);
+		player = SimulatedPlayers.create(environment, SoundBank.MAX_STREAMS);
+
+		// Shares the player's bank, which stays alive until both let go.
+		bank = SoundBank.acquire(environment);
+
+		for (int i = 0; i < soundCount; i++)
+		{
+			sounds[i] = SimulatedPlayers.load(player, names[i]);
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	@TearDown
+	public void tearDown()
+	{
+		player.release();
+		bank.release();
+	}
+
+
+	// ----------------------------------------------------------
+	@Benchmark
+	public SoundHandle findByName()
+	{
+		return bank.handleFor(names[nextIndex()]);
+	}
+
+
+	// ----------------------------------------------------------
+	@Benchmark
+	public SoundHandle findByFreshName()
+	{
+		return bank.handleFor(new String(names[nextIndex()]));
+	}
+
+
+	// ----------------------------------------------------------
+	@Benchmark
+	public int playByName()
+	{
+		int index = nextIndex();
+		Playback playback = player.play(names[index]);
+		player.stop(names[index]);
+		return playback.getStreamId();
+	}
+
+
+	// ----------------------------------------------------------
+	@Benchmark
+	public int playByHandle()
+	{
+		int index = nextIndex();
+		int streamId = player.play(sounds[index]);
+		player.stop(sounds[index]);
+		return streamId;
+	}
+
+
+	// ----------------------------------------------------------
+	private int nextIndex()
+	{
+		next = (next + 1) % soundCount;
+		return next;
+	}
+}
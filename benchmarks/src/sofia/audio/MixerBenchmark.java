@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+//-------------------------------------------------------------------------
+/**
+ * Measures how long the {@link Mixer} takes to mix one 256-frame block with
+ * a given number of looping voices, for mono and stereo sounds that need
+ * resampling (22.05 kHz into 44.1 kHz). Dividing the voice count by the
+ * time per block gives the voices per millisecond that a device can
+ * sustain; a block lasts about 5.8 ms of audio.
+ *
+ * @author Tony Allevato
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MixerBenchmark
+{
+	//~ Fields ................................................................
+
+	private static final int OUTPUT_RATE = 44100;
+	private static final int BLOCK_FRAMES = 256;
+
+	@Param({ "1", "16", "64" })
+	public int voiceCount;
+
+	@Param({ "1", "2" })
+	public int channels;
+
+	private Mixer mixer;
+	private float[] block;
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	@Setup
+	public void setUp()
+	{
+		float[] samples = new float[22050 * channels];
+		for (int i = 0; i < samples.length; i++)
+		{
+			samples[i] = (float) Math.sin(i * 0.05);
+		}
+
+		PcmSound sound = new PcmSound(samples, channels, 22050);
+
+		mixer = new Mixer(voiceCount, OUTPUT_RATE);
+		block = new float[BLOCK_FRAMES * 2];
+
+		for (int i = 0; i < voiceCount; i++)
+		{
+			mixer.start(sound, 0.5f, 0.5f, 1, -1, 1f + i * 0.01f);
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	@Benchmark
+	public float[] mixBlock()
+	{
+		mixer.mix(block, BLOCK_FRAMES);
+		return block;
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+//-------------------------------------------------------------------------
+/**
+ * Measures what a {@link SoundPlayer} spends getting a sound to play, with
+ * a simulated backend that has no decode latency (see
+ * {@link SimulatedPlayers}), so that only the player's and the sound bank's
+ * bookkeeping is measured. {@code playLoadedSound} plays and stops a sound
+ * that is already loaded, {@code loadPlayAndUnload} loads a sound first and
+ * unloads it afterwards, and {@code preloadBatch} preloads a batch of
+ * sounds, waits for all of them, and unloads them again. While it waits,
+ * the benchmark thread stands in for the main thread, running the tasks
+ * that the sound bank posts to it.
+ * <p>
+ * Run with {@code -prof gc} to see the allocation per operation.
+ * </p>
+ *
+ * @author Tony Allevato
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PlayBenchmark
+{
+	//~ Fields ................................................................
+
+	@Param({ "10", "100" })
+	public int batchSize;
+
+	private SimulatedSoundEnvironment environment;
+	private SoundPlayer player;
+	private SoundHandle loaded;
+	private ArrayList<String> batch;
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	@Setup
+	public void setUp() throws Exception
+	{
+		batch = new ArrayList<String>(batchSize);
+		String[] names = new String[batchSize + 2];
+		names[0] = "loaded";
+		names[1] = "cold";
+
+		for (int i = 0; i < batchSize; i++)
+		{
+			batch.add("batch_" + i);
+			names[i + 2] = batch.get(i);
+		}
+
+		environment = SimulatedPlayers.environment(names);
+		player = SimulatedPlayers.create(environment, SoundBank.MAX_STREAMS);
+		loaded = SimulatedPlayers.load(player, "loaded");
+	}
+
+
+	// ----------------------------------------------------------
+	@TearDown
+	public void tearDown()
+	{
+		player.release();
+	}
+
+
+	// ----------------------------------------------------------
+	@Benchmark
+	public int playLoadedSound()
+	{
+		int streamId = player.play(loaded);
+		player.stop(loaded);
+		return streamId;
+	}
+
+
+	// ----------------------------------------------------------
+	@Benchmark
+	public int loadPlayAndUnload() throws Exception
+	{
+		SoundHandle cold = SimulatedPlayers.load(player, "cold");
+		int streamId = player.play(cold);
+		player.unloadSound("cold");
+		return streamId;
+	}
+
+
+	// ----------------------------------------------------------
+	@Benchmark
+	public int preloadBatch()
+	{
+		Preload preload = player.preload(batch);
+
+		while (!preload.isFinished())
+		{
+			if (environment.runDueTasks() == 0)
+			{
+				Thread.yield();
+			}
+		}
+
+		for (int i = 0; i < batchSize; i++)
+		{
+			player.unloadSound(batch.get(i));
+		}
+
+		return preload.getFinishedCount();
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import android.content.Context;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+//-------------------------------------------------------------------------
+/**
+ * Creates the sound players that the benchmarks drive. Each player runs in
+ * a {@link SimulatedSoundEnvironment} and plays through a
+ * {@link SimulatedAudioBackend} with no decode latency, so the benchmarks
+ * measure the player's and the sound bank's own work, not a device's.
+ * The environment's clock does not move unless a benchmark moves it, so
+ * streams only end when they are stopped, and the tasks that the sound bank
+ * posts to the main thread only run when the benchmark runs them.
+ *
+ * @author Tony Allevato
+ */
+final class SimulatedPlayers
+{
+	//~ Fields ................................................................
+
+	/**
+	 * The size, in bytes, of each sound added by {@link #environment}.
+	 */
+	static final long SOUND_BYTES = 4096;
+
+	/**
+	 * The length of each sound added by {@link #environment}.
+	 */
+	static final long SOUND_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private static final long LOAD_TIMEOUT_SECONDS = 10;
+
+	private static final Executor DIRECT = new Executor()
+	{
+		// ----------------------------------------------------------
+		@Override
+		public void execute(Runnable command)
+		{
+			command.run();
+		}
+	};
+
+
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	private SimulatedPlayers()
+	{
+		// Static methods only.
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates an environment holding the specified sounds.
+	 *
+	 * @param names the names of the sounds
+	 * @return the environment
+	 */
+	static SimulatedSoundEnvironment environment(String... names)
+	{
+		SimulatedSoundEnvironment environment =
+			new SimulatedSoundEnvironment();
+
+		for (String name : names)
+		{
+			environment.addSound(name, SOUND_BYTES, SOUND_NANOS);
+		}
+
+		return environment;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a player in an environment. The player must be
+	 * {@link SoundPlayer#release() released} before the next one is
+	 * created, so that the next one gets a fresh sound bank.
+	 *
+	 * @param environment the environment
+	 * @param maxStreams the maximum number of streams the player can play
+	 * @return the player
+	 */
+	static SoundPlayer create(final SimulatedSoundEnvironment environment,
+			int maxStreams)
+	{
+		SoundPlayer.setBackendFactory(new AudioBackend.Factory()
+		{
+			// ----------------------------------------------------------
+			@Override
+			public AudioBackend create(Context context, int streams)
+			{
+				SimulatedAudioBackend backend = new SimulatedAudioBackend(
+						streams, 0, DIRECT, environment);
+				backend.setSoundDuration(SOUND_NANOS);
+				return backend;
+			}
+		});
+
+		try
+		{
+			return new SoundPlayer(environment, maxStreams);
+		}
+		finally
+		{
+			SoundPlayer.setBackendFactory(null);
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Loads a sound and waits for it to be ready.
+	 *
+	 * @param player the player
+	 * @param name the name of the sound
+	 * @return the handle of the loaded sound
+	 *
+	 * @throws Exception if the sound could not be loaded in time
+	 */
+	static SoundHandle load(SoundPlayer player, String name)
+		throws Exception
+	{
+		SoundHandle sound = player.loadSound(name);
+		await(sound);
+		return sound;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Waits for a sound that is loading to be ready.
+	 *
+	 * @param sound the handle of the sound
+	 *
+	 * @throws Exception if the sound could not be loaded in time
+	 */
+	static void await(SoundHandle sound)
+		throws Exception
+	{
+		sound.getLoad().get(LOAD_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+		if (sound.getLoadState() != LoadState.READY)
+		{
+			throw new IllegalStateException(
+					"Could not load the sound " + sound.getName());
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+//-------------------------------------------------------------------------
+/**
+ * Measures the calls that control a {@link SoundPlayer}'s streams when all
+ * of its voices are in use, through a simulated backend (see
+ * {@link SimulatedPlayers}): stopping the newest stream of a sound and
+ * starting another in its place, pausing and resuming every stream of one
+ * sound, pausing and resuming every stream, and starting a stream that has
+ * to steal a voice under each {@link VoiceAllocationPolicy}.
+ * <p>
+ * Run with {@code -prof gc} to confirm that none of these allocate.
+ * </p>
+ *
+ * @author Tony Allevato
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StreamControlBenchmark
+{
+	//~ Fields ................................................................
+
+	private static final int SOUNDS = 4;
+	private static final int LOOP_FOREVER = -1;
+
+	// Higher than the priority of any sound, so that a steal always finds
+	// a victim.
+	private static final int STEAL_PRIORITY = SOUNDS;
+
+	@Param({ "8", "32" })
+	public int activeStreams;
+
+	@Param({ "OLDEST_FIRST", "LOWEST_PRIORITY_FIRST", "QUIETEST_FIRST" })
+	public VoiceAllocationPolicy policy;
+
+	private SoundPlayer player;
+	private SoundHandle[] sounds;
+	private int next;
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	@Setup
+	public void setUp() throws Exception
+	{
+		String[] names = new String[SOUNDS];
+
+		for (int i = 0; i < SOUNDS; i++)
+		{
+			names[i] = "sound_" + i;
+		}
+
+		player = SimulatedPlayers.create(
+				SimulatedPlayers.environment(names), activeStreams);
+		player.setVoiceAllocationPolicy(policy);
+		sounds = new SoundHandle[SOUNDS];
+
+		for (int i = 0; i < SOUNDS; i++)
+		{
+			sounds[i] = SimulatedPlayers.load(player, names[i]);
+			player.setPriority(sounds[i], i);
+		}
+
+		// Fill every voice with looping streams of different volumes, so
+		// that none of them ends on its own.
+		for (int i = 0; i < activeStreams; i++)
+		{
+			player.play(sounds[i % SOUNDS], 0.1f + 0.1f * (i % 9), 0, 1,
+					LOOP_FOREVER);
+		}
+
+		if (player.getVoiceStats().getActiveVoices() != activeStreams)
+		{
+			throw new IllegalStateException("Could not fill every voice");
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	@TearDown
+	public void tearDown()
+	{
+		player.release();
+	}
+
+
+	// ----------------------------------------------------------
+	@Benchmark
+	public int stopAndReplay()
+	{
+		SoundHandle sound = sounds[nextSound()];
+		player.stop(sound);
+		return player.play(sound, 0.5f, 0, 1, LOOP_FOREVER);
+	}
+
+
+	// ----------------------------------------------------------
+	@Benchmark
+	public void pauseAndResumeSound()
+	{
+		SoundHandle sound = sounds[nextSound()];
+		player.pauseAll(sound);
+		player.resumeAll(sound);
+	}
+
+
+	// ----------------------------------------------------------
+	@Benchmark
+	public void pauseAndResumeAll()
+	{
+		player.pauseAll();
+		player.resumeAll();
+	}
+
+
+	// ----------------------------------------------------------
+	@Benchmark
+	public int stealVoice()
+	{
+		return player.play(sounds[nextSound()], LOOP_FOREVER, STEAL_PRIORITY);
+	}
+
+
+	// ----------------------------------------------------------
+	private int nextSound()
+	{
+		next = (next + 1) % SOUNDS;
+		return next;
+	}
+}
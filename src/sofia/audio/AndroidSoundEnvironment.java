@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import android.content.Context;
+import android.os.Handler;
+
+//-------------------------------------------------------------------------
+/**
+ * The environment of a sound bank on a device: {@link System#nanoTime()},
+ * a {@link Handler} on the main looper, and the sounds packaged with the
+ * application.
+ *
+ * @author Tony Allevato
+ */
+final class AndroidSoundEnvironment implements SoundEnvironment
+{
+	//~ Fields ................................................................
+
+	private final Context context;
+	private final Handler handler;
+
+	// Indexing the application's sounds is only worth doing for the
+	// environment that ends up creating the bank.
+	private SoundLibrary library;
+
+
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates the environment of the application that a context belongs
+	 * to.
+	 *
+	 * @param context any context in the application
+	 */
+	AndroidSoundEnvironment(Context context)
+	{
+		this.context = context.getApplicationContext();
+		this.handler = new Handler(context.getMainLooper());
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	@Override
+	public long nanoTime()
+	{
+		return SoundClock.SYSTEM.nanoTime();
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public void post(Runnable task)
+	{
+		handler.post(task);
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public void postDelayed(Runnable task, long delayMillis)
+	{
+		handler.postDelayed(task, delayMillis);
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public void removeCallbacks(Runnable task)
+	{
+		handler.removeCallbacks(task);
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public synchronized SoundLibrary getLibrary()
+	{
+		if (library == null)
+		{
+			library = new PackagedSoundLibrary(context);
+		}
+
+		return library;
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public Context getContext()
+	{
+		return context;
+	}
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+
+//-------------------------------------------------------------------------
+/**
+ * A process-wide index of the sound files in the assets/sounds folder. Each
+ * folder is listed once, the first time a sound in it is requested, so that
+ * finding a sound is a map lookup instead of trying to open the file with
+ * every possible extension and catching the exceptions for the misses.
+ *
+ * @author Tony Allevato
+ */
+final class AssetSoundIndex
+{
+	//~ Fields ................................................................
+
+	static final String SOUNDS_FOLDER = "sounds";
+
+	private static final HashMap<String, AssetSoundIndex> indexes =
+			new HashMap<String, AssetSoundIndex>();
+
+	private final AssetManager assets;
+
+	// Maps a folder under assets/sounds ("" for assets/sounds itself) to a
+	// map from each sound name in that folder to the extensions it exists
+	// with.
+	private final HashMap<String, HashMap<String, ArrayList<String>>> folders;
+
+
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	private AssetSoundIndex(AssetManager assets)
+	{
+		this.assets = assets;
+		this.folders =
+				new HashMap<String, HashMap<String, ArrayList<String>>>();
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the index for the application that the specified context belongs
+	 * to, creating it if this is the first time it has been requested.
+	 *
+	 * @param context the context
+	 * @return the index for the context's application
+	 */
+	static AssetSoundIndex forContext(Context context)
+	{
+		String packageName = context.getPackageName();
+
+		synchronized (indexes)
+		{
+			AssetSoundIndex index = indexes.get(packageName);
+
+			if (index == null)
+			{
+				index = new AssetSoundIndex(context.getAssets());
+				indexes.put(packageName, index);
+			}
+
+			return index;
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Finds the asset path of the sound with the specified name.
+	 *
+	 * @param name the name of the sound, without the file extension; it may
+	 *     include subfolders of assets/sounds, separated by slashes
+	 * @param extensions the extensions to accept, in order of preference
+	 * @return the path of the sound file relative to the assets folder, or
+	 *     null if there is no such sound
+	 */
+	String findPath(String name, String[] extensions)
+	{
+		int slash = name.lastIndexOf('/');
+		String folder = (slash == -1) ? "" : name.substring(0, slash);
+		String baseName = name.substring(slash + 1);
+
+		ArrayList<String> available = folder(folder).get(baseName);
+		if (available == null)
+		{
+			return null;
+		}
+
+		for (String extension : extensions)
+		{
+			if (available.contains(extension))
+			{
+				return SOUNDS_FOLDER + "/" + name + extension;
+			}
+		}
+
+		return null;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the names of the sounds directly inside assets/sounds.
+	 *
+	 * @return the names of the sounds, without their extensions
+	 */
+	Collection<String> names()
+	{
+		return Collections.unmodifiableSet(folder("").keySet());
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the index of a folder, listing it if necessary.
+	 *
+	 * @param folder the folder, relative to assets/sounds
+	 * @return a map from each sound name in the folder to its extensions
+	 */
+	private synchronized HashMap<String, ArrayList<String>> folder(
+			String folder)
+	{
+		HashMap<String, ArrayList<String>> index = folders.get(folder);
+
+		if (index == null)
+		{
+			index = new HashMap<String, ArrayList<String>>();
+
+			String path = (folder.length() == 0)
+					? SOUNDS_FOLDER : SOUNDS_FOLDER + "/" + folder;
+			String[] files = null;
+
+			try
+			{
+				files = assets.list(path);
+			}
+			catch (IOException e)
+			{
+				// Treat an unreadable folder as an empty one.
+			}
+
+			if (files != null)
+			{
+				for (String file : files)
+				{
+					int dot = file.lastIndexOf('.');
+					if (dot > 0)
+					{
+						String baseName = file.substring(0, dot);
+						ArrayList<String> extensions = index.get(baseName);
+
+						if (extensions == null)
+						{
+							extensions = new ArrayList<String>(1);
+							index.put(baseName, extensions);
+						}
+
+						extensions.add(file.substring(dot));
+					}
+				}
+			}
+
+			folders.put(folder, index);
+		}
+
+		return index;
+	}
+}
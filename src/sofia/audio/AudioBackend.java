@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+
+//-------------------------------------------------------------------------
+/**
+ * The engine that {@link SoundPlayer} loads and plays sounds through. The
+ * methods mirror those of {@link android.media.SoundPool}, which is what
+ * the default backend uses; other backends (such as
+ * {@link SimulatedAudioBackend}) let the player's logic be exercised and
+ * measured without a device.
+ * <p>
+ * Sound IDs and stream IDs are positive integers assigned by the backend; 0
+ * means "none" everywhere. Backends are only used from one thread at a time,
+ * except for {@link #load(AssetFileDescriptor, int)}, which the background
+ * preloader may call concurrently with the other methods.
+ * </p>
+ *
+ * @author Tony Allevato
+ */
+public interface AudioBackend
+{
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Starts loading a sound. Loading completes asynchronously, and is
+	 * reported to the {@link LoadListener}.
+	 *
+	 * @param fd the descriptor of the sound file; the backend must make its
+	 *     own copy if it needs the file after this method returns. It is
+	 *     null for sounds that a simulation made up, which only a backend
+	 *     that ignores the file (such as {@link SimulatedAudioBackend}) is
+	 *     ever given
+	 * @param priority the load priority (currently unused by Android)
+	 * @return the ID of the sound, or 0 if it could not be loaded
+	 */
+	int load(AssetFileDescriptor fd, int priority);
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Unloads a sound, stopping any streams that are playing it.
+	 *
+	 * @param soundId the ID of the sound
+	 */
+	void unload(int soundId);
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Starts playing a sound that has finished loading.
+	 *
+	 * @param soundId the ID of the sound
+	 * @param leftVolume the volume of the left channel, from 0 to 1
+	 * @param rightVolume the volume of the right channel, from 0 to 1
+	 * @param priority the stream priority; 0 is the lowest
+	 * @param loopCount the number of times to repeat the sound, or -1 to
+	 *     repeat it forever
+	 * @param rate the playback rate, from 0.5 to 2
+	 * @return the ID of the new stream, or 0 if it could not be started
+	 */
+	int play(int soundId, float leftVolume, float rightVolume, int priority,
+			int loopCount, float rate);
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets how long one play of a loaded sound lasts at its normal rate.
+	 * Players use this to tell when a stream has ended on its own.
+	 *
+	 * @param soundId the ID of the sound
+	 * @return the duration, in nanoseconds; {@link Long#MAX_VALUE} if
+	 *     streams of the sound never end on their own; or 0 if the backend
+	 *     does not know, in which case the player uses the length given by
+	 *     the manifest or the sound file's header
+	 */
+	long getDurationNanos(int soundId);
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Stops a stream. Stopping a stream that has already finished does
+	 * nothing.
+	 *
+	 * @param streamId the ID of the stream
+	 */
+	void stop(int streamId);
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Pauses a stream.
+	 *
+	 * @param streamId the ID of the stream
+	 */
+	void pause(int streamId);
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Resumes a paused stream.
+	 *
+	 * @param streamId the ID of the stream
+	 */
+	void resume(int streamId);
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Changes the volume of a playing stream.
+	 *
+	 * @param streamId the ID of the stream
+	 * @param leftVolume the volume of the left channel, from 0 to 1
+	 * @param rightVolume the volume of the right channel, from 0 to 1
+	 */
+	void setVolume(int streamId, float leftVolume, float rightVolume);
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Changes the playback rate of a playing stream.
+	 *
+	 * @param streamId the ID of the stream
+	 * @param rate the playback rate, from 0.5 to 2
+	 */
+	void setRate(int streamId, float rate);
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Sets the listener that is told when sounds finish loading.
+	 *
+	 * @param listener the listener
+	 */
+	void setLoadListener(LoadListener listener);
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Releases every resource held by the backend. The backend cannot be
+	 * used afterwards.
+	 */
+	void release();
+
+
+	//~ Inner classes .........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Receives notifications when a backend finishes loading a sound.
+	 */
+	public interface LoadListener
+	{
+		// ----------------------------------------------------------
+		/**
+		 * Called when a sound has been decoded (or failed to be).
+		 *
+		 * @param soundId the ID of the sound
+		 * @param succeeded true if the sound can now be played
+		 */
+		void loadComplete(int soundId, boolean succeeded);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates the backend that the shared sound bank plays through. Install
+	 * one with {@link SoundPlayer#setBackendFactory(Factory)}.
+	 */
+	public interface Factory
+	{
+		// ----------------------------------------------------------
+		/**
+		 * Creates a backend.
+		 *
+		 * @param context the application context, or null when the players
+		 *     are running without a device
+		 * @param maxStreams the maximum number of streams that the backend
+		 *     must be able to play at once
+		 * @return the new backend
+		 */
+		AudioBackend create(Context context, int maxStreams);
+	}
+}
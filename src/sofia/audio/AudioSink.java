@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+//-------------------------------------------------------------------------
+/**
+ * The destination of the audio that a {@link MixerBackend} mixes, such as
+ * an {@link android.media.AudioTrack}. Every method is called on the
+ * backend's audio thread.
+ *
+ * @author Tony Allevato
+ */
+public interface AudioSink
+{
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the sample rate that the sink plays at.
+	 *
+	 * @return the sample rate, in Hz
+	 */
+	int getSampleRate();
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of frames the mixer should produce for each call to
+	 * {@link #write(float[], int)}. Smaller blocks lower the latency of new
+	 * sounds but cost more overhead.
+	 *
+	 * @return the number of frames in a block
+	 */
+	int getBlockFrames();
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Starts (or restarts) playback, before the first block is written.
+	 */
+	void start();
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Writes a block of mixed audio, blocking until the sink has room for
+	 * it. This is what paces the audio thread.
+	 *
+	 * @param buffer the interleaved stereo samples, from -1 to 1; values
+	 *     outside that range should be clipped
+	 * @param frames the number of frames in the buffer
+	 */
+	void write(float[] buffer, int frames);
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Stops playback once the blocks already written have played, because
+	 * nothing is left to mix.
+	 */
+	void stop();
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Releases every resource held by the sink.
+	 */
+	void release();
+}
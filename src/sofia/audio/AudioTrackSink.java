@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+import android.os.Process;
+
+//-------------------------------------------------------------------------
+/**
+ * The default {@link AudioSink}, which writes 16-bit stereo PCM to a
+ * streaming {@link AudioTrack}. The track is created the first time the
+ * sink is started, on the audio thread, which is also given audio priority
+ * then.
+ *
+ * @author Tony Allevato
+ */
+class AudioTrackSink implements AudioSink
+{
+	//~ Fields ................................................................
+
+	private final int sampleRate;
+	private final int blockFrames;
+	private final short[] pcm;
+	private AudioTrack track;
+
+
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a new sink.
+	 *
+	 * @param sampleRate the output sample rate, in Hz
+	 * @param blockFrames the number of frames in each block
+	 */
+	AudioTrackSink(int sampleRate, int blockFrames)
+	{
+		this.sampleRate = sampleRate;
+		this.blockFrames = blockFrames;
+		this.pcm = new short[blockFrames * 2];
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	@Override
+	public int getSampleRate()
+	{
+		return sampleRate;
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public int getBlockFrames()
+	{
+		return blockFrames;
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public void start()
+	{
+		if (track == null)
+		{
+			Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+
+			// Keep the track's own buffer small, so that a new sound is
+			// heard within a couple of blocks.
+			int minSize = AudioTrack.getMinBufferSize(sampleRate,
+					AudioFormat.CHANNEL_OUT_STEREO,
+					AudioFormat.ENCODING_PCM_16BIT);
+			int size = Math.max(minSize, pcm.length * 2 * 2);
+
+			track = new AudioTrack(AudioManager.STREAM_MUSIC, sampleRate,
+					AudioFormat.CHANNEL_OUT_STEREO,
+					AudioFormat.ENCODING_PCM_16BIT, size,
+					AudioTrack.MODE_STREAM);
+		}
+
+		track.play();
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public void write(float[] buffer, int frames)
+	{
+		int samples = frames * 2;
+
+		for (int i = 0; i < samples; i++)
+		{
+			float value = buffer[i];
+
+			if (value > 1f)
+			{
+				value = 1f;
+			}
+			else if (value < -1f)
+			{
+				value = -1f;
+			}
+
+			pcm[i] = (short) (value * Short.MAX_VALUE);
+		}
+
+		track.write(pcm, 0, samples);
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public void stop()
+	{
+		if (track != null)
+		{
+			track.stop();
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public void release()
+	{
+		if (track != null)
+		{
+			track.release();
+			track = null;
+		}
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+//-------------------------------------------------------------------------
+/**
+ * A snapshot of the sound cache of a {@link SoundPlayer}, returned by
+ * {@link SoundPlayer#getCacheStats()}. A hit is a request to play a sound
+ * that was already loaded; a miss is one that had to load it first.
+ *
+ * @author Tony Allevato
+ */
+public class CacheStats
+{
+	//~ Fields ................................................................
+
+	private final long hits;
+	private final long misses;
+	private final long evictions;
+	private final long cachedBytes;
+	private final long budgetBytes;
+
+
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a new snapshot. Only {@link SoundPlayer} creates these.
+	 *
+	 * @param hits the number of cache hits
+	 * @param misses the number of cache misses
+	 * @param evictions the number of sounds unloaded to stay in budget
+	 * @param cachedBytes the estimated size of the decoded sounds
+	 * @param budgetBytes the cache budget
+	 */
+	CacheStats(long hits, long misses, long evictions, long cachedBytes,
+			long budgetBytes)
+	{
+		this.hits = hits;
+		this.misses = misses;
+		this.evictions = evictions;
+		this.cachedBytes = cachedBytes;
+		this.budgetBytes = budgetBytes;
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of times a sound was played that was already loaded.
+	 *
+	 * @return the number of cache hits
+	 */
+	public long getHits()
+	{
+		return hits;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of times a sound was played that had to be loaded
+	 * first.
+	 *
+	 * @return the number of cache misses
+	 */
+	public long getMisses()
+	{
+		return misses;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of sounds that have been unloaded to keep the cache
+	 * within its budget.
+	 *
+	 * @return the number of evictions
+	 */
+	public long getEvictions()
+	{
+		return evictions;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the estimated size, in bytes, of the decoded sounds in the cache.
+	 *
+	 * @return the size of the cache
+	 */
+	public long getCachedBytes()
+	{
+		return cachedBytes;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the cache budget, in bytes.
+	 *
+	 * @return the cache budget, or {@link Long#MAX_VALUE} if the cache is
+	 *     unbounded
+	 */
+	public long getBudgetBytes()
+	{
+		return budgetBytes;
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public String toString()
+	{
+		return "CacheStats[hits=" + hits + ", misses=" + misses
+				+ ", evictions=" + evictions + ", cachedBytes=" + cachedBytes
+				+ ", budgetBytes=" + budgetBytes + "]";
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import android.content.res.AssetFileDescriptor;
+
+import java.io.IOException;
+
+//-------------------------------------------------------------------------
+/**
+ * A {@link SoundDecoder} that checks a {@link PcmDiskCache} before
+ * decoding, and stores what it decodes there.
+ * <p>
+ * Sounds are keyed by where they are stored in the APK (their offset and
+ * length), which identifies a raw resource or asset as well as its name
+ * does; the cache itself is discarded whenever the APK changes.
+ * </p>
+ *
+ * @author Tony Allevato
+ */
+class CachingSoundDecoder implements SoundDecoder
+{
+	//~ Fields ................................................................
+
+	private final SoundDecoder decoder;
+	private final PcmDiskCache cache;
+
+
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a new caching decoder.
+	 *
+	 * @param decoder the decoder used when a sound is not cached
+	 * @param cache the cache
+	 */
+	CachingSoundDecoder(SoundDecoder decoder, PcmDiskCache cache)
+	{
+		this.decoder = decoder;
+		this.cache = cache;
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	@Override
+	public PcmSound decode(AssetFileDescriptor fd) throws IOException
+	{
+		String key = fd.getStartOffset() + "-" + fd.getLength();
+
+		PcmSound sound = cache.read(key);
+
+		if (sound == null)
+		{
+			sound = decoder.decode(fd);
+			cache.write(key, sound);
+
+			// Prefer the mapped copy, which keeps the samples off the heap.
+			PcmSound cached = cache.read(key);
+			if (cached != null)
+			{
+				sound = cached;
+			}
+		}
+
+		return sound;
+	}
+}
@@ -0,0 +1,359 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+//-------------------------------------------------------------------------
+/**
+ * A bounded queue of requests to sound players that any number of threads
+ * can add to without taking a lock, drained by one background thread that
+ * carries them out while holding the sound bank's lock.
+ * <p>
+ * The commands are preallocated in a ring. A producer claims the next slot
+ * with a single compare-and-set, fills it in, and publishes it by advancing
+ * the slot's sequence number; the consumer takes slots in order and hands
+ * each one back by advancing its sequence number again. Nothing is
+ * allocated once the queue exists, and a producer never waits: when the
+ * ring is full, {@link #claim()} returns null and the request is dropped.
+ * </p><p>
+ * The consumer thread also starts the plays in the bank's
+ * {@link PlaybackScheduler} as they come due. It parks when the queue is
+ * empty until the next publish or the next scheduled play, whichever comes
+ * first.
+ * </p>
+ *
+ * @author Tony Allevato
+ */
+final class CommandQueue
+{
+	//~ Fields ................................................................
+
+	static final int PLAY = 1;
+	static final int STOP = 2;
+	static final int STOP_ALL = 3;
+	static final int PAUSE = 4;
+	static final int RESUME = 5;
+	static final int SET_VOLUME = 6;
+	static final int SET_RATE = 7;
+
+	private static final String TAG = "CommandQueue";
+
+	private final Object lock;
+	private final PlaybackScheduler scheduler;
+	private final SoundClock clock;
+	private final Command[] commands;
+	private final int mask;
+
+	// The sequence number of each slot. A slot whose sequence equals a
+	// producer position is free to claim at that position; one whose
+	// sequence is one past the consumer position holds a published command.
+	private final AtomicLongArray sequences;
+	private final AtomicLong tail;
+
+	// Only the consumer thread reads or writes the head.
+	private long head;
+
+	private final Thread consumer;
+	private volatile boolean sleeping;
+	private volatile boolean closed;
+
+
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a new queue and starts its consumer thread.
+	 *
+	 * @param capacity the number of commands the queue can hold, which must
+	 *     be a power of two
+	 * @param lock the lock that is held while commands are carried out
+	 * @param scheduler the scheduled plays to start as they come due
+	 * @param clock the clock that scheduled plays are timed by
+	 */
+	CommandQueue(int capacity, Object lock, PlaybackScheduler scheduler,
+			SoundClock clock)
+	{
+		if (capacity < 1 || (capacity & (capacity - 1)) != 0)
+		{
+			throw new IllegalArgumentException(
+					"capacity must be a power of two, but was " + capacity);
+		}
+
+		this.lock = lock;
+		this.scheduler = scheduler;
+		this.clock = clock;
+		commands = new Command[capacity];
+		mask = capacity - 1;
+		sequences = new AtomicLongArray(capacity);
+		tail = new AtomicLong();
+
+		for (int i = 0; i < capacity; i++)
+		{
+			commands[i] = new Command(i);
+			sequences.set(i, i);
+		}
+
+		consumer = new Thread(drainer, "SoundPlayer commands");
+		consumer.setDaemon(true);
+		consumer.start();
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Claims the next free command, which the caller must fill in and then
+	 * pass to {@link #publish(Command)}. Safe to call from any thread.
+	 *
+	 * @return the command, or null if the queue is full or closed
+	 */
+	Command claim()
+	{
+		if (closed)
+		{
+			return null;
+		}
+
+		while (true)
+		{
+			long position = tail.get();
+			int slot = (int) (position & mask);
+			long difference = sequences.get(slot) - position;
+
+			if (difference == 0)
+			{
+				if (tail.compareAndSet(position, position + 1))
+				{
+					Command command = commands[slot];
+					command.position = position;
+					return command;
+				}
+			}
+			else if (difference < 0)
+			{
+				// The consumer has not handed this slot back yet.
+				return null;
+			}
+
+			// Otherwise another producer claimed the slot first; try the
+			// next one.
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Makes a claimed command visible to the consumer thread.
+	 *
+	 * @param command the command returned by {@link #claim()}
+	 */
+	void publish(Command command)
+	{
+		sequences.set(command.slot, command.position + 1);
+
+		if (sleeping)
+		{
+			LockSupport.unpark(consumer);
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Wakes the consumer thread so that it looks at the scheduler again,
+	 * after a play was scheduled ahead of the one it was waiting for.
+	 */
+	void wake()
+	{
+		LockSupport.unpark(consumer);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Stops the consumer thread. Commands that have not been carried out yet
+	 * are dropped.
+	 */
+	void close()
+	{
+		closed = true;
+		LockSupport.unpark(consumer);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the next published command, if any. Called only on the consumer
+	 * thread.
+	 *
+	 * @return the command, or null if the queue is empty
+	 */
+	private Command peek()
+	{
+		int slot = (int) (head & mask);
+
+		if (sequences.get(slot) == head + 1)
+		{
+			return commands[slot];
+		}
+		else
+		{
+			return null;
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Hands the command at the head of the queue back to the producers.
+	 * Called only on the consumer thread.
+	 *
+	 * @param command the command that was carried out
+	 */
+	private void remove(Command command)
+	{
+		command.player = null;
+		command.sound = null;
+
+		sequences.set(command.slot, head + commands.length);
+		head++;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Carries out every published command and starts every scheduled play
+	 * that is due, holding the lock once for the whole batch.
+	 *
+	 * @return how long it is until the next scheduled play is due, in
+	 *     nanoseconds, or {@link Long#MAX_VALUE} if none is scheduled
+	 */
+	private long drain()
+	{
+		synchronized (lock)
+		{
+			Command command;
+
+			while (!closed && (command = peek()) != null)
+			{
+				try
+				{
+					command.player.execute(command);
+				}
+				catch (RuntimeException e)
+				{
+					Log.w(TAG, "Could not carry out a queued sound command", e);
+				}
+
+				remove(command);
+			}
+
+			long now = clock.nanoTime();
+			Playback playback;
+
+			while (!closed && (playback = scheduler.poll(now)) != null)
+			{
+				try
+				{
+					playback.getPlayer().startScheduled(playback);
+				}
+				catch (RuntimeException e)
+				{
+					Log.w(TAG, "Could not start a scheduled sound", e);
+				}
+			}
+
+			return scheduler.nanosUntilNext(now);
+		}
+	}
+
+
+	//~ Inner classes .........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * A request to a sound player. Which fields are used depends on the
+	 * opcode.
+	 */
+	static final class Command
+	{
+		final int slot;
+		long position;
+
+		int opcode;
+		SoundPlayer player;
+		SoundHandle sound;
+		int streamId;
+		int loopCount;
+		int priority;
+		float volume;
+		float pan;
+		float rate;
+		int rampMillis;
+
+
+		// ----------------------------------------------------------
+		private Command(int slot)
+		{
+			this.slot = slot;
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * The body of the consumer thread.
+	 */
+	private final Runnable drainer = new Runnable()
+	{
+		// ----------------------------------------------------------
+		@Override
+		public void run()
+		{
+			while (!closed)
+			{
+				long wait = drain();
+
+				// Check again after announcing that the thread is about to
+				// sleep, so that a command published in between is not
+				// missed. A play scheduled in between unparks the thread,
+				// which makes the park below return at once.
+				sleeping = true;
+
+				if (peek() == null && !closed)
+				{
+					if (wait == Long.MAX_VALUE)
+					{
+						LockSupport.park(this);
+					}
+					else
+					{
+						LockSupport.parkNanos(this, wait);
+					}
+				}
+
+				sleeping = false;
+			}
+		}
+	};
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import android.content.res.AssetFileDescriptor;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaPlayer;
+import android.os.Build;
+
+import java.io.IOException;
+
+//-------------------------------------------------------------------------
+/**
+ * Estimates how much memory the sound pool needs to hold a sound once it has
+ * been decoded to 16-bit PCM. On Jelly Bean and later the estimate is
+ * duration &times; sample rate &times; channels &times; 2, read from the
+ * file's header; on older versions, or if the header cannot be read, it
+ * falls back to assuming a typical compression ratio. The duration itself
+ * is reported too: from the header on Jelly Bean and later, and from a
+ * {@link MediaPlayer} that is prepared but never started on older
+ * versions.
+ *
+ * @author Tony Allevato
+ */
+final class DecodedSizeEstimator
+{
+	//~ Fields ................................................................
+
+	private static final int BYTES_PER_SAMPLE = 2;
+
+	// A 128 kbps stream decodes to 44.1 kHz stereo 16-bit PCM (1411 kbps),
+	// which is roughly eleven times as large.
+	private static final int FALLBACK_COMPRESSION_RATIO = 11;
+
+	// Sounds are rarely compressed below 32 kbps, so a file lasts at most
+	// this long per byte.
+	private static final long MAX_NANOS_PER_BYTE = 8 * 1000000000L / 32000;
+
+
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	private DecodedSizeEstimator()
+	{
+		// Prevent instantiation.
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Estimates the decoded size of the sound in an open file descriptor,
+	 * and reads its duration. The descriptor is left open.
+	 *
+	 * @param fd the descriptor of the sound file
+	 * @return the estimate
+	 */
+	static Estimate estimate(AssetFileDescriptor fd)
+	{
+		long durationNanos = 0;
+
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN)
+		{
+			Estimate fromHeader = estimateFromHeader(fd);
+
+			if (fromHeader != null)
+			{
+				return fromHeader;
+			}
+		}
+		else
+		{
+			durationNanos = durationFromPlayer(fd);
+		}
+
+		return new Estimate(fd.getLength() * FALLBACK_COMPRESSION_RATIO,
+				durationNanos);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the longest that a sound file of a given size could plausibly
+	 * play for, for use until its real duration is known.
+	 *
+	 * @param fileBytes the size of the sound file
+	 * @return the duration, in nanoseconds
+	 */
+	static long maxDurationNanos(long fileBytes)
+	{
+		return fileBytes * MAX_NANOS_PER_BYTE;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Computes the decoded size of a sound from its duration, sample rate,
+	 * and channel count.
+	 *
+	 * @param durationMicros the duration of the sound, in microseconds
+	 * @param sampleRate the sample rate, in Hz
+	 * @param channels the number of channels
+	 * @return the size of the decoded sound, in bytes
+	 */
+	static long decodedSize(long durationMicros, int sampleRate, int channels)
+	{
+		return durationMicros * sampleRate / 1000000L
+				* channels * BYTES_PER_SAMPLE;
+	}
+
+
+	// ----------------------------------------------------------
+	private static Estimate estimateFromHeader(AssetFileDescriptor fd)
+	{
+		MediaExtractor extractor = new MediaExtractor();
+
+		try
+		{
+			extractor.setDataSource(fd.getFileDescriptor(),
+					fd.getStartOffset(), fd.getLength());
+
+			for (int i = 0; i < extractor.getTrackCount(); i++)
+			{
+				MediaFormat format = extractor.getTrackFormat(i);
+				String mime = format.getString(MediaFormat.KEY_MIME);
+
+				if (mime != null && mime.startsWith("audio/")
+						&& format.containsKey(MediaFormat.KEY_DURATION))
+				{
+					long durationMicros =
+							format.getLong(MediaFormat.KEY_DURATION);
+
+					return new Estimate(decodedSize(durationMicros,
+							format.getInteger(MediaFormat.KEY_SAMPLE_RATE),
+							format.getInteger(MediaFormat.KEY_CHANNEL_COUNT)),
+							durationMicros * 1000);
+				}
+			}
+		}
+		catch (RuntimeException e)
+		{
+			// Thrown if the file cannot be read, and by some devices if the
+			// format is missing a key; fall back to the compression ratio.
+		}
+		finally
+		{
+			extractor.release();
+		}
+
+		return null;
+	}
+
+
+	// ----------------------------------------------------------
+	private static long durationFromPlayer(AssetFileDescriptor fd)
+	{
+		MediaPlayer player = new MediaPlayer();
+
+		try
+		{
+			player.setDataSource(fd.getFileDescriptor(),
+					fd.getStartOffset(), fd.getLength());
+			player.prepare();
+
+			int millis = player.getDuration();
+			return (millis > 0) ? millis * 1000000L : 0;
+		}
+		catch (IOException e)
+		{
+			return 0;
+		}
+		catch (RuntimeException e)
+		{
+			// Thrown if the player cannot handle the file.
+			return 0;
+		}
+		finally
+		{
+			player.release();
+		}
+	}
+
+
+	//~ Inner classes .........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * What was learned about a sound file.
+	 */
+	static final class Estimate
+	{
+		// The estimated size of the decoded sound, in bytes, and its
+		// duration in nanoseconds (or 0 if the header did not give it).
+		final long decodedBytes;
+		final long durationNanos;
+
+
+		// ----------------------------------------------------------
+		Estimate(long decodedBytes, long durationNanos)
+		{
+			this.decodedBytes = decodedBytes;
+			this.durationNanos = durationNanos;
+		}
+	}
+}
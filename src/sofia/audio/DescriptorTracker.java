@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import android.content.res.AssetFileDescriptor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//-------------------------------------------------------------------------
+/**
+ * Counts the sound file descriptors that a {@link SoundPlayer} opens and
+ * closes. Every descriptor the player opens is wrapped in a
+ * {@link Descriptor} as soon as it is opened, and closing the wrapper is
+ * the only way the descriptor is closed, so the counts always reflect what
+ * is actually open.
+ *
+ * @author Tony Allevato
+ */
+class DescriptorTracker
+{
+	//~ Fields ................................................................
+
+	private final AtomicInteger openCount = new AtomicInteger();
+	private final AtomicInteger totalCount = new AtomicInteger();
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Starts tracking a newly opened descriptor.
+	 *
+	 * @param fd the descriptor, or null
+	 * @return the tracked descriptor, or null if fd was null
+	 */
+	Descriptor track(AssetFileDescriptor fd)
+	{
+		if (fd == null)
+		{
+			return null;
+		}
+
+		openCount.incrementAndGet();
+		totalCount.incrementAndGet();
+		return new Descriptor(fd, fd.getLength());
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Starts tracking a sound that has no file, such as one that a
+	 * {@link SimulatedSoundEnvironment} makes up. Only a backend that
+	 * ignores the descriptor, such as a {@link SimulatedAudioBackend}, can
+	 * load it.
+	 *
+	 * @param length the size that the sound's file would have, in bytes
+	 * @return the tracked descriptor, whose underlying descriptor is null
+	 */
+	Descriptor track(long length)
+	{
+		openCount.incrementAndGet();
+		totalCount.incrementAndGet();
+		return new Descriptor(null, length);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of tracked descriptors that are currently open.
+	 *
+	 * @return the number of open descriptors
+	 */
+	int getOpenCount()
+	{
+		return openCount.get();
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of descriptors that have been tracked since the
+	 * tracker was created.
+	 *
+	 * @return the total number of descriptors opened
+	 */
+	int getTotalCount()
+	{
+		return totalCount.get();
+	}
+
+
+	//~ Inner classes .........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * An open sound file descriptor. Closing it more than once is harmless.
+	 */
+	class Descriptor implements Closeable
+	{
+		//~ Fields ............................................................
+
+		private final AssetFileDescriptor fd;
+		private final long length;
+		private boolean closed;
+
+
+		//~ Constructors ......................................................
+
+		// ----------------------------------------------------------
+		private Descriptor(AssetFileDescriptor fd, long length)
+		{
+			this.fd = fd;
+			this.length = length;
+		}
+
+
+		//~ Methods ...........................................................
+
+		// ----------------------------------------------------------
+		/**
+		 * Gets the underlying descriptor.
+		 *
+		 * @return the underlying descriptor, or null if the sound has no
+		 *     file
+		 */
+		AssetFileDescriptor get()
+		{
+			return fd;
+		}
+
+
+		// ----------------------------------------------------------
+		/**
+		 * Gets the length of the sound file.
+		 *
+		 * @return the length of the sound file, in bytes
+		 */
+		long getLength()
+		{
+			return length;
+		}
+
+
+		// ----------------------------------------------------------
+		/**
+		 * Closes the descriptor if it is still open.
+		 */
+		@Override
+		public synchronized void close()
+		{
+			if (closed)
+			{
+				return;
+			}
+
+			closed = true;
+			openCount.decrementAndGet();
+
+			if (fd == null)
+			{
+				return;
+			}
+
+			try
+			{
+				fd.close();
+			}
+			catch (IOException e)
+			{
+				// Do nothing.
+			}
+		}
+	}
+}
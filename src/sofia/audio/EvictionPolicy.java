@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+//-------------------------------------------------------------------------
+/**
+ * Determines which sound a {@link SoundPlayer} unloads when the decoded
+ * sounds in its sound pool exceed the player's
+ * {@link SoundPlayer#setCacheBudget(long) cache budget}. Sounds that are
+ * pinned, playing, or waiting to play are never unloaded.
+ *
+ * @author Tony Allevato
+ */
+public enum EvictionPolicy
+{
+	/**
+	 * Unloads the sound that was least recently played or loaded.
+	 */
+	LEAST_RECENTLY_USED,
+
+	/**
+	 * Unloads the sound that has been played the fewest times. If several
+	 * sounds have been played equally often, the least recently used of them
+	 * is unloaded.
+	 */
+	LEAST_FREQUENTLY_USED
+}
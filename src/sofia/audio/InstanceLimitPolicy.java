@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+//-------------------------------------------------------------------------
+/**
+ * Determines what a {@link SoundPlayer} does when a sound is played while
+ * as many instances of it as its
+ * {@link SoundPlayer#setInstanceLimit(String, int, InstanceLimitPolicy)
+ * instance limit} allows are already playing.
+ *
+ * @author Tony Allevato
+ */
+public enum InstanceLimitPolicy
+{
+	/**
+	 * Stops the oldest playing instance of the sound and plays the new one.
+	 */
+	STEAL_OLDEST,
+
+	/**
+	 * Does not play the new instance, leaving the playing ones alone.
+	 */
+	IGNORE_NEW
+}
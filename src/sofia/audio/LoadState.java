@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+//-------------------------------------------------------------------------
+/**
+ * The stages that loading a sound goes through, returned by
+ * {@link SoundHandle#getLoadState()}. A sound starts out unloaded, is
+ * loading while the sound pool decodes it, and then is either ready or
+ * failed. A ready sound that is unloaded to stay within the cache budget
+ * goes back to being unloaded, and is loaded again the next time it is
+ * played.
+ *
+ * @author Tony Allevato
+ */
+public enum LoadState
+{
+	/**
+	 * The sound has not been loaded, or has been unloaded.
+	 */
+	UNLOADED,
+
+	/**
+	 * The sound has been submitted to the sound pool, which is decoding it.
+	 * Plays requested now start as soon as it is ready.
+	 */
+	LOADING,
+
+	/**
+	 * The sound is decoded and can be played without waiting.
+	 */
+	READY,
+
+	/**
+	 * The sound could not be decoded.
+	 */
+	FAILED
+}
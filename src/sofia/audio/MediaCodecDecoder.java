@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import android.content.res.AssetFileDescriptor;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.os.Build;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+//-------------------------------------------------------------------------
+/**
+ * The default {@link SoundDecoder}, which decodes sounds with
+ * {@link MediaCodec}. It needs Jelly Bean or later; on older versions every
+ * sound fails to decode.
+ *
+ * @author Tony Allevato
+ */
+class MediaCodecDecoder implements SoundDecoder
+{
+	//~ Fields ................................................................
+
+	private static final long TIMEOUT_MICROS = 10000;
+	private static final float SHORT_SCALE = 1f / 32768f;
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	@Override
+	public PcmSound decode(AssetFileDescriptor fd) throws IOException
+	{
+		if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN)
+		{
+			throw new IOException(
+					"Decoding sounds requires Android 4.1 or later");
+		}
+
+		MediaExtractor extractor = new MediaExtractor();
+		MediaCodec codec = null;
+
+		try
+		{
+			extractor.setDataSource(fd.getFileDescriptor(),
+					fd.getStartOffset(), fd.getLength());
+
+			MediaFormat format = selectAudioTrack(extractor);
+			if (format == null)
+			{
+				throw new IOException("The file has no audio track");
+			}
+
+			codec = MediaCodec.createDecoderByType(
+					format.getString(MediaFormat.KEY_MIME));
+			codec.configure(format, null, null, 0);
+			codec.start();
+
+			return drain(extractor, codec,
+					format.getInteger(MediaFormat.KEY_SAMPLE_RATE),
+					format.getInteger(MediaFormat.KEY_CHANNEL_COUNT));
+		}
+		catch (RuntimeException e)
+		{
+			// MediaCodec reports most failures with IllegalStateException.
+			throw new IOException("The sound could not be decoded", e);
+		}
+		finally
+		{
+			if (codec != null)
+			{
+				codec.release();
+			}
+
+			extractor.release();
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	private static MediaFormat selectAudioTrack(MediaExtractor extractor)
+	{
+		for (int i = 0; i < extractor.getTrackCount(); i++)
+		{
+			MediaFormat format = extractor.getTrackFormat(i);
+			String mime = format.getString(MediaFormat.KEY_MIME);
+
+			if (mime != null && mime.startsWith("audio/"))
+			{
+				extractor.selectTrack(i);
+				return format;
+			}
+		}
+
+		return null;
+	}
+
+
+	// ----------------------------------------------------------
+	private static PcmSound drain(MediaExtractor extractor, MediaCodec codec,
+			int sampleRate, int channels) throws IOException
+	{
+		ByteBuffer[] inputs = codec.getInputBuffers();
+		ByteBuffer[] outputs = codec.getOutputBuffers();
+		MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+
+		float[] samples = new float[sampleRate * channels];
+		int count = 0;
+		boolean inputDone = false;
+		boolean outputDone = false;
+
+		while (!outputDone)
+		{
+			if (!inputDone)
+			{
+				int index = codec.dequeueInputBuffer(TIMEOUT_MICROS);
+
+				if (index >= 0)
+				{
+					int size = extractor.readSampleData(inputs[index], 0);
+
+					if (size < 0)
+					{
+						codec.queueInputBuffer(index, 0, 0, 0,
+								MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+						inputDone = true;
+					}
+					else
+					{
+						codec.queueInputBuffer(index, 0, size,
+								extractor.getSampleTime(), 0);
+						extractor.advance();
+					}
+				}
+			}
+
+			int index = codec.dequeueOutputBuffer(info, TIMEOUT_MICROS);
+
+			if (index >= 0)
+			{
+				ByteBuffer output = outputs[index];
+				output.position(info.offset);
+				output.limit(info.offset + info.size);
+
+				ShortBuffer shorts =
+					output.order(ByteOrder.nativeOrder()).asShortBuffer();
+				int available = shorts.remaining();
+
+				if (count + available > samples.length)
+				{
+					samples = Arrays.copyOf(samples,
+							Math.max(samples.length * 2, count + available));
+				}
+
+				for (int i = 0; i < available; i++)
+				{
+					samples[count++] = shorts.get() * SHORT_SCALE;
+				}
+
+				output.clear();
+				codec.releaseOutputBuffer(index, false);
+
+				if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0)
+				{
+					outputDone = true;
+				}
+			}
+			else if (index == MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED)
+			{
+				outputs = codec.getOutputBuffers();
+			}
+			else if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED)
+			{
+				MediaFormat format = codec.getOutputFormat();
+				sampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+				channels = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+			}
+		}
+
+		if (channels != 1 && channels != 2)
+		{
+			throw new IOException("Sounds with " + channels
+					+ " channels are not supported");
+		}
+
+		if (count < channels)
+		{
+			throw new IOException("The sound is empty");
+		}
+
+		return new PcmSound(Arrays.copyOf(samples, count - count % channels),
+				channels, sampleRate);
+	}
+}
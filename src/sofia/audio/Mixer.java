@@ -0,0 +1,563 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+//-------------------------------------------------------------------------
+/**
+ * Mixes the voices of a {@link MixerBackend} into stereo blocks. Every voice
+ * object is allocated up front and mixing works in place in the caller's
+ * buffer, so the audio thread never allocates. Voices are resampled with
+ * linear interpolation, which covers both the playback rate and any
+ * difference between the sound's sample rate and the output rate.
+ * <p>
+ * When every voice is busy, a new voice replaces the one with the lowest
+ * priority (and the oldest of those), as long as its priority is not higher
+ * than the new one's; this is what {@link android.media.SoundPool} does.
+ * </p><p>
+ * A voice can be given a start time, which is converted to a frame of the
+ * mixer's output so that it starts exactly on that frame. The mixer counts
+ * the frames it has mixed, and ties that count to {@link System#nanoTime()}
+ * when it starts mixing after being idle. While it keeps mixing, the sink
+ * paces it at the output rate, so voices that are scheduled while it plays
+ * are placed sample-accurately relative to each other.
+ * </p><p>
+ * The mixer is thread-safe. Control calls wait for the block being mixed
+ * to finish.
+ * </p>
+ *
+ * @author Tony Allevato
+ */
+final class Mixer
+{
+	//~ Fields ................................................................
+
+	private final Voice[] voices;
+	private final int outputRate;
+
+	// The number of voices that are in use and not paused.
+	private int playingCount;
+	private int nextStreamId;
+	private long nextAge;
+	private boolean closed;
+
+	// The number of frames mixed so far, and the frame that was being mixed
+	// at a known System.nanoTime(). The anchor is dropped whenever the audio
+	// thread goes to sleep, since the frame count stops advancing.
+	private long framesMixed;
+	private long anchorFrame;
+	private long anchorNanos;
+	private boolean anchored;
+
+
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a new mixer.
+	 *
+	 * @param maxVoices the maximum number of voices that can play at once
+	 * @param outputRate the sample rate of the mixed output, in Hz
+	 */
+	Mixer(int maxVoices, int outputRate)
+	{
+		this.outputRate = outputRate;
+
+		voices = new Voice[maxVoices];
+		for (int i = 0; i < maxVoices; i++)
+		{
+			voices[i] = new Voice();
+		}
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Starts a voice.
+	 *
+	 * @param sound the sound to play
+	 * @param leftVolume the volume of the left channel
+	 * @param rightVolume the volume of the right channel
+	 * @param priority the priority of the voice
+	 * @param loopCount the number of repeats, or -1 to repeat forever
+	 * @param rate the playback rate
+	 * @return the stream ID of the voice, or 0 if every voice is busy with
+	 *     a higher priority
+	 */
+	synchronized int start(PcmSound sound, float leftVolume,
+			float rightVolume, int priority, int loopCount, float rate)
+	{
+		return startAtFrame(sound, leftVolume, rightVolume, priority,
+				loopCount, rate, framesMixed);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Starts a voice that is silent until the specified time. The voice
+	 * takes its slot right away, so stealing and priorities work as if it
+	 * had started. A time that has already passed starts it on the next
+	 * block.
+	 *
+	 * @param sound the sound to play
+	 * @param leftVolume the volume of the left channel
+	 * @param rightVolume the volume of the right channel
+	 * @param priority the priority of the voice
+	 * @param loopCount the number of repeats, or -1 to repeat forever
+	 * @param rate the playback rate
+	 * @param startNanos when the voice should start, in the time base of
+	 *     {@link System#nanoTime()}
+	 * @return the stream ID of the voice, or 0 if every voice is busy with
+	 *     a higher priority
+	 */
+	synchronized int startAt(PcmSound sound, float leftVolume,
+			float rightVolume, int priority, int loopCount, float rate,
+			long startNanos)
+	{
+		anchor();
+
+		long startFrame = anchorFrame
+				+ (startNanos - anchorNanos) * outputRate / 1000000000L;
+
+		return startAtFrame(sound, leftVolume, rightVolume, priority,
+				loopCount, rate, Math.max(startFrame, framesMixed));
+	}
+
+
+	// ----------------------------------------------------------
+	private int startAtFrame(PcmSound sound, float leftVolume,
+			float rightVolume, int priority, int loopCount, float rate,
+			long startFrame)
+	{
+		if (closed)
+		{
+			return 0;
+		}
+
+		Voice voice = chooseVoice(priority);
+
+		if (voice == null)
+		{
+			return 0;
+		}
+
+		if (voice.sound != null)
+		{
+			release(voice);
+		}
+
+		voice.sound = sound;
+		voice.streamId = ++nextStreamId;
+		voice.priority = priority;
+		voice.age = nextAge++;
+		voice.leftVolume = leftVolume;
+		voice.rightVolume = rightVolume;
+		voice.rate = rate;
+		voice.loopsLeft = loopCount;
+		voice.position = 0;
+		voice.startFrame = startFrame;
+		voice.paused = false;
+
+		playingCount++;
+		notifyAll();
+
+		return voice.streamId;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Stops a voice.
+	 *
+	 * @param streamId the stream ID of the voice
+	 */
+	synchronized void stop(int streamId)
+	{
+		Voice voice = find(streamId);
+
+		if (voice != null)
+		{
+			release(voice);
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Stops every voice that is playing a sound, before the sound is
+	 * unloaded.
+	 *
+	 * @param sound the sound
+	 */
+	synchronized void stopSound(PcmSound sound)
+	{
+		for (Voice voice : voices)
+		{
+			if (voice.sound == sound)
+			{
+				release(voice);
+			}
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Pauses a voice.
+	 *
+	 * @param streamId the stream ID of the voice
+	 */
+	synchronized void pause(int streamId)
+	{
+		Voice voice = find(streamId);
+
+		if (voice != null && !voice.paused)
+		{
+			voice.paused = true;
+			playingCount--;
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Resumes a paused voice.
+	 *
+	 * @param streamId the stream ID of the voice
+	 */
+	synchronized void resume(int streamId)
+	{
+		Voice voice = find(streamId);
+
+		if (voice != null && voice.paused)
+		{
+			voice.paused = false;
+			playingCount++;
+			notifyAll();
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Changes the volume of a voice.
+	 *
+	 * @param streamId the stream ID of the voice
+	 * @param leftVolume the volume of the left channel
+	 * @param rightVolume the volume of the right channel
+	 */
+	synchronized void setVolume(int streamId, float leftVolume,
+			float rightVolume)
+	{
+		Voice voice = find(streamId);
+
+		if (voice != null)
+		{
+			voice.leftVolume = leftVolume;
+			voice.rightVolume = rightVolume;
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Changes the playback rate of a voice.
+	 *
+	 * @param streamId the stream ID of the voice
+	 * @param rate the playback rate
+	 */
+	synchronized void setRate(int streamId, float rate)
+	{
+		Voice voice = find(streamId);
+
+		if (voice != null)
+		{
+			voice.rate = rate;
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of voices that are playing (not paused).
+	 *
+	 * @return the number of playing voices
+	 */
+	synchronized int getPlayingCount()
+	{
+		return playingCount;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets a value indicating whether anything is left to mix.
+	 *
+	 * @return true if a voice is playing and the mixer is not closed
+	 */
+	synchronized boolean isPlaying()
+	{
+		return playingCount > 0 && !closed;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets a value indicating whether the mixer has been closed.
+	 *
+	 * @return true if the mixer has been closed
+	 */
+	synchronized boolean isClosed()
+	{
+		return closed;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Blocks until a voice starts playing, so that the audio thread sleeps
+	 * while there is nothing to mix.
+	 *
+	 * @return true if a voice is playing, or false if the mixer was closed
+	 *
+	 * @throws InterruptedException if the thread is interrupted
+	 */
+	synchronized boolean awaitPlaying() throws InterruptedException
+	{
+		while (playingCount == 0 && !closed)
+		{
+			anchored = false;
+			wait();
+		}
+
+		return !closed;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Stops every voice and wakes up the audio thread so that it can exit.
+	 */
+	synchronized void close()
+	{
+		for (Voice voice : voices)
+		{
+			voice.sound = null;
+		}
+
+		playingCount = 0;
+		closed = true;
+		notifyAll();
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Mixes the next block of every playing voice into a buffer. Voices
+	 * that reach their end are released.
+	 *
+	 * @param buffer the buffer that receives the interleaved stereo output;
+	 *     it is cleared first
+	 * @param frames the number of frames to mix
+	 */
+	synchronized void mix(float[] buffer, int frames)
+	{
+		Arrays.fill(buffer, 0, frames * 2, 0f);
+		anchor();
+
+		for (Voice voice : voices)
+		{
+			if (voice.sound != null && !voice.paused)
+			{
+				long offset = voice.startFrame - framesMixed;
+
+				if (offset < frames)
+				{
+					mixVoice(voice, buffer, (int) Math.max(offset, 0), frames);
+				}
+			}
+		}
+
+		framesMixed += frames;
+	}
+
+
+	// ----------------------------------------------------------
+	private void mixVoice(Voice voice, float[] buffer, int first, int frames)
+	{
+		PcmSound sound = voice.sound;
+		FloatBuffer samples = sound.samples;
+		int frameCount = sound.getFrameCount();
+		boolean stereo = sound.getChannels() == 2;
+		float left = voice.leftVolume;
+		float right = voice.rightVolume;
+
+		double step = (double) voice.rate * sound.getSampleRate() / outputRate;
+		double position = voice.position;
+
+		for (int i = first; i < frames; i++)
+		{
+			int frame = (int) position;
+			int following = frame + 1;
+
+			if (following >= frameCount)
+			{
+				following = (voice.loopsLeft != 0) ? 0 : frame;
+			}
+
+			float fraction = (float) (position - frame);
+
+			if (stereo)
+			{
+				float a = samples.get(frame * 2);
+				float b = samples.get(following * 2);
+				buffer[i * 2] += (a + (b - a) * fraction) * left;
+
+				a = samples.get(frame * 2 + 1);
+				b = samples.get(following * 2 + 1);
+				buffer[i * 2 + 1] += (a + (b - a) * fraction) * right;
+			}
+			else
+			{
+				float a = samples.get(frame);
+				float value = a + (samples.get(following) - a) * fraction;
+				buffer[i * 2] += value * left;
+				buffer[i * 2 + 1] += value * right;
+			}
+
+			position += step;
+
+			if (position >= frameCount)
+			{
+				if (voice.loopsLeft == 0)
+				{
+					release(voice);
+					return;
+				}
+				else if (voice.loopsLeft > 0)
+				{
+					voice.loopsLeft--;
+				}
+
+				position -= frameCount;
+			}
+		}
+
+		voice.position = position;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Ties the frame count to the current time, unless it is already tied
+	 * to an earlier time that the mixer has kept pace with since.
+	 */
+	private void anchor()
+	{
+		if (!anchored)
+		{
+			anchored = true;
+			anchorFrame = framesMixed;
+			anchorNanos = System.nanoTime();
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Finds a voice for a new stream: a free one if there is one, or else
+	 * the one to steal.
+	 *
+	 * @param priority the priority of the new stream
+	 * @return the voice, or null if none can be used
+	 */
+	private Voice chooseVoice(int priority)
+	{
+		Voice victim = null;
+
+		for (Voice voice : voices)
+		{
+			if (voice.sound == null)
+			{
+				return voice;
+			}
+			else if (voice.priority <= priority && (victim == null
+					|| voice.priority < victim.priority
+					|| (voice.priority == victim.priority
+						&& voice.age < victim.age)))
+			{
+				victim = voice;
+			}
+		}
+
+		return victim;
+	}
+
+
+	// ----------------------------------------------------------
+	private Voice find(int streamId)
+	{
+		for (Voice voice : voices)
+		{
+			if (voice.sound != null && voice.streamId == streamId)
+			{
+				return voice;
+			}
+		}
+
+		return null;
+	}
+
+
+	// ----------------------------------------------------------
+	private void release(Voice voice)
+	{
+		if (!voice.paused)
+		{
+			playingCount--;
+		}
+
+		voice.sound = null;
+		voice.streamId = 0;
+	}
+
+
+	//~ Inner classes .........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * One slot in the mixer. A voice is free when its sound is null.
+	 */
+	private static class Voice
+	{
+		PcmSound sound;
+		int streamId;
+		int priority;
+		long age;
+		float leftVolume;
+		float rightVolume;
+		float rate;
+		int loopsLeft;
+		double position;
+		long startFrame;
+		boolean paused;
+	}
+}
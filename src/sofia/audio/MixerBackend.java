@@ -0,0 +1,539 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.os.Handler;
+import android.os.ParcelFileDescriptor;
+import android.util.SparseArray;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+//-------------------------------------------------------------------------
+/**
+ * An {@link AudioBackend} that mixes sounds itself instead of using a
+ * {@link android.media.SoundPool}. Each sound is decoded to PCM once, on a
+ * background thread; a dedicated audio thread then mixes the playing voices
+ * into a preallocated buffer and writes it to an {@link AudioSink} in small
+ * blocks. Compared to the sound pool, a new sound starts within a block or
+ * two, and the number of voices is limited only by the CPU. Scheduled plays
+ * start on the exact frame that corresponds to their start time.
+ * <p>
+ * When the last voice ends, the audio thread keeps the sink running and
+ * writes silence for a short grace period, so that a sound started soon
+ * afterwards does not wait for the sink to restart; only then is the sink
+ * stopped and the thread put to sleep. Install the backend with
+ * {@link #factory(int)}. For measuring off a device, construct it directly
+ * with a sink that discards its input and load sounds with
+ * {@link #load(PcmSound)}. The backend keeps its sounds in an
+ * {@link android.util.SparseArray}, so this needs a working implementation
+ * of the Android classes (such as the android-all jar that the benchmarks
+ * build against) on the classpath; the SDK's stub android.jar throws.
+ * </p>
+ *
+ * @author Tony Allevato
+ */
+public class MixerBackend implements ScheduledAudioBackend
+{
+	//~ Fields ................................................................
+
+	private static final int OUTPUT_RATE = 44100;
+
+	// About 5.8 ms at 44.1 kHz.
+	private static final int BLOCK_FRAMES = 256;
+
+	// How long the sink keeps playing silence after the last voice ends.
+	private static final int IDLE_GRACE_MILLIS = 500;
+
+	// How early scheduled plays are handed to the mixer: several blocks, so
+	// that the command thread waking late does not make them late.
+	private static final long SCHEDULE_LEAD_NANOS = 50000000L;
+
+	private final Mixer mixer;
+	private final AudioSink sink;
+	private final SoundDecoder decoder;
+	private final Executor callbackExecutor;
+	private final ExecutorService decodeExecutor;
+
+	// Loaded sounds by ID. Sounds that are still decoding map to null.
+	private final SparseArray<PcmSound> sounds;
+	private int nextSoundId;
+	private volatile LoadListener loadListener;
+
+
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a new mixer backend and starts its audio thread.
+	 *
+	 * @param maxVoices the maximum number of voices that can play at once
+	 * @param sink where the mixed audio is written
+	 * @param decoder decodes sound files to PCM
+	 * @param callbackExecutor the executor that load-complete notifications
+	 *     are delivered through; on a device this should run them on the
+	 *     main thread
+	 *
+	 * @throws IllegalArgumentException if maxVoices is less than 1
+	 */
+	public MixerBackend(int maxVoices, AudioSink sink, SoundDecoder decoder,
+			Executor callbackExecutor)
+	{
+		if (maxVoices < 1)
+		{
+			throw new IllegalArgumentException(
+					"maxVoices must be at least 1, but was " + maxVoices);
+		}
+
+		this.mixer = new Mixer(maxVoices, sink.getSampleRate());
+		this.sink = sink;
+		this.decoder = decoder;
+		this.callbackExecutor = callbackExecutor;
+		this.sounds = new SparseArray<PcmSound>();
+
+		decodeExecutor = Executors.newSingleThreadExecutor(new ThreadFactory()
+		{
+			// ----------------------------------------------------------
+			@Override
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, "MixerBackend decoder");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		Thread audioThread = new Thread(new Runnable()
+		{
+			// ----------------------------------------------------------
+			@Override
+			public void run()
+			{
+				runAudioLoop();
+			}
+		}, "MixerBackend audio");
+		audioThread.setDaemon(true);
+		audioThread.start();
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a factory that makes mixer backends writing to an
+	 * {@link android.media.AudioTrack}, for use with
+	 * {@link SoundPlayer#setBackendFactory(AudioBackend.Factory)}. Decoding
+	 * needs Jelly Bean or later.
+	 *
+	 * @param maxVoices the maximum number of voices that can play at once
+	 * @return the factory
+	 */
+	public static AudioBackend.Factory factory(int maxVoices)
+	{
+		return factory(maxVoices, false);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a factory that makes mixer backends writing to an
+	 * {@link android.media.AudioTrack}, optionally keeping decoded sounds in
+	 * the application's cache folder. Sounds read back from the disk cache
+	 * are memory-mapped rather than decoded, which makes loading a large
+	 * bank of sounds at startup much faster after the first launch. The
+	 * cache is discarded whenever the application is updated, and is kept
+	 * under 64 MB by deleting the sounds that were least recently used.
+	 *
+	 * @param maxVoices the maximum number of voices that can play at once
+	 * @param cacheDecodedSounds true to keep decoded sounds on disk
+	 * @return the factory
+	 */
+	public static AudioBackend.Factory factory(final int maxVoices,
+			final boolean cacheDecodedSounds)
+	{
+		return new AudioBackend.Factory()
+		{
+			// ----------------------------------------------------------
+			@Override
+			public AudioBackend create(Context context, int maxStreams)
+			{
+				final Handler handler = new Handler(context.getMainLooper());
+
+				SoundDecoder decoder = new MediaCodecDecoder();
+				if (cacheDecodedSounds)
+				{
+					decoder = new CachingSoundDecoder(decoder,
+							PcmDiskCache.forContext(context,
+									PcmDiskCache.DEFAULT_MAX_BYTES));
+				}
+
+				return new MixerBackend(Math.max(maxVoices, maxStreams),
+						new AudioTrackSink(OUTPUT_RATE, BLOCK_FRAMES),
+						decoder,
+						new Executor()
+						{
+							// ----------------------------------------------
+							@Override
+							public void execute(Runnable command)
+							{
+								handler.post(command);
+							}
+						});
+			}
+		};
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of voices that are playing (not paused).
+	 *
+	 * @return the number of playing voices
+	 */
+	public int getPlayingVoiceCount()
+	{
+		return mixer.getPlayingCount();
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Adds a sound that has already been decoded. The load listener is
+	 * still notified, through the callback executor.
+	 *
+	 * @param sound the decoded sound
+	 * @return the ID of the sound
+	 */
+	public int load(PcmSound sound)
+	{
+		int soundId;
+
+		synchronized (this)
+		{
+			soundId = ++nextSoundId;
+			sounds.put(soundId, null);
+		}
+
+		loaded(soundId, sound);
+		return soundId;
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public int load(AssetFileDescriptor fd, int priority)
+	{
+		// The caller closes the descriptor as soon as this returns, so the
+		// decoder needs its own.
+		final AssetFileDescriptor copy;
+
+		try
+		{
+			copy = new AssetFileDescriptor(
+					ParcelFileDescriptor.dup(fd.getFileDescriptor()),
+					fd.getStartOffset(), fd.getLength());
+		}
+		catch (IOException e)
+		{
+			return 0;
+		}
+
+		final int soundId;
+
+		synchronized (this)
+		{
+			soundId = ++nextSoundId;
+			sounds.put(soundId, null);
+		}
+
+		decodeExecutor.execute(new Runnable()
+		{
+			// ----------------------------------------------------------
+			@Override
+			public void run()
+			{
+				PcmSound sound = null;
+
+				try
+				{
+					sound = decoder.decode(copy);
+				}
+				catch (IOException e)
+				{
+					// Reported as a failed load below.
+				}
+				finally
+				{
+					try
+					{
+						copy.close();
+					}
+					catch (IOException e)
+					{
+						// Nothing more can be done.
+					}
+				}
+
+				loaded(soundId, sound);
+			}
+		});
+
+		return soundId;
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public void unload(int soundId)
+	{
+		PcmSound sound;
+
+		synchronized (this)
+		{
+			sound = sounds.get(soundId);
+			sounds.remove(soundId);
+		}
+
+		if (sound != null)
+		{
+			mixer.stopSound(sound);
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public int play(int soundId, float leftVolume, float rightVolume,
+			int priority, int loopCount, float rate)
+	{
+		PcmSound sound;
+
+		synchronized (this)
+		{
+			sound = sounds.get(soundId);
+		}
+
+		if (sound == null)
+		{
+			return 0;
+		}
+
+		return mixer.start(sound, leftVolume, rightVolume, priority,
+				loopCount, rate);
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public int playAt(int soundId, float leftVolume, float rightVolume,
+			int priority, int loopCount, float rate, long startNanos)
+	{
+		PcmSound sound;
+
+		synchronized (this)
+		{
+			sound = sounds.get(soundId);
+		}
+
+		if (sound == null)
+		{
+			return 0;
+		}
+
+		return mixer.startAt(sound, leftVolume, rightVolume, priority,
+				loopCount, rate, startNanos);
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public long getDurationNanos(int soundId)
+	{
+		PcmSound sound;
+
+		synchronized (this)
+		{
+			sound = sounds.get(soundId);
+		}
+
+		if (sound == null)
+		{
+			return 0;
+		}
+
+		return sound.getFrameCount() * 1000000000L / sound.getSampleRate();
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public long getScheduleLeadNanos()
+	{
+		return SCHEDULE_LEAD_NANOS;
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public void stop(int streamId)
+	{
+		mixer.stop(streamId);
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public void pause(int streamId)
+	{
+		mixer.pause(streamId);
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public void resume(int streamId)
+	{
+		mixer.resume(streamId);
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public void setVolume(int streamId, float leftVolume, float rightVolume)
+	{
+		mixer.setVolume(streamId, leftVolume, rightVolume);
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public void setRate(int streamId, float rate)
+	{
+		mixer.setRate(streamId, rate);
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public void setLoadListener(LoadListener listener)
+	{
+		loadListener = listener;
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public void release()
+	{
+		decodeExecutor.shutdownNow();
+		mixer.close();
+
+		synchronized (this)
+		{
+			sounds.clear();
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Records that a sound has finished decoding, and notifies the load
+	 * listener.
+	 *
+	 * @param soundId the ID of the sound
+	 * @param sound the decoded sound, or null if decoding failed
+	 */
+	private void loaded(final int soundId, final PcmSound sound)
+	{
+		synchronized (this)
+		{
+			if (sounds.indexOfKey(soundId) < 0)
+			{
+				// The sound was unloaded before it finished decoding.
+				return;
+			}
+
+			sounds.put(soundId, sound);
+		}
+
+		final LoadListener listener = loadListener;
+
+		if (listener != null)
+		{
+			callbackExecutor.execute(new Runnable()
+			{
+				// ----------------------------------------------------------
+				@Override
+				public void run()
+				{
+					listener.loadComplete(soundId, sound != null);
+				}
+			});
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * The body of the audio thread: mixes blocks while anything is playing
+	 * and for a grace period afterwards, and sleeps otherwise.
+	 */
+	private void runAudioLoop()
+	{
+		int frames = sink.getBlockFrames();
+		float[] block = new float[frames * 2];
+		long graceBlocks = Math.max(1,
+				(long) sink.getSampleRate() * IDLE_GRACE_MILLIS / 1000 / frames);
+
+		try
+		{
+			while (mixer.awaitPlaying())
+			{
+				sink.start();
+
+				// Counting idle blocks rather than stopping as soon as the
+				// mixer is idle keeps the frame count advancing, so plays
+				// scheduled during the grace period stay on time.
+				long idleBlocks = 0;
+
+				while (idleBlocks < graceBlocks && !mixer.isClosed())
+				{
+					idleBlocks = mixer.isPlaying() ? 0 : idleBlocks + 1;
+
+					mixer.mix(block, frames);
+					sink.write(block, frames);
+				}
+
+				sink.stop();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			// The backend is shutting down.
+		}
+		finally
+		{
+			sink.release();
+		}
+	}
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import android.media.AudioManager;
+import android.media.MediaPlayer;
+
+import java.io.IOException;
+
+//-------------------------------------------------------------------------
+/**
+ * A long sound, such as a music track, that is decoded a little at a time
+ * while it plays instead of being loaded into memory all at once. Streams
+ * are started with {@link SoundPlayer#playStream(String)} and
+ * {@link SoundPlayer#playStreamForever(String)}, and are paused, resumed, and
+ * stopped along with the player's other sounds.
+ * <p>
+ * Streams are played by a {@link MediaPlayer}, which only ever holds a few
+ * buffers of decoded audio, so the length of the track does not matter. A
+ * stream is prepared in the background and starts as soon as it is ready.
+ * Once it finishes (or is stopped) it releases its resources and cannot be
+ * started again.
+ * </p><p>
+ * Like {@link SoundPlayer}, a stream can be used from any thread. Its state
+ * is guarded by the stream's own lock, which the media player's callbacks
+ * on the main thread take as well. The lock is never held while calling
+ * back into the player, so the player can pause and resume its streams
+ * while holding its own lock.
+ * </p>
+ *
+ * @author Tony Allevato
+ */
+public class MusicStream
+{
+	//~ Fields ................................................................
+
+	private final SoundPlayer player;
+	private final String name;
+	private final MediaPlayer mediaPlayer;
+
+	// Guarded by this stream's lock.
+	private boolean prepared;
+	private boolean pausedByUser;
+	private boolean suspended;
+	private boolean stopped;
+
+
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a new stream and starts preparing it. Only
+	 * {@link SoundPlayer} creates these.
+	 *
+	 * @param player the sound player that owns the stream
+	 * @param name the name of the sound file
+	 * @param fd the descriptor of the sound file, which the media player
+	 *     makes its own copy of; the caller still closes it
+	 * @param looping true to repeat the stream until it is stopped
+	 * @param volume the volume of both channels, from 0 to 1
+	 *
+	 * @throws IOException if the media player cannot read the file
+	 */
+	MusicStream(SoundPlayer player, String name,
+			DescriptorTracker.Descriptor fd, boolean looping, float volume)
+		throws IOException
+	{
+		this.player = player;
+		this.name = name;
+
+		mediaPlayer = new MediaPlayer();
+		mediaPlayer.setAudioStreamType(AudioManager.STREAM_MUSIC);
+		mediaPlayer.setOnPreparedListener(listeners);
+		mediaPlayer.setOnCompletionListener(listeners);
+		mediaPlayer.setOnErrorListener(listeners);
+
+		try
+		{
+			mediaPlayer.setDataSource(fd.get().getFileDescriptor(),
+					fd.get().getStartOffset(), fd.getLength());
+		}
+		catch (IOException e)
+		{
+			mediaPlayer.release();
+			throw e;
+		}
+
+		mediaPlayer.setLooping(looping);
+		mediaPlayer.setVolume(volume, volume);
+		mediaPlayer.prepareAsync();
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the name of the sound file that this stream plays.
+	 *
+	 * @return the name of the sound file
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets a value indicating whether this stream is audible right now. A
+	 * stream that is still being prepared, or has been paused, is not
+	 * playing.
+	 *
+	 * @return true if the stream is playing
+	 */
+	public synchronized boolean isPlaying()
+	{
+		return prepared && !stopped && !pausedByUser && !suspended;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets a value indicating whether this stream has finished or been
+	 * stopped.
+	 *
+	 * @return true if the stream is stopped
+	 */
+	public synchronized boolean isStopped()
+	{
+		return stopped;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Pauses this stream. If it is still being prepared, it will not start
+	 * until it is resumed.
+	 */
+	public synchronized void pause()
+	{
+		if (!stopped && !pausedByUser)
+		{
+			pausedByUser = true;
+			update();
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Resumes this stream where it was paused.
+	 */
+	public synchronized void resume()
+	{
+		if (!stopped && pausedByUser)
+		{
+			pausedByUser = false;
+			update();
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Changes the volume of this stream.
+	 *
+	 * @param volume the volume, from 0 to 1
+	 */
+	public synchronized void setVolume(float volume)
+	{
+		if (!stopped)
+		{
+			mediaPlayer.setVolume(volume, volume);
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Stops this stream and releases its media player. Stopping a stream
+	 * that has already stopped does nothing.
+	 */
+	public void stop()
+	{
+		synchronized (this)
+		{
+			if (stopped)
+			{
+				return;
+			}
+
+			stopped = true;
+			mediaPlayer.release();
+		}
+
+		// The player may be holding its lock while it waits for this
+		// stream's, so tell it only once this stream's lock is released.
+		player.streamStopped(this);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Pauses this stream because its screen was paused, without affecting
+	 * whether the user paused it.
+	 */
+	synchronized void suspend()
+	{
+		if (!stopped && !suspended)
+		{
+			suspended = true;
+			update();
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Undoes {@link #suspend()} once the screen is resumed.
+	 */
+	synchronized void unsuspend()
+	{
+		if (!stopped && suspended)
+		{
+			suspended = false;
+			update();
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Starts or pauses the media player to match the stream's state. The
+	 * caller must hold this stream's lock.
+	 */
+	private void update()
+	{
+		if (!prepared || stopped)
+		{
+			return;
+		}
+
+		if (isPlaying())
+		{
+			mediaPlayer.start();
+		}
+		else if (mediaPlayer.isPlaying())
+		{
+			mediaPlayer.pause();
+		}
+	}
+
+
+	//~ Inner classes .........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Listens to the media player, which calls back on the main thread.
+	 */
+	private final Listeners listeners = new Listeners();
+
+
+	// ----------------------------------------------------------
+	private class Listeners implements MediaPlayer.OnPreparedListener,
+		MediaPlayer.OnCompletionListener, MediaPlayer.OnErrorListener
+	{
+		// ----------------------------------------------------------
+		@Override
+		public void onPrepared(MediaPlayer mp)
+		{
+			synchronized (MusicStream.this)
+			{
+				prepared = true;
+				update();
+			}
+		}
+
+
+		// ----------------------------------------------------------
+		@Override
+		public void onCompletion(MediaPlayer mp)
+		{
+			// Looping streams never complete.
+			stop();
+		}
+
+
+		// ----------------------------------------------------------
+		@Override
+		public boolean onError(MediaPlayer mp, int what, int extra)
+		{
+			stop();
+			return true;
+		}
+	}
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+
+//-------------------------------------------------------------------------
+/**
+ * The sounds packaged with an application. A sound is located by first
+ * checking the manifest, then for a resource with the matching name in
+ * res/raw, and if it is not found there then in the assets/sounds folder.
+ *
+ * @author Tony Allevato
+ */
+final class PackagedSoundLibrary implements SoundLibrary
+{
+	//~ Fields ................................................................
+
+	private final Context context;
+	private final RawResourceIndex rawResources;
+	private final AssetSoundIndex assetSounds;
+	private final SoundManifest manifest;
+
+
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates the library of an application.
+	 *
+	 * @param context the application context
+	 */
+	PackagedSoundLibrary(Context context)
+	{
+		this.context = context;
+
+		rawResources = RawResourceIndex.forContext(context);
+		assetSounds = AssetSoundIndex.forContext(context);
+		manifest = SoundManifest.forContext(context);
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	@Override
+	public SoundManifest getManifest()
+	{
+		return manifest;
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public Collection<String> names(String[] extensions)
+	{
+		LinkedHashSet<String> names =
+				new LinkedHashSet<String>(rawResources.names());
+
+		for (String name : assetSounds.names())
+		{
+			if (assetSounds.findPath(name, extensions) != null)
+			{
+				names.add(name);
+			}
+		}
+
+		return new ArrayList<String>(names);
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public DescriptorTracker.Descriptor open(String name,
+			String[] extensions, DescriptorTracker descriptors)
+	{
+		AssetFileDescriptor fd = openFromManifest(name);
+
+		if (fd == null)
+		{
+			fd = openFromResources(name);
+		}
+
+		if (fd == null)
+		{
+			fd = openFromAssets(name, extensions);
+		}
+
+		return descriptors.track(fd);
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public DecodedSizeEstimator.Estimate measure(String name,
+			DescriptorTracker.Descriptor fd)
+	{
+		return DecodedSizeEstimator.estimate(fd.get());
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Attempts to open a sound at the path the manifest gives for it,
+	 * without listing any folders.
+	 *
+	 * @param name the name of the sound file, without the file extension
+	 * @return an open descriptor for the sound file, or null if it is not in
+	 *     the manifest or could not be opened
+	 */
+	private AssetFileDescriptor openFromManifest(String name)
+	{
+		SoundInfo info = manifest.find(name);
+
+		if (info == null)
+		{
+			return null;
+		}
+
+		try
+		{
+			return context.getAssets().openFd(info.getPath());
+		}
+		catch (IOException e)
+		{
+			// The manifest is out of date, or the file was compressed in the
+			// APK; fall back to looking for it.
+			return null;
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Attempts to open a sound from a resource stored in the res/raw folder.
+	 *
+	 * @param name the name of the sound file, without the file extension
+	 * @return an open descriptor for the sound file, or null if it could not
+	 *     be found
+	 */
+	private AssetFileDescriptor openFromResources(String name)
+	{
+		int resId = rawResources.getIdentifier(name);
+
+		if (resId != 0)
+		{
+			return context.getResources().openRawResourceFd(resId);
+		}
+		else
+		{
+			return null;
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Attempts to open a sound from a resource stored in the assets/sounds
+	 * folder.
+	 *
+	 * @param name the name of the sound file, without the file extension
+	 * @param extensions the extensions to accept, in order of preference
+	 * @return an open descriptor for the sound file, or null if it could not
+	 *     be found
+	 */
+	private AssetFileDescriptor openFromAssets(String name,
+			String[] extensions)
+	{
+		String path = assetSounds.findPath(name, extensions);
+
+		if (path == null)
+		{
+			return null;
+		}
+
+		try
+		{
+			return context.getAssets().openFd(path);
+		}
+		catch (IOException e)
+		{
+			// The file is listed but cannot be opened as a descriptor (for
+			// example, because it was compressed in the APK).
+			return null;
+		}
+	}
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+//-------------------------------------------------------------------------
+/**
+ * Smoothly changes the volume and playback rate of a {@link SoundPlayer}'s
+ * streams. Changes are not sent to the backend when they are requested;
+ * instead, {@link #tick(long)} is called once per frame and sends at most
+ * one volume update and one rate update for each stream, however many
+ * changes were requested in between. A change with no ramp time is simply
+ * a ramp that finishes on the next tick.
+ * <p>
+ * Ramps are kept in parallel arrays sized to the player's number of voices,
+ * so scheduling and ticking never allocate. Ramps for streams that have
+ * been stopped or stolen are dropped on the next tick.
+ * </p>
+ *
+ * @author Tony Allevato
+ */
+final class ParameterRamps
+{
+	//~ Fields ................................................................
+
+	// Marks a parameter that is not being ramped.
+	private static final int IDLE = -1;
+
+	private final VoiceTable voices;
+	private final AudioBackend backend;
+
+	// The volume of each group, which scales the volume of its streams. The
+	// player owns the array and changes it in place.
+	private final float[] groupVolumes;
+
+	private final int[] streamIds;
+	private final float[] volumeFrom;
+	private final float[] volumeTo;
+	private final long[] volumeStart;
+	private final int[] volumeDuration;
+	private final float[] rateFrom;
+	private final float[] rateTo;
+	private final long[] rateStart;
+	private final int[] rateDuration;
+	private int count;
+
+
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a new ramp scheduler.
+	 *
+	 * @param voices the voices of the player, which hold the current values
+	 * @param backend the backend that updates are sent to
+	 * @param groupVolumes the volume of each group, indexed by group ID
+	 */
+	ParameterRamps(VoiceTable voices, AudioBackend backend,
+			float[] groupVolumes)
+	{
+		this.voices = voices;
+		this.backend = backend;
+		this.groupVolumes = groupVolumes;
+
+		int capacity = voices.capacity();
+		streamIds = new int[capacity];
+		volumeFrom = new float[capacity];
+		volumeTo = new float[capacity];
+		volumeStart = new long[capacity];
+		volumeDuration = new int[capacity];
+		rateFrom = new float[capacity];
+		rateTo = new float[capacity];
+		rateStart = new long[capacity];
+		rateDuration = new int[capacity];
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Starts ramping the volume of a stream from its current value,
+	 * replacing any volume ramp already in progress.
+	 *
+	 * @param streamId the stream ID, which must belong to a voice
+	 * @param volume the target volume
+	 * @param now the current time, in nanoseconds
+	 * @param durationMillis the length of the ramp, or 0 to change the
+	 *     volume on the next tick
+	 */
+	void rampVolume(int streamId, float volume, long now, int durationMillis)
+	{
+		int index = entryFor(streamId);
+
+		volumeFrom[index] = voices.volumeOf(streamId);
+		volumeTo[index] = volume;
+		volumeStart[index] = now;
+		volumeDuration[index] = durationMillis;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Starts ramping the playback rate of a stream from its current value,
+	 * replacing any rate ramp already in progress.
+	 *
+	 * @param streamId the stream ID, which must belong to a voice
+	 * @param rate the target rate
+	 * @param now the current time, in nanoseconds
+	 * @param durationMillis the length of the ramp, or 0 to change the rate
+	 *     on the next tick
+	 */
+	void rampRate(int streamId, float rate, long now, int durationMillis)
+	{
+		int index = entryFor(streamId);
+
+		rateFrom[index] = voices.rateOf(streamId);
+		rateTo[index] = rate;
+		rateStart[index] = now;
+		rateDuration[index] = durationMillis;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Advances every ramp to the specified time and sends the new values to
+	 * the backend. Finished ramps are removed.
+	 *
+	 * @param now the current time, in nanoseconds
+	 * @return true if any ramps are still in progress
+	 */
+	boolean tick(long now)
+	{
+		int index = 0;
+
+		while (index < count)
+		{
+			int streamId = streamIds[index];
+
+			if (voices.soundOf(streamId) == 0)
+			{
+				removeEntry(index);
+				continue;
+			}
+
+			if (volumeDuration[index] != IDLE)
+			{
+				float volume = interpolate(volumeFrom[index], volumeTo[index],
+						volumeStart[index], volumeDuration[index], now);
+				float pan = voices.panOf(streamId);
+				float gain = volume * groupVolumes[voices.groupOf(streamId)];
+
+				voices.setVolume(streamId, volume);
+				backend.setVolume(streamId,
+						leftGain(gain, pan), rightGain(gain, pan));
+
+				if (volume == volumeTo[index])
+				{
+					volumeDuration[index] = IDLE;
+				}
+			}
+
+			if (rateDuration[index] != IDLE)
+			{
+				float rate = interpolate(rateFrom[index], rateTo[index],
+						rateStart[index], rateDuration[index], now);
+
+				voices.setRate(streamId, rate, now);
+				backend.setRate(streamId, rate);
+
+				if (rate == rateTo[index])
+				{
+					rateDuration[index] = IDLE;
+				}
+			}
+
+			if (volumeDuration[index] == IDLE && rateDuration[index] == IDLE)
+			{
+				removeEntry(index);
+			}
+			else
+			{
+				index++;
+			}
+		}
+
+		return count > 0;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Drops every ramp.
+	 */
+	void clear()
+	{
+		count = 0;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Computes the gain of the left channel for a volume and pan. A centered
+	 * sound plays at full volume in both channels; panning it lowers the
+	 * opposite channel.
+	 *
+	 * @param volume the volume, from 0 to 1
+	 * @param pan the pan, from -1 (left) to 1 (right)
+	 * @return the gain of the left channel
+	 */
+	static float leftGain(float volume, float pan)
+	{
+		return (pan > 0) ? volume * (1 - pan) : volume;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Computes the gain of the right channel for a volume and pan.
+	 *
+	 * @param volume the volume, from 0 to 1
+	 * @param pan the pan, from -1 (left) to 1 (right)
+	 * @return the gain of the right channel
+	 */
+	static float rightGain(float volume, float pan)
+	{
+		return (pan < 0) ? volume * (1 + pan) : volume;
+	}
+
+
+	// ----------------------------------------------------------
+	private static float interpolate(
+			float from, float to, long start, int duration, long now)
+	{
+		long elapsed = now - start;
+		long length = duration * 1000000L;
+
+		if (elapsed >= length)
+		{
+			return to;
+		}
+
+		return from + (to - from) * elapsed / length;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Finds the entry for a stream, adding one if it has none.
+	 *
+	 * @param streamId the stream ID
+	 * @return the index of the entry
+	 */
+	private int entryFor(int streamId)
+	{
+		for (int i = 0; i < count; i++)
+		{
+			if (streamIds[i] == streamId)
+			{
+				return i;
+			}
+		}
+
+		if (count == streamIds.length)
+		{
+			// Some entries must belong to streams that have since been
+			// stopped, since there is one voice per entry.
+			purgeStoppedStreams();
+		}
+
+		int index = count++;
+		streamIds[index] = streamId;
+		volumeDuration[index] = IDLE;
+		rateDuration[index] = IDLE;
+		return index;
+	}
+
+
+	// ----------------------------------------------------------
+	private void purgeStoppedStreams()
+	{
+		for (int i = count - 1; i >= 0; i--)
+		{
+			if (voices.soundOf(streamIds[i]) == 0)
+			{
+				removeEntry(i);
+			}
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	private void removeEntry(int index)
+	{
+		int last = --count;
+
+		streamIds[index] = streamIds[last];
+		volumeFrom[index] = volumeFrom[last];
+		volumeTo[index] = volumeTo[last];
+		volumeStart[index] = volumeStart[last];
+		volumeDuration[index] = volumeDuration[last];
+		rateFrom[index] = rateFrom[last];
+		rateTo[index] = rateTo[last];
+		rateStart[index] = rateStart[last];
+		rateDuration[index] = rateDuration[last];
+	}
+}
@@ -0,0 +1,411 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+
+//-------------------------------------------------------------------------
+/**
+ * Keeps decoded sounds on disk so that they do not have to be decoded again
+ * the next time the application starts. Each sound is one file holding a
+ * small header followed by its float samples in the device's byte order;
+ * reading it back maps the file into memory, so the samples never pass
+ * through the Java heap.
+ * <p>
+ * The cache lives in a folder named after the version of the application
+ * (its version code and the time it was installed or updated), so sounds
+ * decoded from an older APK are never used. Folders for other versions are
+ * deleted the first time the cache is read or written, which happens on the
+ * decoder's thread rather than the thread that created the cache. Files
+ * are written under a temporary name and renamed once complete, so a crash
+ * while writing never leaves a truncated sound behind.
+ * </p><p>
+ * The folder is kept under a size limit. When a new file takes it over the
+ * limit, the files that were least recently read or written are deleted
+ * until it fits again. Deleting a file that is mapped into memory is safe;
+ * the mapping stays valid until it is no longer used.
+ * </p>
+ *
+ * @author Tony Allevato
+ */
+final class PcmDiskCache
+{
+	//~ Fields ................................................................
+
+	private static final String TAG = "PcmDiskCache";
+	private static final String CACHE_FOLDER = "sofia-audio-pcm";
+	private static final String SUFFIX = ".pcm";
+	private static final String TEMPORARY_SUFFIX = ".tmp";
+
+	// The default size limit of the cache folder.
+	static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+	private static final int MAGIC = 0x50434d31;
+	private static final int HEADER_BYTES = 16;
+
+	private final File directory;
+	private final long maxBytes;
+
+	// Whether the folders of other versions have been deleted yet.
+	private boolean cleaned;
+
+
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a cache that keeps its files in the specified folder, which
+	 * is the only folder its parent may contain.
+	 *
+	 * @param directory the folder, which is created if necessary
+	 * @param maxBytes the most that the files in the folder may add up to
+	 *
+	 * @throws IllegalArgumentException if maxBytes is not positive
+	 */
+	PcmDiskCache(File directory, long maxBytes)
+	{
+		if (maxBytes <= 0)
+		{
+			throw new IllegalArgumentException(
+					"maxBytes must be positive, but was " + maxBytes);
+		}
+
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates the cache for the current version of an application. Nothing
+	 * is read from or written to the disk until the cache is first used.
+	 *
+	 * @param context the application context
+	 * @param maxBytes the most that the cached files may add up to
+	 * @return the cache
+	 */
+	static PcmDiskCache forContext(Context context, long maxBytes)
+	{
+		File root = new File(context.getCacheDir(), CACHE_FOLDER);
+		return new PcmDiskCache(new File(root, versionOf(context)), maxBytes);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Reads a sound from the cache.
+	 *
+	 * @param key the key of the sound
+	 * @return the sound, backed by a memory-mapped buffer, or null if it is
+	 *     not in the cache or its file is damaged
+	 */
+	PcmSound read(String key)
+	{
+		removeOtherVersions();
+
+		File file = new File(directory, key + SUFFIX);
+
+		if (!file.isFile())
+		{
+			return null;
+		}
+
+		RandomAccessFile input = null;
+
+		try
+		{
+			input = new RandomAccessFile(file, "r");
+			FileChannel channel = input.getChannel();
+
+			// The mapping stays valid after the channel is closed.
+			MappedByteBuffer mapped = channel.map(
+					FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			mapped.order(ByteOrder.nativeOrder());
+
+			if (channel.size() < HEADER_BYTES || mapped.getInt(0) != MAGIC)
+			{
+				file.delete();
+				return null;
+			}
+
+			int channels = mapped.getInt(4);
+			int sampleRate = mapped.getInt(8);
+			int sampleCount = mapped.getInt(12);
+
+			if (channel.size() != HEADER_BYTES + sampleCount * 4L)
+			{
+				file.delete();
+				return null;
+			}
+
+			mapped.position(HEADER_BYTES);
+			FloatBuffer samples = mapped.slice()
+					.order(ByteOrder.nativeOrder()).asFloatBuffer();
+
+			// Keeps recently used sounds from being trimmed first.
+			file.setLastModified(System.currentTimeMillis());
+
+			return new PcmSound(samples, channels, sampleRate);
+		}
+		catch (IOException e)
+		{
+			Log.w(TAG, "Could not read cached sound " + key, e);
+			return null;
+		}
+		catch (IllegalArgumentException e)
+		{
+			// The header describes a sound that cannot exist.
+			file.delete();
+			return null;
+		}
+		finally
+		{
+			closeQuietly(input);
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Writes a sound to the cache, and trims the cache back under its size
+	 * limit. Sounds larger than the limit are not written. Failures are
+	 * logged and otherwise ignored, since the sound can always be decoded
+	 * again.
+	 *
+	 * @param key the key of the sound
+	 * @param sound the sound
+	 */
+	void write(String key, PcmSound sound)
+	{
+		removeOtherVersions();
+
+		long size = HEADER_BYTES + sound.samples.capacity() * 4L;
+		if (size > maxBytes)
+		{
+			return;
+		}
+
+		if (!directory.isDirectory() && !directory.mkdirs())
+		{
+			Log.w(TAG, "Could not create " + directory);
+			return;
+		}
+
+		File temporary = new File(directory, key + TEMPORARY_SUFFIX);
+		RandomAccessFile output = null;
+
+		try
+		{
+			FloatBuffer samples = sound.samples.duplicate();
+			samples.clear();
+
+			output = new RandomAccessFile(temporary, "rw");
+			FileChannel channel = output.getChannel();
+
+			MappedByteBuffer mapped = channel.map(
+					FileChannel.MapMode.READ_WRITE, 0, size);
+			mapped.order(ByteOrder.nativeOrder());
+
+			mapped.putInt(MAGIC);
+			mapped.putInt(sound.getChannels());
+			mapped.putInt(sound.getSampleRate());
+			mapped.putInt(samples.capacity());
+			mapped.slice().order(ByteOrder.nativeOrder())
+					.asFloatBuffer().put(samples);
+			mapped.force();
+
+			output.close();
+			output = null;
+
+			File file = new File(directory, key + SUFFIX);
+
+			if (temporary.renameTo(file))
+			{
+				trim(file);
+			}
+			else
+			{
+				temporary.delete();
+			}
+		}
+		catch (IOException e)
+		{
+			Log.w(TAG, "Could not cache sound " + key, e);
+			temporary.delete();
+		}
+		finally
+		{
+			closeQuietly(output);
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Deletes the least recently used files until the folder fits within
+	 * the size limit.
+	 *
+	 * @param keep the file that was just written, which is kept
+	 */
+	private void trim(File keep)
+	{
+		File[] files = directory.listFiles();
+
+		if (files == null)
+		{
+			return;
+		}
+
+		long total = 0;
+		for (File file : files)
+		{
+			total += file.length();
+		}
+
+		if (total <= maxBytes)
+		{
+			return;
+		}
+
+		Arrays.sort(files, new Comparator<File>()
+		{
+			// ----------------------------------------------------------
+			@Override
+			public int compare(File first, File second)
+			{
+				long a = first.lastModified();
+				long b = second.lastModified();
+				return (a < b) ? -1 : ((a == b) ? 0 : 1);
+			}
+		});
+
+		for (int i = 0; i < files.length && total > maxBytes; i++)
+		{
+			if (!files[i].equals(keep))
+			{
+				long length = files[i].length();
+
+				if (files[i].delete())
+				{
+					total -= length;
+				}
+			}
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Deletes the cache folders of other versions of the application, the
+	 * first time this is called.
+	 */
+	private synchronized void removeOtherVersions()
+	{
+		if (cleaned)
+		{
+			return;
+		}
+
+		cleaned = true;
+
+		File[] others = directory.getParentFile().listFiles();
+		if (others != null)
+		{
+			for (File other : others)
+			{
+				if (!other.equals(directory))
+				{
+					deleteRecursively(other);
+				}
+			}
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets a folder name that changes whenever the application is
+	 * reinstalled or updated.
+	 *
+	 * @param context the application context
+	 * @return the version folder name
+	 */
+	private static String versionOf(Context context)
+	{
+		try
+		{
+			PackageInfo info = context.getPackageManager()
+					.getPackageInfo(context.getPackageName(), 0);
+
+			return info.versionCode + "-" + info.lastUpdateTime;
+		}
+		catch (PackageManager.NameNotFoundException e)
+		{
+			// Cannot happen for our own package.
+			return "unknown";
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	private static void deleteRecursively(File file)
+	{
+		File[] children = file.listFiles();
+
+		if (children != null)
+		{
+			for (File child : children)
+			{
+				deleteRecursively(child);
+			}
+		}
+
+		file.delete();
+	}
+
+
+	// ----------------------------------------------------------
+	private static void closeQuietly(RandomAccessFile file)
+	{
+		if (file != null)
+		{
+			try
+			{
+				file.close();
+			}
+			catch (IOException e)
+			{
+				// Nothing more can be done.
+			}
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import java.nio.FloatBuffer;
+
+//-------------------------------------------------------------------------
+/**
+ * A sound that has been decoded to floating-point PCM, ready to be mixed by
+ * a {@link MixerBackend}. Samples are in the range -1 to 1, and stereo
+ * sounds are interleaved left first. The samples can live in an array or in
+ * a direct or memory-mapped buffer, so sounds read back from a disk cache
+ * are never copied onto the heap.
+ *
+ * @author Tony Allevato
+ */
+public final class PcmSound
+{
+	//~ Fields ................................................................
+
+	// Read by the mixer with absolute gets only.
+	final FloatBuffer samples;
+	private final int channels;
+	private final int sampleRate;
+
+
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a new sound. The array is used directly, not copied, so it
+	 * must not be changed afterwards.
+	 *
+	 * @param samples the samples, interleaved if there are two channels
+	 * @param channels the number of channels, 1 or 2
+	 * @param sampleRate the sample rate, in Hz
+	 *
+	 * @throws IllegalArgumentException if the sound has no frames, the
+	 *     channel count is not 1 or 2, or the sample rate is not positive
+	 */
+	public PcmSound(float[] samples, int channels, int sampleRate)
+	{
+		this(FloatBuffer.wrap(samples), channels, sampleRate);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a new sound whose samples are in a buffer, from its position
+	 * to its limit. The buffer is used directly, not copied, so its contents
+	 * must not be changed afterwards.
+	 *
+	 * @param samples the samples, interleaved if there are two channels
+	 * @param channels the number of channels, 1 or 2
+	 * @param sampleRate the sample rate, in Hz
+	 *
+	 * @throws IllegalArgumentException if the sound has no frames, the
+	 *     channel count is not 1 or 2, or the sample rate is not positive
+	 */
+	public PcmSound(FloatBuffer samples, int channels, int sampleRate)
+	{
+		if (channels != 1 && channels != 2)
+		{
+			throw new IllegalArgumentException(
+					"channels must be 1 or 2, but was " + channels);
+		}
+
+		if (sampleRate <= 0)
+		{
+			throw new IllegalArgumentException(
+					"sampleRate must be positive, but was " + sampleRate);
+		}
+
+		if (samples.remaining() < channels)
+		{
+			throw new IllegalArgumentException(
+					"A sound must have at least one frame");
+		}
+
+		this.samples = samples.slice();
+		this.channels = channels;
+		this.sampleRate = sampleRate;
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the samples of this sound.
+	 *
+	 * @return a read-only view of the samples
+	 */
+	public FloatBuffer getSamples()
+	{
+		return samples.asReadOnlyBuffer();
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of channels in this sound.
+	 *
+	 * @return 1 for mono or 2 for stereo
+	 */
+	public int getChannels()
+	{
+		return channels;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the sample rate of this sound.
+	 *
+	 * @return the sample rate, in Hz
+	 */
+	public int getSampleRate()
+	{
+		return sampleRate;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of frames (samples per channel) in this sound.
+	 *
+	 * @return the number of frames
+	 */
+	public int getFrameCount()
+	{
+		return samples.capacity() / channels;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the amount of memory that the samples of this sound take up.
+	 *
+	 * @return the size of the samples, in bytes
+	 */
+	public long getSizeInBytes()
+	{
+		return samples.capacity() * 4L;
+	}
+}
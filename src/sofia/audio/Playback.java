@@ -0,0 +1,412 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+//-------------------------------------------------------------------------
+/**
+ * A handle to a single request to play a sound, returned by the
+ * {@code play} methods of {@link SoundPlayer}. Playing a sound never blocks
+ * the calling thread; if the sound has not finished loading yet, the request
+ * is queued and started as soon as the sound pool reports that loading is
+ * complete. A {@link Listener} can be attached to find out when that
+ * happens.
+ *
+ * @author Tony Allevato
+ */
+public class Playback
+{
+	//~ Fields ................................................................
+
+	private static final int PENDING = 0;
+	private static final int STARTED = 1;
+	private static final int FAILED = 2;
+	private static final int CANCELLED = 3;
+
+	private final SoundPlayer player;
+	private final SoundHandle sound;
+	private final int loopCount;
+	private final int priority;
+	private final float volume;
+	private final float pan;
+	private final float rate;
+
+	private int state;
+	private int streamId;
+	private Listener listener;
+
+	// When the playback was queued to wait for its sound, for SoundMetrics.
+	// Only the sound player touches it, with the bank's lock held.
+	long queuedNanos;
+
+	// For a play scheduled with SoundPlayer.playAt(), when the sound should
+	// start, when the command thread should hand it to the backend, and its
+	// position in the scheduler's heap (-1 when it is not there). Guarded by
+	// the bank's lock.
+	long startNanos = SoundPlayer.UNSCHEDULED;
+	long dispatchNanos;
+	int heapIndex = -1;
+
+
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a new pending playback. Only {@link SoundPlayer} creates these.
+	 *
+	 * @param player the sound player that owns the playback
+	 * @param sound the sound being played
+	 * @param loopCount the number of times to repeat the sound
+	 * @param priority the priority of the stream
+	 * @param volume the volume of the stream
+	 * @param pan the pan of the stream
+	 * @param rate the playback rate of the stream
+	 */
+	Playback(SoundPlayer player, SoundHandle sound, int loopCount,
+			int priority, float volume, float pan, float rate)
+	{
+		this.player = player;
+		this.sound = sound;
+		this.loopCount = loopCount;
+		this.priority = priority;
+		this.volume = volume;
+		this.pan = pan;
+		this.rate = rate;
+		this.state = PENDING;
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the name of the sound that this playback refers to.
+	 *
+	 * @return the name of the sound
+	 */
+	public String getSoundName()
+	{
+		return sound.getName();
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the handle of the sound that this playback refers to.
+	 *
+	 * @return the handle of the sound
+	 */
+	public SoundHandle getSound()
+	{
+		return sound;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the sound pool stream ID of this playback, once it has started.
+	 *
+	 * @return the stream ID, or 0 if the playback has not started
+	 */
+	public synchronized int getStreamId()
+	{
+		return streamId;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets a value indicating whether this playback is still waiting for its
+	 * sound to finish loading.
+	 *
+	 * @return true if the playback has not yet started, failed, or been
+	 *     cancelled
+	 */
+	public synchronized boolean isPending()
+	{
+		return state == PENDING;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets a value indicating whether this playback has started.
+	 *
+	 * @return true if the sound pool has started playing the sound
+	 */
+	public synchronized boolean isStarted()
+	{
+		return state == STARTED;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets a value indicating whether this playback failed, either because
+	 * the sound could not be decoded or because the sound pool refused to
+	 * play it.
+	 *
+	 * @return true if the playback failed
+	 */
+	public synchronized boolean isFailed()
+	{
+		return state == FAILED;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets a value indicating whether this playback was cancelled before it
+	 * started.
+	 *
+	 * @return true if the playback was cancelled
+	 */
+	public synchronized boolean isCancelled()
+	{
+		return state == CANCELLED;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Cancels this playback if it has not started yet, so that the sound will
+	 * not play when it finishes loading or when its scheduled time comes.
+	 * Playbacks that have already started
+	 * are not affected; use {@link SoundPlayer#stop(String)} for those.
+	 *
+	 * @return true if the playback was cancelled, or false if it had already
+	 *     started or failed
+	 */
+	public boolean cancel()
+	{
+		synchronized (this)
+		{
+			if (state != PENDING)
+			{
+				return false;
+			}
+
+			state = CANCELLED;
+		}
+
+		player.cancelPending(this);
+		return true;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Sets the listener that will be notified when this playback starts or
+	 * fails. If that has already happened, the listener is notified
+	 * immediately.
+	 *
+	 * @param listener the listener, or null to remove it
+	 */
+	public void setListener(Listener listener)
+	{
+		int currentState;
+
+		synchronized (this)
+		{
+			this.listener = listener;
+			currentState = state;
+		}
+
+		if (listener != null)
+		{
+			notifyListener(listener, currentState);
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the sound player that owns this playback.
+	 *
+	 * @return the sound player
+	 */
+	SoundPlayer getPlayer()
+	{
+		return player;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of times the sound should be repeated.
+	 *
+	 * @return the loop count
+	 */
+	int getLoopCount()
+	{
+		return loopCount;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the priority that the sound should be played with.
+	 *
+	 * @return the priority
+	 */
+	int getPriority()
+	{
+		return priority;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the volume that the sound should be played at.
+	 *
+	 * @return the volume
+	 */
+	float getVolume()
+	{
+		return volume;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the pan that the sound should be played with.
+	 *
+	 * @return the pan
+	 */
+	float getPan()
+	{
+		return pan;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the rate that the sound should be played at.
+	 *
+	 * @return the playback rate
+	 */
+	float getRate()
+	{
+		return rate;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Called by the sound player when the sound pool has started playing this
+	 * playback's sound.
+	 *
+	 * @param newStreamId the stream ID returned by the sound pool
+	 */
+	void started(int newStreamId)
+	{
+		finish(STARTED, newStreamId);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Called by the sound player when this playback could not be started.
+	 */
+	void failed()
+	{
+		finish(FAILED, 0);
+	}
+
+
+	// ----------------------------------------------------------
+	private void finish(final int newState, int newStreamId)
+	{
+		final Listener currentListener;
+
+		synchronized (this)
+		{
+			if (state != PENDING)
+			{
+				return;
+			}
+
+			state = newState;
+			streamId = newStreamId;
+			currentListener = listener;
+		}
+
+		// The player calls this with the bank's lock held, from whichever
+		// thread started or failed the playback, so the listener is called
+		// later on the main thread instead.
+		if (currentListener != null)
+		{
+			player.post(new Runnable()
+			{
+				// ----------------------------------------------------------
+				@Override
+				public void run()
+				{
+					notifyListener(currentListener, newState);
+				}
+			});
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	private void notifyListener(Listener target, int currentState)
+	{
+		if (currentState == STARTED)
+		{
+			target.playbackStarted(this);
+		}
+		else if (currentState == FAILED)
+		{
+			target.playbackFailed(this);
+		}
+	}
+
+
+	//~ Inner classes .........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Receives notifications about a {@link Playback}. Playbacks start or
+	 * fail on the thread that called {@code play}, on the thread the backend
+	 * reports loads on, or on the command thread for scheduled and queued
+	 * plays, always with the sound bank's lock held; the notification is
+	 * posted from there to the main thread, so listeners never run under
+	 * that lock. The one exception is
+	 * {@link Playback#setListener(Listener)} on a playback that has already
+	 * finished, which notifies the new listener right away on the calling
+	 * thread.
+	 */
+	public interface Listener
+	{
+		// ----------------------------------------------------------
+		/**
+		 * Called when the playback has started.
+		 *
+		 * @param playback the playback that started
+		 */
+		void playbackStarted(Playback playback);
+
+
+		// ----------------------------------------------------------
+		/**
+		 * Called when the playback could not be started.
+		 *
+		 * @param playback the playback that failed
+		 */
+		void playbackFailed(Playback playback);
+	}
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import java.util.ArrayList;
+
+//-------------------------------------------------------------------------
+/**
+ * The plays that {@link SoundPlayer#playAt(String, long)} has scheduled and
+ * that have not been handed to the backend yet, kept in a binary heap
+ * ordered by the time each one is due. The bank's command thread takes
+ * plays off the heap as they come due and sleeps until the next one.
+ * <p>
+ * Every method must be called with the bank's lock held.
+ * </p>
+ *
+ * @author Tony Allevato
+ */
+final class PlaybackScheduler
+{
+	//~ Fields ................................................................
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private Playback[] heap;
+	private int size;
+
+
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a new, empty scheduler.
+	 */
+	PlaybackScheduler()
+	{
+		heap = new Playback[INITIAL_CAPACITY];
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Adds a play to the heap. Its {@code dispatchNanos} must already be
+	 * set.
+	 *
+	 * @param playback the play
+	 * @return true if the play is now the first one due, in which case the
+	 *     command thread must be woken to wait for it instead
+	 */
+	boolean add(Playback playback)
+	{
+		if (size == heap.length)
+		{
+			Playback[] grown = new Playback[size * 2];
+			System.arraycopy(heap, 0, grown, 0, size);
+			heap = grown;
+		}
+
+		heap[size] = playback;
+		playback.heapIndex = size;
+		size++;
+		siftUp(size - 1);
+
+		return heap[0] == playback;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Removes a play from the heap, if it is still there.
+	 *
+	 * @param playback the play
+	 */
+	void remove(Playback playback)
+	{
+		int index = playback.heapIndex;
+
+		if (index < 0 || index >= size || heap[index] != playback)
+		{
+			return;
+		}
+
+		removeAt(index);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Cancels every play that a player has scheduled, or only those of one
+	 * sound.
+	 *
+	 * @param player the player
+	 * @param sound the sound, or null to cancel all of the player's plays
+	 */
+	void cancel(SoundPlayer player, SoundHandle sound)
+	{
+		ArrayList<Playback> matches = null;
+
+		for (int i = 0; i < size; i++)
+		{
+			Playback playback = heap[i];
+
+			if (playback.getPlayer() == player
+					&& (sound == null || playback.getSound() == sound))
+			{
+				if (matches == null)
+				{
+					matches = new ArrayList<Playback>();
+				}
+
+				matches.add(playback);
+			}
+		}
+
+		if (matches != null)
+		{
+			for (Playback playback : matches)
+			{
+				remove(playback);
+				playback.cancel();
+			}
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets a value indicating whether any scheduled play is for the
+	 * specified sound, which must then stay loaded.
+	 *
+	 * @param soundId the sound pool ID of the sound
+	 * @return true if the sound is scheduled to play
+	 */
+	boolean isScheduled(int soundId)
+	{
+		for (int i = 0; i < size; i++)
+		{
+			if (heap[i].getSound().soundId == soundId)
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Takes the first play off the heap if it is due.
+	 *
+	 * @param now the current time, from the player's {@link SoundClock}
+	 * @return the play, or null if none is due
+	 */
+	Playback poll(long now)
+	{
+		if (size == 0 || heap[0].dispatchNanos - now > 0)
+		{
+			return null;
+		}
+
+		Playback first = heap[0];
+		removeAt(0);
+		return first;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets how long it is until the first play on the heap is due.
+	 *
+	 * @param now the current time, from the player's {@link SoundClock}
+	 * @return the time in nanoseconds, which is at least 1, or
+	 *     {@link Long#MAX_VALUE} if the heap is empty
+	 */
+	long nanosUntilNext(long now)
+	{
+		if (size == 0)
+		{
+			return Long.MAX_VALUE;
+		}
+
+		return Math.max(1, heap[0].dispatchNanos - now);
+	}
+
+
+	// ----------------------------------------------------------
+	private void removeAt(int index)
+	{
+		heap[index].heapIndex = -1;
+		size--;
+
+		if (index != size)
+		{
+			Playback last = heap[size];
+			heap[index] = last;
+			last.heapIndex = index;
+			siftDown(index);
+
+			if (heap[index] == last)
+			{
+				siftUp(index);
+			}
+		}
+
+		heap[size] = null;
+	}
+
+
+	// ----------------------------------------------------------
+	private void siftUp(int index)
+	{
+		Playback playback = heap[index];
+
+		while (index > 0)
+		{
+			int parent = (index - 1) >>> 1;
+
+			if (heap[parent].dispatchNanos - playback.dispatchNanos <= 0)
+			{
+				break;
+			}
+
+			heap[index] = heap[parent];
+			heap[index].heapIndex = index;
+			index = parent;
+		}
+
+		heap[index] = playback;
+		playback.heapIndex = index;
+	}
+
+
+	// ----------------------------------------------------------
+	private void siftDown(int index)
+	{
+		Playback playback = heap[index];
+		int half = size >>> 1;
+
+		while (index < half)
+		{
+			int child = 2 * index + 1;
+			int right = child + 1;
+
+			if (right < size
+					&& heap[right].dispatchNanos - heap[child].dispatchNanos < 0)
+			{
+				child = right;
+			}
+
+			if (playback.dispatchNanos - heap[child].dispatchNanos <= 0)
+			{
+				break;
+			}
+
+			heap[index] = heap[child];
+			heap[index].heapIndex = index;
+			index = child;
+		}
+
+		heap[index] = playback;
+		playback.heapIndex = index;
+	}
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+//-------------------------------------------------------------------------
+/**
+ * A handle to a batch of sounds being loaded in the background, returned by
+ * {@link SoundPlayer#preload(java.util.Collection)} and
+ * {@link SoundPlayer#preloadAll()}. A sound counts as finished once the
+ * sound pool has decoded it (or failed to), so when the preload is finished
+ * every sound in it can be played without waiting.
+ *
+ * @author Tony Allevato
+ */
+public class Preload
+{
+	//~ Fields ................................................................
+
+	private int totalCount;
+	private int finishedCount;
+	private int failedCount;
+	private long totalBytes;
+	private long finishedBytes;
+	private boolean submitted;
+	private Listener listener;
+
+
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a new preload. Only {@link SoundPlayer} creates these.
+	 *
+	 * @param totalCount the number of sounds in the preload
+	 */
+	Preload(int totalCount)
+	{
+		this.totalCount = totalCount;
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of sounds in this preload.
+	 *
+	 * @return the number of sounds
+	 */
+	public synchronized int getTotalCount()
+	{
+		return totalCount;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of sounds that have finished loading, including those
+	 * that failed.
+	 *
+	 * @return the number of finished sounds
+	 */
+	public synchronized int getFinishedCount()
+	{
+		return finishedCount;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of sounds that could not be found or decoded.
+	 *
+	 * @return the number of failed sounds
+	 */
+	public synchronized int getFailedCount()
+	{
+		return failedCount;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the total size, in bytes, of the sound files in this preload. This
+	 * grows while the background loader locates the files, and is final once
+	 * every file has been submitted to the sound pool.
+	 *
+	 * @return the total size of the sound files
+	 */
+	public synchronized long getTotalBytes()
+	{
+		return totalBytes;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the size, in bytes, of the sound files that have finished
+	 * loading.
+	 *
+	 * @return the size of the finished sound files
+	 */
+	public synchronized long getFinishedBytes()
+	{
+		return finishedBytes;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets a value indicating whether every sound in this preload has
+	 * finished loading.
+	 *
+	 * @return true if the preload is finished
+	 */
+	public synchronized boolean isFinished()
+	{
+		return submitted && finishedCount == totalCount;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Sets the listener that will be notified as sounds in this preload
+	 * finish loading. If the preload is already finished, the listener is
+	 * notified immediately.
+	 *
+	 * @param listener the listener, or null to remove it
+	 */
+	public void setListener(Listener listener)
+	{
+		boolean finished;
+
+		synchronized (this)
+		{
+			this.listener = listener;
+			finished = isFinished();
+		}
+
+		if (listener != null && finished)
+		{
+			listener.preloadFinished(this);
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Called by the background loader when it has located a sound file and
+	 * submitted it to the sound pool.
+	 *
+	 * @param bytes the size of the sound file
+	 */
+	synchronized void addBytes(long bytes)
+	{
+		totalBytes += bytes;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Called by the background loader once every sound has been submitted
+	 * to the sound pool, so that the byte total is final.
+	 */
+	void submitted()
+	{
+		synchronized (this)
+		{
+			submitted = true;
+		}
+
+		notifyListener();
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Called by the sound player when one of the sounds in this preload has
+	 * finished loading.
+	 *
+	 * @param bytes the size of the sound file
+	 * @param succeeded true if the sound was decoded successfully
+	 */
+	void soundFinished(long bytes, boolean succeeded)
+	{
+		synchronized (this)
+		{
+			finishedCount++;
+			finishedBytes += bytes;
+
+			if (!succeeded)
+			{
+				failedCount++;
+			}
+		}
+
+		notifyListener();
+	}
+
+
+	// ----------------------------------------------------------
+	private void notifyListener()
+	{
+		Listener currentListener;
+		boolean finished;
+
+		synchronized (this)
+		{
+			currentListener = listener;
+			finished = isFinished();
+		}
+
+		if (currentListener != null)
+		{
+			currentListener.preloadProgressed(this);
+
+			if (finished)
+			{
+				currentListener.preloadFinished(this);
+			}
+		}
+	}
+
+
+	//~ Inner classes .........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Receives notifications about a {@link Preload}. Notifications are
+	 * delivered on the main thread.
+	 */
+	public interface Listener
+	{
+		// ----------------------------------------------------------
+		/**
+		 * Called each time a sound in the preload finishes loading.
+		 *
+		 * @param preload the preload that made progress
+		 */
+		void preloadProgressed(Preload preload);
+
+
+		// ----------------------------------------------------------
+		/**
+		 * Called once every sound in the preload has finished loading.
+		 *
+		 * @param preload the preload that finished
+		 */
+		void preloadFinished(Preload preload);
+	}
+}
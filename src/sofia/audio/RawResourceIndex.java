@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import android.content.Context;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//-------------------------------------------------------------------------
+/**
+ * A process-wide index from sound names to the resource IDs of the files in
+ * res/raw. The index is built once per application package by reading the
+ * static fields of the generated {@code R.raw} class, so that looking up a
+ * sound never has to go through {@code Resources.getIdentifier}, which is a
+ * slow string-based lookup.
+ * <p>
+ * If the {@code R.raw} class cannot be found (for example, because the
+ * application's R class lives in a different package than its package
+ * name), the index falls back to {@code getIdentifier} and remembers the
+ * result, including misses, so that each name is only looked up once.
+ * </p>
+ *
+ * @author Tony Allevato
+ */
+final class RawResourceIndex
+{
+	//~ Fields ................................................................
+
+	private static final HashMap<String, RawResourceIndex> indexes =
+			new HashMap<String, RawResourceIndex>();
+
+	private final Context context;
+	private final ConcurrentHashMap<String, Integer> resourceIds;
+	private final boolean complete;
+
+
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	private RawResourceIndex(Context context)
+	{
+		this.context = context;
+		this.resourceIds = new ConcurrentHashMap<String, Integer>();
+		this.complete = scanRawClass();
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the index for the application that the specified context belongs
+	 * to, building it if this is the first time it has been requested.
+	 *
+	 * @param context the context
+	 * @return the index for the context's application
+	 */
+	static RawResourceIndex forContext(Context context)
+	{
+		String packageName = context.getPackageName();
+
+		synchronized (indexes)
+		{
+			RawResourceIndex index = indexes.get(packageName);
+
+			if (index == null)
+			{
+				index = new RawResourceIndex(context.getApplicationContext());
+				indexes.put(packageName, index);
+			}
+
+			return index;
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the resource ID of the file in res/raw with the specified name.
+	 *
+	 * @param name the name of the sound, without the file extension
+	 * @return the resource ID, or 0 if there is no such resource
+	 */
+	int getIdentifier(String name)
+	{
+		Integer resId = resourceIds.get(name);
+
+		if (resId != null)
+		{
+			return resId;
+		}
+		else if (complete)
+		{
+			return 0;
+		}
+		else
+		{
+			int id = context.getResources().getIdentifier(
+					name, "raw", context.getPackageName());
+			resourceIds.put(name, id);
+			return id;
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the names of every file in res/raw. If the {@code R.raw} class
+	 * could not be read, this only contains the names that have been looked
+	 * up so far.
+	 *
+	 * @return the names of the files in res/raw
+	 */
+	Collection<String> names()
+	{
+		if (complete)
+		{
+			return Collections.unmodifiableSet(resourceIds.keySet());
+		}
+		else
+		{
+			ArrayList<String> found = new ArrayList<String>();
+
+			for (Map.Entry<String, Integer> entry : resourceIds.entrySet())
+			{
+				if (entry.getValue() != 0)
+				{
+					found.add(entry.getKey());
+				}
+			}
+
+			return found;
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Reads the resource IDs from the static fields of the application's
+	 * {@code R.raw} class.
+	 *
+	 * @return true if the class was found and read
+	 */
+	private boolean scanRawClass()
+	{
+		try
+		{
+			Class<?> rawClass = Class.forName(
+					context.getPackageName() + ".R$raw",
+					true, context.getClassLoader());
+
+			for (Field field : rawClass.getFields())
+			{
+				int modifiers = field.getModifiers();
+
+				if (Modifier.isStatic(modifiers)
+						&& field.getType() == int.class)
+				{
+					resourceIds.put(field.getName(), field.getInt(null));
+				}
+			}
+
+			return true;
+		}
+		catch (ClassNotFoundException e)
+		{
+			return false;
+		}
+		catch (IllegalAccessException e)
+		{
+			resourceIds.clear();
+			return false;
+		}
+	}
+}
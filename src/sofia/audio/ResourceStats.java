@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+//-------------------------------------------------------------------------
+/**
+ * A snapshot of the native resources held by a {@link SoundPlayer}, returned
+ * by {@link SoundPlayer#getResourceStats()}. This is intended for debugging
+ * leaks and memory use; the memory figure is an estimate.
+ *
+ * @author Tony Allevato
+ */
+public class ResourceStats
+{
+	//~ Fields ................................................................
+
+	private final int openDescriptors;
+	private final int descriptorsOpened;
+	private final int loadedSounds;
+	private final long estimatedNativeBytes;
+
+
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a new snapshot. Only {@link SoundPlayer} creates these.
+	 *
+	 * @param openDescriptors the number of sound files currently open
+	 * @param descriptorsOpened the number of sound files opened so far
+	 * @param loadedSounds the number of sounds in the sound pool
+	 * @param estimatedNativeBytes the estimated size of the decoded sounds
+	 */
+	ResourceStats(int openDescriptors, int descriptorsOpened,
+			int loadedSounds, long estimatedNativeBytes)
+	{
+		this.openDescriptors = openDescriptors;
+		this.descriptorsOpened = descriptorsOpened;
+		this.loadedSounds = loadedSounds;
+		this.estimatedNativeBytes = estimatedNativeBytes;
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of sound file descriptors that the player currently
+	 * has open. Outside of a load in progress, this should be zero.
+	 *
+	 * @return the number of open descriptors
+	 */
+	public int getOpenDescriptors()
+	{
+		return openDescriptors;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of sound file descriptors that the player has opened
+	 * since it was created.
+	 *
+	 * @return the total number of descriptors opened
+	 */
+	public int getDescriptorsOpened()
+	{
+		return descriptorsOpened;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of sounds that the player has loaded into its sound
+	 * pool.
+	 *
+	 * @return the number of loaded sounds
+	 */
+	public int getLoadedSounds()
+	{
+		return loadedSounds;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets an estimate of the native memory, in bytes, that the sound pool
+	 * uses to hold the decoded sounds.
+	 *
+	 * @return the estimated native memory use
+	 */
+	public long getEstimatedNativeBytes()
+	{
+		return estimatedNativeBytes;
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public String toString()
+	{
+		return "ResourceStats[openDescriptors=" + openDescriptors
+				+ ", descriptorsOpened=" + descriptorsOpened
+				+ ", loadedSounds=" + loadedSounds
+				+ ", estimatedNativeBytes=" + estimatedNativeBytes + "]";
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+//-------------------------------------------------------------------------
+/**
+ * An {@link AudioBackend} that can start a stream at a precise time instead
+ * of as soon as possible. {@link SoundPlayer#playAt(String, long)} hands
+ * scheduled plays to such a backend a little ahead of time and lets it
+ * place them exactly; with any other backend, the player starts them when
+ * their time comes, which is only as precise as the backend's own latency.
+ *
+ * @author Tony Allevato
+ */
+public interface ScheduledAudioBackend extends AudioBackend
+{
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Starts playing a sound that has finished loading at the specified
+	 * time. The stream exists, and counts against the number of streams,
+	 * from the moment this returns, but it is silent until its start time.
+	 *
+	 * @param soundId the ID of the sound
+	 * @param leftVolume the volume of the left channel, from 0 to 1
+	 * @param rightVolume the volume of the right channel, from 0 to 1
+	 * @param priority the stream priority; 0 is the lowest
+	 * @param loopCount the number of times to repeat the sound, or -1 to
+	 *     repeat it forever
+	 * @param rate the playback rate, from 0.5 to 2
+	 * @param startNanos when the sound should start, in the time base of
+	 *     {@link System#nanoTime()}; a time in the past starts it right away
+	 * @return the ID of the new stream, or 0 if it could not be started
+	 */
+	int playAt(int soundId, float leftVolume, float rightVolume,
+			int priority, int loopCount, float rate, long startNanos);
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets how long before its start time a scheduled play should be handed
+	 * to {@link #playAt}, so that it reaches the audio thread in time.
+	 *
+	 * @return the lead time, in nanoseconds
+	 */
+	long getScheduleLeadNanos();
+}
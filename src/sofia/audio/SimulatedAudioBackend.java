@@ -0,0 +1,584 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+//-------------------------------------------------------------------------
+/**
+ * An {@link AudioBackend} that makes no sound. It behaves like a
+ * {@link android.media.SoundPool} in the ways that matter to
+ * {@link SoundPlayer}: sounds take a configurable time to "decode" before
+ * the load listener hears about them, only a fixed number of streams can
+ * play at once, and when they are all busy a new stream replaces the
+ * lowest-priority (and then oldest) one, or is refused if every stream has a
+ * higher priority. Streams end on their own once their simulated duration
+ * has passed.
+ * <p>
+ * The backend only uses the standard Java library, so it runs on an
+ * ordinary JVM; the players that use it there also need the android-all
+ * jar, for the few Android classes that they use. It also counts the streams it has
+ * started, stolen, and refused, so that tests can check what the players
+ * asked it to do. All of its methods are thread-safe.
+ * </p>
+ *
+ * @author Tony Allevato
+ */
+public class SimulatedAudioBackend implements AudioBackend
+{
+	//~ Fields ................................................................
+
+	private final int maxStreams;
+	private final long decodeLatencyNanos;
+	private final Executor callbackExecutor;
+	private final SoundClock clock;
+	private final ScheduledExecutorService decoder;
+
+	// Loaded sounds, mapped to true once they have finished decoding.
+	private final HashMap<Integer, Boolean> sounds;
+	private final ArrayList<Stream> streams;
+	private long soundDurationNanos;
+	private int nextSoundId;
+	private int nextStreamId;
+	private LoadListener loadListener;
+
+	private int loadCount;
+	private int playCount;
+	private int stealCount;
+	private int rejectCount;
+
+
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a new simulated backend.
+	 *
+	 * @param maxStreams the maximum number of streams that can play at once
+	 * @param decodeLatencyNanos how long each sound takes to load, in
+	 *     nanoseconds
+	 * @param callbackExecutor the executor that load-complete notifications
+	 *     are delivered through; on a device this should run them on the
+	 *     main thread
+	 *
+	 * @throws IllegalArgumentException if maxStreams is less than 1 or the
+	 *     latency is negative
+	 */
+	public SimulatedAudioBackend(int maxStreams, long decodeLatencyNanos,
+			Executor callbackExecutor)
+	{
+		this(maxStreams, decodeLatencyNanos, callbackExecutor,
+				SoundClock.SYSTEM);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a new simulated backend whose streams end by the specified
+	 * clock, such as that of a {@link SimulatedSoundEnvironment}, instead of
+	 * by {@link System#nanoTime()}. Decoding still takes real time.
+	 *
+	 * @param maxStreams the maximum number of streams that can play at once
+	 * @param decodeLatencyNanos how long each sound takes to load, in
+	 *     nanoseconds
+	 * @param callbackExecutor the executor that load-complete notifications
+	 *     are delivered through
+	 * @param clock the clock that streams are timed by
+	 *
+	 * @throws IllegalArgumentException if maxStreams is less than 1 or the
+	 *     latency is negative
+	 */
+	SimulatedAudioBackend(int maxStreams, long decodeLatencyNanos,
+			Executor callbackExecutor, SoundClock clock)
+	{
+		if (maxStreams < 1)
+		{
+			throw new IllegalArgumentException(
+					"maxStreams must be at least 1, but was " + maxStreams);
+		}
+
+		if (decodeLatencyNanos < 0)
+		{
+			throw new IllegalArgumentException(
+					"decodeLatencyNanos must not be negative, but was "
+					+ decodeLatencyNanos);
+		}
+
+		this.maxStreams = maxStreams;
+		this.decodeLatencyNanos = decodeLatencyNanos;
+		this.callbackExecutor = callbackExecutor;
+		this.clock = clock;
+		this.sounds = new HashMap<Integer, Boolean>();
+		this.streams = new ArrayList<Stream>(maxStreams);
+		this.soundDurationNanos = Long.MAX_VALUE;
+
+		decoder = Executors.newSingleThreadScheduledExecutor(
+				new ThreadFactory()
+		{
+			// ----------------------------------------------------------
+			@Override
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread =
+					new Thread(runnable, "SimulatedAudioBackend decoder");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a factory that makes simulated backends, for use with
+	 * {@link SoundPlayer#setBackendFactory(AudioBackend.Factory)}. The
+	 * backends can play as many streams as the shared sound bank asks for.
+	 *
+	 * @param decodeLatencyNanos how long each sound takes to load, in
+	 *     nanoseconds
+	 * @param callbackExecutor the executor that load-complete notifications
+	 *     are delivered through
+	 * @return the factory
+	 */
+	public static AudioBackend.Factory factory(final long decodeLatencyNanos,
+			final Executor callbackExecutor)
+	{
+		return new AudioBackend.Factory()
+		{
+			// ----------------------------------------------------------
+			@Override
+			public AudioBackend create(Context context, int maxStreams)
+			{
+				return new SimulatedAudioBackend(
+						maxStreams, decodeLatencyNanos, callbackExecutor);
+			}
+		};
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Sets how long each play of a sound lasts. Streams that are not looping
+	 * forever end once this much unpaused time has passed for every repeat.
+	 * By default, streams last until they are stopped.
+	 *
+	 * @param nanos the duration of one play, in nanoseconds, or
+	 *     {@link Long#MAX_VALUE} for streams that never end on their own
+	 */
+	public synchronized void setSoundDuration(long nanos)
+	{
+		soundDurationNanos = nanos;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of sounds that have been loaded.
+	 *
+	 * @return the number of calls to {@link #load(AssetFileDescriptor, int)}
+	 */
+	public synchronized int getLoadCount()
+	{
+		return loadCount;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of streams that have been started.
+	 *
+	 * @return the number of successful plays
+	 */
+	public synchronized int getPlayCount()
+	{
+		return playCount;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of streams that were stopped to make room for a new
+	 * one.
+	 *
+	 * @return the number of stolen streams
+	 */
+	public synchronized int getStealCount()
+	{
+		return stealCount;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of plays that were refused, either because the sound
+	 * was not ready or because every stream had a higher priority.
+	 *
+	 * @return the number of refused plays
+	 */
+	public synchronized int getRejectCount()
+	{
+		return rejectCount;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of streams that are currently playing or paused.
+	 *
+	 * @return the number of active streams
+	 */
+	public synchronized int getActiveStreamCount()
+	{
+		expireStreams(clock.nanoTime());
+		return streams.size();
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public synchronized int load(AssetFileDescriptor fd, int priority)
+	{
+		final int soundId = ++nextSoundId;
+		sounds.put(soundId, Boolean.FALSE);
+		loadCount++;
+
+		decoder.schedule(new Runnable()
+		{
+			// ----------------------------------------------------------
+			@Override
+			public void run()
+			{
+				decoded(soundId);
+			}
+		}, decodeLatencyNanos, TimeUnit.NANOSECONDS);
+
+		return soundId;
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public synchronized void unload(int soundId)
+	{
+		if (sounds.remove(soundId) == null)
+		{
+			return;
+		}
+
+		for (int i = streams.size() - 1; i >= 0; i--)
+		{
+			if (streams.get(i).soundId == soundId)
+			{
+				streams.remove(i);
+			}
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public synchronized int play(int soundId, float leftVolume,
+			float rightVolume, int priority, int loopCount, float rate)
+	{
+		if (!Boolean.TRUE.equals(sounds.get(soundId)))
+		{
+			rejectCount++;
+			return 0;
+		}
+
+		long now = clock.nanoTime();
+		expireStreams(now);
+
+		if (streams.size() >= maxStreams)
+		{
+			int victim = chooseVictim(priority);
+
+			if (victim == -1)
+			{
+				rejectCount++;
+				return 0;
+			}
+
+			streams.remove(victim);
+			stealCount++;
+		}
+
+		Stream stream = new Stream();
+		stream.streamId = ++nextStreamId;
+		stream.soundId = soundId;
+		stream.priority = priority;
+		stream.remainingNanos = durationOf(loopCount, rate);
+		stream.startTime = now;
+		streams.add(stream);
+
+		playCount++;
+		return stream.streamId;
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public synchronized long getDurationNanos(int soundId)
+	{
+		return soundDurationNanos;
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public synchronized void stop(int streamId)
+	{
+		int index = indexOf(streamId);
+
+		if (index != -1)
+		{
+			streams.remove(index);
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public synchronized void pause(int streamId)
+	{
+		long now = clock.nanoTime();
+		expireStreams(now);
+
+		int index = indexOf(streamId);
+
+		if (index != -1)
+		{
+			Stream stream = streams.get(index);
+
+			if (!stream.paused)
+			{
+				stream.paused = true;
+
+				if (stream.remainingNanos != Long.MAX_VALUE)
+				{
+					stream.remainingNanos -= now - stream.startTime;
+				}
+			}
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public synchronized void resume(int streamId)
+	{
+		int index = indexOf(streamId);
+
+		if (index != -1)
+		{
+			Stream stream = streams.get(index);
+
+			if (stream.paused)
+			{
+				stream.paused = false;
+				stream.startTime = clock.nanoTime();
+			}
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public void setVolume(int streamId, float leftVolume, float rightVolume)
+	{
+		// Nothing is audible, so there is nothing to change.
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public void setRate(int streamId, float rate)
+	{
+		// The remaining duration is not rescaled; streams end as if they
+		// kept their original rate.
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public synchronized void setLoadListener(LoadListener listener)
+	{
+		loadListener = listener;
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public synchronized void release()
+	{
+		decoder.shutdownNow();
+		sounds.clear();
+		streams.clear();
+		loadListener = null;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Called on the decoder thread when a sound's simulated decoding
+	 * finishes.
+	 *
+	 * @param soundId the ID of the sound
+	 */
+	private void decoded(final int soundId)
+	{
+		final LoadListener listener;
+
+		synchronized (this)
+		{
+			if (!sounds.containsKey(soundId))
+			{
+				// The sound was unloaded before it finished loading.
+				return;
+			}
+
+			sounds.put(soundId, Boolean.TRUE);
+			listener = loadListener;
+		}
+
+		if (listener != null)
+		{
+			callbackExecutor.execute(new Runnable()
+			{
+				// ----------------------------------------------------------
+				@Override
+				public void run()
+				{
+					listener.loadComplete(soundId, true);
+				}
+			});
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Computes how long a new stream plays before it ends.
+	 *
+	 * @param loopCount the number of repeats, or -1 for forever
+	 * @param rate the playback rate
+	 * @return the duration in nanoseconds, or {@link Long#MAX_VALUE}
+	 */
+	private long durationOf(int loopCount, float rate)
+	{
+		if (loopCount < 0 || soundDurationNanos == Long.MAX_VALUE)
+		{
+			return Long.MAX_VALUE;
+		}
+
+		double nanos = (double) soundDurationNanos * (loopCount + 1) / rate;
+		return (nanos >= Long.MAX_VALUE) ? Long.MAX_VALUE : (long) nanos;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Removes the streams that have finished playing by the specified time.
+	 *
+	 * @param now the current time, from the backend's clock
+	 */
+	private void expireStreams(long now)
+	{
+		for (int i = streams.size() - 1; i >= 0; i--)
+		{
+			Stream stream = streams.get(i);
+
+			if (!stream.paused && stream.remainingNanos != Long.MAX_VALUE
+					&& now - stream.startTime >= stream.remainingNanos)
+			{
+				streams.remove(i);
+			}
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Picks the stream to stop so that a new one can start, the same way
+	 * the sound pool does: the one with the lowest priority, and the oldest
+	 * of those, as long as its priority is not higher than the new stream's.
+	 *
+	 * @param priority the priority of the new stream
+	 * @return the index of the stream to stop, or -1 if none can be stopped
+	 */
+	private int chooseVictim(int priority)
+	{
+		int victim = -1;
+
+		for (int i = 0; i < streams.size(); i++)
+		{
+			Stream stream = streams.get(i);
+
+			if (stream.priority <= priority && (victim == -1
+					|| stream.priority < streams.get(victim).priority))
+			{
+				victim = i;
+			}
+		}
+
+		return victim;
+	}
+
+
+	// ----------------------------------------------------------
+	private int indexOf(int streamId)
+	{
+		for (int i = 0; i < streams.size(); i++)
+		{
+			if (streams.get(i).streamId == streamId)
+			{
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+
+	//~ Inner classes .........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * A simulated stream. Streams are kept in the order they started, so
+	 * the first one found among equals is the oldest.
+	 */
+	private static class Stream
+	{
+		int streamId;
+		int soundId;
+		int priority;
+		boolean paused;
+		long startTime;
+		long remainingNanos;
+	}
+}
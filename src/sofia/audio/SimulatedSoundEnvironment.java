@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+
+//-------------------------------------------------------------------------
+/**
+ * A {@link SoundEnvironment} for running sound players without a device.
+ * Its clock only moves when {@link #advance(long)} is called, and the tasks
+ * posted to its "main thread" run on whichever thread calls
+ * {@link #advance(long)} or {@link #runDueTasks()}, so tests can step
+ * through time exactly instead of sleeping. Its sounds have no files: each
+ * is just a name, a decoded size, and a duration, and only a
+ * {@link SimulatedAudioBackend} can load them.
+ *
+ * @author Tony Allevato
+ */
+final class SimulatedSoundEnvironment implements SoundEnvironment, SoundLibrary
+{
+	//~ Fields ................................................................
+
+	private final SoundManifest manifest;
+	private final LinkedHashMap<String, Sound> sounds;
+
+	// The posted tasks, in the order they are due. Guarded by this object.
+	private final ArrayList<Task> tasks;
+	private long now;
+
+
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates an environment with no sounds, whose clock starts at 0.
+	 */
+	SimulatedSoundEnvironment()
+	{
+		manifest = SoundManifest.empty();
+		sounds = new LinkedHashMap<String, Sound>();
+		tasks = new ArrayList<Task>();
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Adds a sound to the library.
+	 *
+	 * @param name the name of the sound
+	 * @param bytes the size of the sound, both as a file and once decoded
+	 * @param durationNanos the duration of the sound, or 0 if it cannot be
+	 *     measured
+	 */
+	synchronized void addSound(String name, long bytes, long durationNanos)
+	{
+		sounds.put(name, new Sound(bytes, durationNanos));
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Moves the clock forward, and then runs every posted task that has
+	 * come due.
+	 *
+	 * @param nanos how far to move the clock, in nanoseconds
+	 */
+	void advance(long nanos)
+	{
+		synchronized (this)
+		{
+			now += nanos;
+		}
+
+		runDueTasks();
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Runs every posted task that is due, including any that those tasks
+	 * post, on the calling thread.
+	 *
+	 * @return the number of tasks that were run
+	 */
+	int runDueTasks()
+	{
+		int count = 0;
+
+		while (true)
+		{
+			Runnable task;
+
+			synchronized (this)
+			{
+				if (tasks.isEmpty() || tasks.get(0).dueNanos - now > 0)
+				{
+					return count;
+				}
+
+				task = tasks.remove(0).runnable;
+			}
+
+			task.run();
+			count++;
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public synchronized long nanoTime()
+	{
+		return now;
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public void post(Runnable task)
+	{
+		postDelayed(task, 0);
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public synchronized void postDelayed(Runnable task, long delayMillis)
+	{
+		long due = now + delayMillis * 1000000L;
+		int index = tasks.size();
+
+		while (index > 0 && tasks.get(index - 1).dueNanos - due > 0)
+		{
+			index--;
+		}
+
+		tasks.add(index, new Task(task, due));
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public synchronized void removeCallbacks(Runnable task)
+	{
+		for (int i = tasks.size() - 1; i >= 0; i--)
+		{
+			if (tasks.get(i).runnable == task)
+			{
+				tasks.remove(i);
+			}
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public SoundLibrary getLibrary()
+	{
+		return this;
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public Context getContext()
+	{
+		return null;
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public SoundManifest getManifest()
+	{
+		return manifest;
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public synchronized Collection<String> names(String[] extensions)
+	{
+		return new ArrayList<String>(sounds.keySet());
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public synchronized DescriptorTracker.Descriptor open(String name,
+			String[] extensions, DescriptorTracker descriptors)
+	{
+		Sound sound = sounds.get(name);
+		return (sound != null) ? descriptors.track(sound.bytes) : null;
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public synchronized DecodedSizeEstimator.Estimate measure(String name,
+			DescriptorTracker.Descriptor fd)
+	{
+		Sound sound = sounds.get(name);
+		return new DecodedSizeEstimator.Estimate(
+				sound.bytes, sound.durationNanos);
+	}
+
+
+	//~ Inner classes .........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * A sound in the library.
+	 */
+	private static final class Sound
+	{
+		final long bytes;
+		final long durationNanos;
+
+
+		// ----------------------------------------------------------
+		Sound(long bytes, long durationNanos)
+		{
+			this.bytes = bytes;
+			this.durationNanos = durationNanos;
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * A posted task and when it is due.
+	 */
+	private static final class Task
+	{
+		final Runnable runnable;
+		final long dueNanos;
+
+
+		// ----------------------------------------------------------
+		Task(Runnable runnable, long dueNanos)
+		{
+			this.runnable = runnable;
+			this.dueNanos = dueNanos;
+		}
+	}
+}
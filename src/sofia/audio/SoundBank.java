@@ -0,0 +1,1418 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//-------------------------------------------------------------------------
+/**
+ * The process-wide collection of loaded sounds that every
+ * {@link SoundPlayer} in an application shares. The bank owns the single
+ * {@link AudioBackend} that the players play through, so a sound that one
+ * screen has loaded does not have to be decoded again when the next screen
+ * plays it. The bank is reference-counted: each player acquires it when it
+ * is created and releases it when its screen is destroyed, and the backend
+ * is released when the last player goes away.
+ * <p>
+ * The bank only deals with loading and unloading sounds; each player keeps
+ * track of the streams it has started, so that pausing one screen does not
+ * pause the sounds of another. The bank reads the time, runs callbacks on
+ * the main thread, and finds sound files only through its
+ * {@link SoundEnvironment}, so it has no Context of its own.
+ * </p><p>
+ * The bank is used from many threads: the main thread, the background
+ * preloader, the command thread, and any thread that calls a
+ * {@link SoundPlayer} method. The bank's own lock guards all of its state
+ * and the state of every player attached to it; each player method takes
+ * it for its whole body. The only exceptions are {@link #handleFor(String)}
+ * and {@link #find(String)}, which turn a name into a handle without the
+ * lock so that threads that must not wait can look up sounds, and the
+ * group and manifest lookups that they rely on.
+ * </p>
+ *
+ * @author Tony Allevato
+ */
+final class SoundBank
+{
+	//~ Fields ................................................................
+
+	/**
+	 * The maximum number of streams the shared sound pool can play at once.
+	 * Each player enforces its own, smaller limit.
+	 */
+	static final int MAX_STREAMS = 32;
+
+	/**
+	 * The maximum number of sound groups, including the default group.
+	 */
+	static final int MAX_GROUPS = 32;
+
+	private static final String TAG = "SoundBank";
+
+	private static final int LOAD_PRIORITY = 1;
+
+	// The number of queued requests that can wait for the command thread.
+	private static final int COMMAND_CAPACITY = 256;
+
+	private static final String[] DEFAULT_ASSET_EXTENSIONS = {
+		".ogg", ".OGG", ".mp3", ".MP3", ".wav", ".WAV"
+	};
+
+	// The bank shared by every player in the process, and the number of
+	// players using it, and the factory that creates the backend of the next
+	// bank. Guarded by SoundBank.class.
+	private static SoundBank shared;
+	private static AudioBackend.Factory backendFactory =
+		SoundPoolBackend.FACTORY;
+
+	// Receives measurements from every player. The default does nothing.
+	private static final SoundMetrics NO_METRICS = new SoundMetrics() { };
+	private static volatile SoundMetrics metrics = NO_METRICS;
+	private int referenceCount;
+
+	private final SoundEnvironment environment;
+	private final SoundLibrary library;
+	private final AudioBackend backend;
+	private final SoundManifest manifest;
+	private volatile String[] assetExtensions;
+
+	// The players attached to this bank, which are told when a sound
+	// finishes loading so that they can start the plays they queued.
+	private final ArrayList<SoundPlayer> players;
+
+	// Maps sound names to their handles, so that sounds can always be
+	// referred to by name for simplicity. A handle stays in this map even if
+	// its sound is unloaded, so each name only ever has one handle. This is
+	// the only map that is read without the bank's lock, so that a name can
+	// be turned into a handle on a thread that must not wait.
+	private final ConcurrentHashMap<String, SoundHandle> soundNamesToHandles;
+	private final AtomicInteger handleCount;
+
+	// Maps group names to the small IDs that players index their group
+	// arrays with, and back. The default group has ID 0. Groups are only
+	// added while holding the bank's lock, but can be looked up without it.
+	private final ConcurrentHashMap<String, Integer> groupIds;
+	private final String[] groupNames;
+	private int groupCount;
+
+	// Maps the sound pool IDs of loaded sounds back to their handles.
+	private final SparseArray<SoundHandle> poolIdsToHandles;
+
+	// Load-complete statuses that the backend reported before its load
+	// method returned the sound's ID.
+	private final SparseIntArray earlyLoadStatuses;
+
+	// The loaded sounds in order of use, with their estimated decoded sizes.
+	private final SoundCache cache;
+	private long cacheBudget;
+	private EvictionPolicy evictionPolicy;
+
+	// Counts the sound files the bank opens, so that leaks show up in
+	// getResourceStats().
+	private final DescriptorTracker descriptors;
+
+	// Preloads waiting for a sound to finish loading, keyed by sound pool ID.
+	private final SparseArray<ArrayList<Preload>> pendingPreloads;
+
+	// Sounds are preloaded, and measured for the cache, on a background
+	// thread; the results are handed back to the environment's main thread.
+	// The maps above, and the state of every player, are only touched while
+	// holding the bank's lock.
+	private ExecutorService preloader;
+	private volatile boolean released;
+
+	// Requests from threads that must not wait for the bank's lock, created
+	// when a player first asks for them.
+	private CommandQueue commandQueue;
+
+	// Plays scheduled for a later time, which the command thread starts as
+	// they come due.
+	private final PlaybackScheduler scheduler;
+
+
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	private SoundBank(SoundEnvironment environment, AudioBackend backend)
+	{
+		this.environment = environment;
+		this.backend = backend;
+
+		library = environment.getLibrary();
+		manifest = library.getManifest();
+		groupIds = new ConcurrentHashMap<String, Integer>();
+		groupNames = new String[MAX_GROUPS];
+		groupId(SoundPlayer.DEFAULT_GROUP);
+
+		for (SoundInfo info : manifest.entries())
+		{
+			manifestGroupId(info.getGroup());
+		}
+		assetExtensions = DEFAULT_ASSET_EXTENSIONS;
+		players = new ArrayList<SoundPlayer>();
+		soundNamesToHandles = new ConcurrentHashMap<String, SoundHandle>();
+		handleCount = new AtomicInteger();
+		poolIdsToHandles = new SparseArray<SoundHandle>();
+		earlyLoadStatuses = new SparseIntArray();
+		cache = new SoundCache(cacheOwner);
+		cacheBudget = Long.MAX_VALUE;
+		evictionPolicy = EvictionPolicy.LEAST_RECENTLY_USED;
+		descriptors = new DescriptorTracker();
+		pendingPreloads = new SparseArray<ArrayList<Preload>>();
+		scheduler = new PlaybackScheduler();
+
+		backend.setLoadListener(loadListener);
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the shared bank, creating it if no player is currently using it,
+	 * and adds a reference to it. Every call must be balanced by a call to
+	 * {@link #release()}. The environment is only used if the bank is
+	 * created; players that share a bank all use the environment of the
+	 * first one.
+	 *
+	 * @param environment the environment to create the bank in
+	 * @return the shared bank
+	 */
+	static SoundBank acquire(SoundEnvironment environment)
+	{
+		synchronized (SoundBank.class)
+		{
+			if (shared == null)
+			{
+				shared = new SoundBank(environment, backendFactory.create(
+						environment.getContext(), MAX_STREAMS));
+			}
+
+			shared.referenceCount++;
+			return shared;
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Sets the factory that creates the backend of the shared bank. The
+	 * factory is only used when the bank is next created, so it has no
+	 * effect on players that already exist.
+	 *
+	 * @param factory the factory, or null to use the default sound pool
+	 *     backend
+	 */
+	static void setBackendFactory(AudioBackend.Factory factory)
+	{
+		synchronized (SoundBank.class)
+		{
+			backendFactory =
+				(factory != null) ? factory : SoundPoolBackend.FACTORY;
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Sets the object that receives measurements from the bank and every
+	 * player. Takes effect immediately.
+	 *
+	 * @param newMetrics the metrics, or null to stop measuring
+	 */
+	static void setMetrics(SoundMetrics newMetrics)
+	{
+		metrics = (newMetrics != null) ? newMetrics : NO_METRICS;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the object that receives measurements.
+	 *
+	 * @return the metrics, which do nothing if none were set
+	 */
+	static SoundMetrics metrics()
+	{
+		return metrics;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Removes a reference to this bank. When the last reference is removed,
+	 * the backend is released and the next call to
+	 * {@link #acquire(SoundEnvironment)} creates a new bank.
+	 */
+	void release()
+	{
+		synchronized (SoundBank.class)
+		{
+			if (--referenceCount > 0)
+			{
+				return;
+			}
+
+			if (shared == this)
+			{
+				shared = null;
+			}
+		}
+
+		synchronized (this)
+		{
+			pendingPreloads.clear();
+			cache.clear();
+
+			if (preloader != null)
+			{
+				preloader.shutdownNow();
+				preloader = null;
+			}
+
+			if (commandQueue != null)
+			{
+				commandQueue.close();
+				commandQueue = null;
+			}
+
+			released = true;
+			backend.release();
+
+			// Nothing will report the loads that were still in progress.
+			for (int i = 0; i < poolIdsToHandles.size(); i++)
+			{
+				poolIdsToHandles.valueAt(i).load.finish(false);
+			}
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the environment that the bank was created in, whose clock and
+	 * main thread its players use.
+	 *
+	 * @return the environment
+	 */
+	SoundEnvironment getEnvironment()
+	{
+		return environment;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the backend that the bank's sounds are loaded into.
+	 *
+	 * @return the backend
+	 */
+	AudioBackend getBackend()
+	{
+		return backend;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the queue that carries out requests from threads that must not
+	 * wait for the bank's lock, creating it if necessary. The caller must
+	 * hold the bank's lock.
+	 *
+	 * @return the command queue
+	 */
+	CommandQueue getCommandQueue()
+	{
+		if (commandQueue == null)
+		{
+			commandQueue = new CommandQueue(
+					COMMAND_CAPACITY, this, scheduler, environment);
+		}
+
+		return commandQueue;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the plays that are scheduled for a later time. The caller must
+	 * hold the bank's lock.
+	 *
+	 * @return the scheduler
+	 */
+	PlaybackScheduler getScheduler()
+	{
+		return scheduler;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Schedules a play to be handed to its player on the command thread at
+	 * its {@code dispatchNanos}. The caller must hold the bank's lock.
+	 *
+	 * @param playback the play
+	 */
+	void schedule(Playback playback)
+	{
+		CommandQueue queue = getCommandQueue();
+
+		if (scheduler.add(playback))
+		{
+			queue.wake();
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Adds a player to the list that is notified when sounds finish loading.
+	 *
+	 * @param player the player
+	 */
+	void attach(SoundPlayer player)
+	{
+		players.add(player);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Removes a player from the list that is notified when sounds finish
+	 * loading.
+	 *
+	 * @param player the player
+	 */
+	void detach(SoundPlayer player)
+	{
+		players.remove(player);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Sets the file extensions that are accepted when a sound is loaded from
+	 * the assets/sounds folder, in order of preference.
+	 *
+	 * @param extensions the extensions, including the leading period
+	 */
+	void setAssetExtensions(String[] extensions)
+	{
+		assetExtensions = extensions.clone();
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the handle for the sound with the specified name, creating it if
+	 * this is the first time the name has been used. The sound is not
+	 * loaded. Safe to call without holding the bank's lock; threads that
+	 * race to create the same handle all get the same one.
+	 *
+	 * @param name the name of the sound
+	 * @return the handle of the sound
+	 */
+	SoundHandle handleFor(String name)
+	{
+		SoundHandle sound = soundNamesToHandles.get(name);
+
+		if (sound == null)
+		{
+			SoundHandle created = new SoundHandle(
+					this, name, handleCount.getAndIncrement());
+
+			SoundInfo info = manifest.find(name);
+			if (info != null)
+			{
+				created.priority = info.getPriority();
+				created.group = Math.max(0, findGroup(info.getGroup()));
+				created.durationNanos = info.getDurationMicros() * 1000;
+			}
+
+			sound = soundNamesToHandles.putIfAbsent(name, created);
+
+			if (sound == null)
+			{
+				sound = created;
+			}
+		}
+
+		return sound;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the handle for the sound with the specified name, if the name has
+	 * been used before. Safe to call without holding the bank's lock.
+	 *
+	 * @param name the name of the sound
+	 * @return the handle of the sound, or null
+	 */
+	SoundHandle find(String name)
+	{
+		return soundNamesToHandles.get(name);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the handle of a loaded sound.
+	 *
+	 * @param soundId the sound pool ID of the sound
+	 * @return the handle of the sound, or null if no sound has that ID
+	 */
+	SoundHandle handleOf(int soundId)
+	{
+		return poolIdsToHandles.get(soundId);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the ID of a group, adding the group if this is the first time
+	 * its name has been used. The caller must hold the bank's lock.
+	 *
+	 * @param group the name of the group
+	 * @return the ID of the group
+	 *
+	 * @throws IllegalArgumentException if there are already
+	 *     {@link #MAX_GROUPS} groups
+	 */
+	int groupId(String group)
+	{
+		Integer id = groupIds.get(group);
+
+		if (id != null)
+		{
+			return id;
+		}
+
+		if (groupCount == MAX_GROUPS)
+		{
+			throw new IllegalArgumentException("Cannot add the group \""
+					+ group + "\"; there can be at most " + MAX_GROUPS
+					+ " groups");
+		}
+
+		groupNames[groupCount] = group;
+		groupIds.put(group, groupCount);
+		return groupCount++;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the ID of a group named in the manifest, adding the group if this
+	 * is the first time its name has been used. Unlike
+	 * {@link #groupId(String)}, this does not throw when there are already
+	 * {@link #MAX_GROUPS} groups; it logs a warning and puts the sounds in
+	 * the default group instead, so that a bad manifest cannot keep every
+	 * player from being created.
+	 *
+	 * @param group the name of the group
+	 * @return the ID of the group, or 0 if there is no room for it
+	 */
+	private int manifestGroupId(String group)
+	{
+		if (groupCount == MAX_GROUPS && !groupIds.containsKey(group))
+		{
+			Log.w(TAG, "Putting the sounds in group \"" + group
+					+ "\" in the default group; there can be at most "
+					+ MAX_GROUPS + " groups");
+			groupIds.put(group, 0);
+			return 0;
+		}
+
+		return groupId(group);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the ID of a group that has already been used. Safe to call
+	 * without holding the bank's lock.
+	 *
+	 * @param group the name of the group
+	 * @return the ID of the group, or -1 if the group has never been used
+	 */
+	int findGroup(String group)
+	{
+		Integer id = groupIds.get(group);
+		return (id != null) ? id : -1;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the name of a group.
+	 *
+	 * @param id the ID of the group
+	 * @return the name of the group
+	 */
+	String groupName(int id)
+	{
+		return groupNames[id];
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets what the manifest says about a sound. Safe to call without
+	 * holding the bank's lock.
+	 *
+	 * @param name the name of the sound
+	 * @return the manifest entry, or null if the sound is not in the
+	 *     manifest
+	 */
+	SoundInfo getSoundInfo(String name)
+	{
+		return manifest.find(name);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets every sound in the manifest. Safe to call without holding the
+	 * bank's lock.
+	 *
+	 * @return the manifest entries, in the order they are listed
+	 */
+	Collection<SoundInfo> getSoundInfos()
+	{
+		return manifest.entries();
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Makes sure that a sound about to be played is loaded (or loading),
+	 * and records the cache hit or miss.
+	 *
+	 * @param sound the handle of the sound
+	 *
+	 * @throws IllegalArgumentException if the sound cannot be located
+	 */
+	void prepare(SoundHandle sound)
+	{
+		if (sound.soundId != 0)
+		{
+			cache.hit(sound.soundId);
+		}
+		else
+		{
+			cache.miss();
+			load(sound);
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Loads the sound with the specified name, unless it is already loaded.
+	 *
+	 * @param name the name of the sound
+	 * @return the handle of the sound
+	 *
+	 * @throws IllegalArgumentException if the sound cannot be located
+	 */
+	SoundHandle loadSound(String name)
+	{
+		SoundHandle sound = handleFor(name);
+
+		if (sound.state == LoadState.UNLOADED)
+		{
+			load(sound);
+		}
+
+		return sound;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Stops every instance of a sound in every player and unloads it.
+	 *
+	 * @param sound the handle of the sound
+	 */
+	void unloadSound(SoundHandle sound)
+	{
+		if (sound.soundId != 0)
+		{
+			for (SoundPlayer player : players.toArray(
+					new SoundPlayer[players.size()]))
+			{
+				player.stopAll(sound);
+			}
+
+			unloadSoundId(sound.soundId);
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the cache budget, in bytes.
+	 *
+	 * @return the cache budget
+	 */
+	long getCacheBudget()
+	{
+		return cacheBudget;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Sets the cache budget, in bytes, and unloads sounds if the cache is
+	 * over it.
+	 *
+	 * @param bytes the cache budget
+	 */
+	void setCacheBudget(long bytes)
+	{
+		if (cacheBudget == Long.MAX_VALUE)
+		{
+			// Sounds loaded while the cache was unbounded were not measured.
+			for (int i = 0; i < poolIdsToHandles.size(); i++)
+			{
+				SoundHandle sound = poolIdsToHandles.valueAt(i);
+
+				if (sound.decodedBytes == 0)
+				{
+					measureInBackground(sound);
+				}
+			}
+		}
+
+		cacheBudget = bytes;
+		trimCache(0);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the eviction policy.
+	 *
+	 * @return the eviction policy
+	 */
+	EvictionPolicy getEvictionPolicy()
+	{
+		return evictionPolicy;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Sets the eviction policy.
+	 *
+	 * @param policy the eviction policy
+	 */
+	void setEvictionPolicy(EvictionPolicy policy)
+	{
+		evictionPolicy = policy;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Pins or unpins a sound, loading it first if necessary.
+	 *
+	 * @param name the name of the sound
+	 * @param pinned true to pin the sound, false to unpin it
+	 */
+	void setPinned(String name, boolean pinned)
+	{
+		if (pinned)
+		{
+			cache.setPinned(loadSound(name).soundId, true);
+		}
+		else
+		{
+			SoundHandle sound = find(name);
+
+			if (sound != null && sound.soundId != 0)
+			{
+				cache.setPinned(sound.soundId, false);
+				trimCache(0);
+			}
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets a snapshot of the cache.
+	 *
+	 * @return a snapshot of the cache
+	 */
+	CacheStats getCacheStats()
+	{
+		return cache.getStats(cacheBudget);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets a snapshot of the native resources that the bank is holding.
+	 *
+	 * @return a snapshot of the bank's resource use
+	 */
+	ResourceStats getResourceStats()
+	{
+		return new ResourceStats(
+				descriptors.getOpenCount(),
+				descriptors.getTotalCount(),
+				poolIdsToHandles.size(),
+				cache.getCachedBytes());
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Loads sounds on the background thread.
+	 *
+	 * @param names the names of the sounds to load
+	 * @return a {@link Preload} that reports progress and completion
+	 */
+	Preload preload(Collection<String> names)
+	{
+		LinkedHashSet<String> uniqueNames = new LinkedHashSet<String>(names);
+		final Preload preload = new Preload(uniqueNames.size());
+		final ArrayList<String> namesToLoad = new ArrayList<String>();
+
+		for (String name : uniqueNames)
+		{
+			SoundHandle sound = find(name);
+
+			if (sound != null && sound.soundId != 0)
+			{
+				preload.addBytes(sound.fileBytes);
+				watchPreload(preload, sound);
+			}
+			else
+			{
+				namesToLoad.add(name);
+			}
+		}
+
+		getPreloader().execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for (String name : namesToLoad)
+				{
+					preloadInBackground(preload, name);
+				}
+
+				environment.post(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						preload.submitted();
+					}
+				});
+			}
+		});
+
+		return preload;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Loads every sound in the manifest, in res/raw, and in the
+	 * assets/sounds folder on the background thread.
+	 *
+	 * @return a {@link Preload} that reports progress and completion
+	 */
+	Preload preloadAll()
+	{
+		LinkedHashSet<String> names =
+				new LinkedHashSet<String>(manifest.names());
+		names.addAll(library.names(assetExtensions));
+
+		return preload(names);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Opens a sound file so that it can be streamed instead of loaded. The
+	 * file is located the same way as sounds that are loaded, but nothing is
+	 * registered with the bank or its cache.
+	 *
+	 * @param name the name of the sound file, without the file extension
+	 * @return an open, tracked descriptor for the sound file; the caller
+	 *     must close it
+	 *
+	 * @throws IllegalArgumentException if the sound cannot be located
+	 */
+	DescriptorTracker.Descriptor openForStreaming(String name)
+	{
+		DescriptorTracker.Descriptor fd = openSound(name);
+
+		if (fd == null)
+		{
+			throw new IllegalArgumentException(
+					"Could not find an audio file named \"" + name +
+					"\" in assets or in res/raw.");
+		}
+
+		return fd;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Locates a sound in the bank's library, which on a device means first
+	 * checking the manifest, then for a resource with the matching name in
+	 * res/raw, and if it is not found there then looking it up in the
+	 * assets/sounds folder.
+	 *
+	 * @param name the name of the sound file, without the file extension
+	 * @return an open, tracked descriptor for the sound file, or null if it
+	 *     could not be found; the caller must close it
+	 */
+	private DescriptorTracker.Descriptor openSound(String name)
+	{
+		return library.open(name, assetExtensions, descriptors);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the decoded size of a sound from the manifest. Sounds that are
+	 * not in it are measured later, on the background thread.
+	 *
+	 * @param name the name of the sound
+	 * @return the size of the decoded sound, in bytes, or 0 if the manifest
+	 *     does not give it
+	 */
+	private long manifestDecodedSize(String name)
+	{
+		SoundInfo info = manifest.find(name);
+		return (info != null) ? info.getDecodedBytes() : 0;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Submits an open sound file to the backend. The descriptor is left
+	 * open; the backend makes its own copy of it.
+	 *
+	 * @param fd the descriptor of the sound file
+	 * @return the sound pool ID of the sound, or 0 if the bank has been
+	 *     released or the backend could not load it
+	 */
+	private int submit(DescriptorTracker.Descriptor fd)
+	{
+		// Preloads call this from the background thread, so make sure the
+		// backend is not released underneath them. Holding the bank's lock
+		// rather than the backend's means a backend that reports the load
+		// on the calling thread cannot deadlock with a player.
+		synchronized (this)
+		{
+			if (!released)
+			{
+				return backend.load(fd.get(), LOAD_PRIORITY);
+			}
+			else
+			{
+				return 0;
+			}
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Loads an unloaded sound on the calling thread.
+	 *
+	 * @param sound the handle of the sound
+	 *
+	 * @throws IllegalArgumentException if the sound cannot be located
+	 */
+	private void load(SoundHandle sound)
+	{
+		DescriptorTracker.Descriptor fd = openSound(sound.name);
+
+		if (fd == null)
+		{
+			throw new IllegalArgumentException(
+					"Could not find an audio file named \"" + sound.name +
+					"\" in assets or in res/raw.");
+		}
+
+		try
+		{
+			long bytes = fd.getLength();
+			long decodedBytes = manifestDecodedSize(sound.name);
+
+			register(sound, submit(fd), bytes, decodedBytes);
+		}
+		finally
+		{
+			fd.close();
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Records that a sound has been submitted to the sound pool.
+	 *
+	 * @param sound the handle of the sound
+	 * @param soundId the sound pool ID of the sound, or 0 if the backend
+	 *     could not take it (in which case the sound is marked as failed,
+	 *     and is loaded again the next time it is played)
+	 * @param bytes the size of the sound file
+	 * @param decodedBytes the estimated size of the decoded sound, or 0 if
+	 *     it has not been measured yet
+	 */
+	private void register(SoundHandle sound, int soundId, long bytes,
+			long decodedBytes)
+	{
+		sound.fileBytes = bytes;
+		sound.decodedBytes = decodedBytes;
+		sound.loadStartNanos = environment.nanoTime();
+		sound.load = new SoundLoad(sound);
+
+		if (soundId == 0)
+		{
+			// Keep the handle out of the ID map and the cache, where every
+			// failed sound would share the key 0.
+			finishLoad(sound, false);
+			return;
+		}
+
+		sound.soundId = soundId;
+		sound.state = LoadState.LOADING;
+		poolIdsToHandles.put(soundId, sound);
+
+		int status = earlyLoadStatuses.get(soundId, -1);
+		if (status != -1)
+		{
+			earlyLoadStatuses.delete(soundId);
+			finishLoad(sound, status == 0);
+		}
+
+		cache.add(soundId, decodedBytes);
+		trimCache(soundId);
+		metrics.cacheSizeChanged(cache.getCachedBytes(), cacheBudget);
+
+		// Players need the duration to tell when a stream has ended, even
+		// if the cache does not need the size.
+		if (sound.durationNanos == 0
+				|| (decodedBytes == 0 && cacheBudget != Long.MAX_VALUE))
+		{
+			measureInBackground(sound);
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Reads the duration and estimates the decoded size of a loaded sound on
+	 * the background thread, which means reading the file's header, and
+	 * charges the size to the cache once it is known. Until then the sound
+	 * counts as taking no space.
+	 *
+	 * @param sound the handle of the sound
+	 */
+	private void measureInBackground(final SoundHandle sound)
+	{
+		final int soundId = sound.soundId;
+
+		getPreloader().execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				DescriptorTracker.Descriptor fd = openSound(sound.name);
+
+				if (fd == null)
+				{
+					return;
+				}
+
+				DecodedSizeEstimator.Estimate estimate;
+
+				try
+				{
+					estimate = library.measure(sound.name, fd);
+				}
+				finally
+				{
+					fd.close();
+				}
+
+				synchronized (SoundBank.this)
+				{
+					measured(sound, soundId, estimate);
+				}
+			}
+		});
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Records the measured duration of a sound, charges its measured size to
+	 * the cache if the manifest did not give one, and unloads other sounds
+	 * if that puts the cache over its budget.
+	 *
+	 * @param sound the handle of the sound
+	 * @param soundId the sound pool ID that the sound had when it was
+	 *     measured
+	 * @param estimate what was read from the sound's header
+	 */
+	private void measured(SoundHandle sound, int soundId,
+			DecodedSizeEstimator.Estimate estimate)
+	{
+		// The sound may have been unloaded, or even loaded again, while it
+		// was being measured.
+		if (released || sound.soundId != soundId)
+		{
+			return;
+		}
+
+		if (sound.durationNanos == 0)
+		{
+			sound.durationNanos = estimate.durationNanos;
+		}
+
+		if (sound.decodedBytes == 0)
+		{
+			sound.decodedBytes = estimate.decodedBytes;
+			cache.resize(soundId, estimate.decodedBytes);
+			trimCache(soundId);
+			metrics.cacheSizeChanged(cache.getCachedBytes(), cacheBudget);
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Loads one sound of a preload. Called on the background thread. The
+	 * file is opened and measured without the bank's lock; the lock is then
+	 * taken to submit it, unless a player loaded the same sound in the
+	 * meantime, so a sound is never submitted to the backend twice.
+	 *
+	 * @param preload the preload that the sound belongs to
+	 * @param name the name of the sound
+	 */
+	private void preloadInBackground(final Preload preload, String name)
+	{
+		DescriptorTracker.Descriptor fd = openSound(name);
+		final SoundHandle sound;
+		final long bytes;
+
+		if (fd != null)
+		{
+			try
+			{
+				bytes = fd.getLength();
+				long decodedBytes = manifestDecodedSize(name);
+
+				synchronized (this)
+				{
+					sound = handleFor(name);
+
+					if (sound.soundId == 0 && !released)
+					{
+						register(sound, submit(fd), bytes, decodedBytes);
+					}
+				}
+			}
+			finally
+			{
+				fd.close();
+			}
+
+			preload.addBytes(bytes);
+		}
+		else
+		{
+			sound = null;
+			bytes = 0;
+		}
+
+		environment.post(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				synchronized (SoundBank.this)
+				{
+					preloaded(preload, sound, bytes);
+				}
+			}
+		});
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Tells a preload about a sound that the background loader handled.
+	 * Called on the main thread.
+	 *
+	 * @param preload the preload that the sound belongs to
+	 * @param sound the handle of the sound, or null if it could not be found
+	 * @param bytes the size of the sound file
+	 */
+	private void preloaded(Preload preload, SoundHandle sound, long bytes)
+	{
+		if (released)
+		{
+			return;
+		}
+		else if (sound == null)
+		{
+			preload.soundFinished(bytes, false);
+			return;
+		}
+
+		watchPreload(preload, sound);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Notifies a preload when the specified sound finishes loading, or right
+	 * away if it already has.
+	 *
+	 * @param preload the preload that the sound belongs to
+	 * @param sound the handle of the sound, which must be loaded
+	 */
+	private void watchPreload(Preload preload, SoundHandle sound)
+	{
+		if (sound.state != LoadState.LOADING)
+		{
+			preload.soundFinished(sound.fileBytes,
+					sound.state == LoadState.READY);
+		}
+		else
+		{
+			ArrayList<Preload> preloads = pendingPreloads.get(sound.soundId);
+			if (preloads == null)
+			{
+				preloads = new ArrayList<Preload>();
+				pendingPreloads.put(sound.soundId, preloads);
+			}
+
+			preloads.add(preload);
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the executor that preloads sounds, creating it if necessary.
+	 *
+	 * @return the preload executor
+	 */
+	private synchronized ExecutorService getPreloader()
+	{
+		if (preloader == null)
+		{
+			preloader = Executors.newSingleThreadExecutor(new ThreadFactory()
+			{
+				@Override
+				public Thread newThread(Runnable runnable)
+				{
+					Thread thread = new Thread(runnable, "SoundPlayer preload");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+
+		return preloader;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Unloads sounds until the cache is within its budget, or until every
+	 * remaining sound is pinned or in use.
+	 *
+	 * @param keepId the sound pool ID of a sound that must stay loaded, or 0
+	 */
+	private void trimCache(int keepId)
+	{
+		while (cache.getCachedBytes() > cacheBudget)
+		{
+			int victim = cache.evict(evictionPolicy, keepId);
+
+			if (victim == 0)
+			{
+				break;
+			}
+
+			SoundHandle sound = poolIdsToHandles.get(victim);
+			metrics.soundEvicted(sound.name, sound.decodedBytes);
+			unloadSoundId(victim);
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Unloads a sound from the sound pool and forgets everything the bank
+	 * knows about it. The sound must not be playing.
+	 *
+	 * @param soundId the sound pool ID of the sound
+	 */
+	private void unloadSoundId(int soundId)
+	{
+		SoundHandle sound = poolIdsToHandles.get(soundId);
+
+		ArrayList<Preload> preloads = pendingPreloads.get(soundId);
+		if (preloads != null)
+		{
+			pendingPreloads.remove(soundId);
+
+			for (Preload preload : preloads)
+			{
+				preload.soundFinished(sound.fileBytes, false);
+			}
+		}
+
+		backend.unload(soundId);
+
+		poolIdsToHandles.remove(soundId);
+		cache.remove(soundId);
+		metrics.cacheSizeChanged(cache.getCachedBytes(), cacheBudget);
+
+		sound.soundId = 0;
+
+		// Anyone still waiting for the sound will not get it from this load.
+		SoundLoad load = sound.load;
+		sound.state = LoadState.UNLOADED;
+		load.finish(false);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Records that the backend has decoded a sound, or failed to, and wakes
+	 * everything waiting for its load.
+	 *
+	 * @param sound the handle of the sound
+	 * @param succeeded true if the sound was decoded successfully
+	 */
+	private void finishLoad(SoundHandle sound, boolean succeeded)
+	{
+		sound.state = succeeded ? LoadState.READY : LoadState.FAILED;
+		metrics.soundLoaded(sound.name,
+				environment.nanoTime() - sound.loadStartNanos, succeeded);
+		sound.load.finish(succeeded);
+	}
+
+
+	//~ Inner classes .........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Tells the sound cache which sounds are playing or waiting to play in
+	 * any player, so that it never unloads them.
+	 */
+	private final SoundCache.Owner cacheOwner = new SoundCache.Owner()
+	{
+		// ----------------------------------------------------------
+		@Override
+		public boolean isInUse(int soundId)
+		{
+			if (pendingPreloads.get(soundId) != null
+					|| scheduler.isScheduled(soundId))
+			{
+				return true;
+			}
+
+			for (int i = 0; i < players.size(); i++)
+			{
+				if (players.get(i).isUsing(soundId))
+				{
+					return true;
+				}
+			}
+
+			return false;
+		}
+	};
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Records when the backend finishes decoding a sound, and tells the
+	 * preloads and players that are waiting for it.
+	 */
+	private final AudioBackend.LoadListener loadListener =
+		new AudioBackend.LoadListener()
+	{
+		// ----------------------------------------------------------
+		@Override
+		public void loadComplete(int soundId, boolean succeeded)
+		{
+			synchronized (SoundBank.this)
+			{
+				SoundHandle sound = poolIdsToHandles.get(soundId);
+				if (sound == null)
+				{
+					// The backend reported the load from inside its load
+					// method, before the bank knew the sound's ID.
+					earlyLoadStatuses.put(soundId, succeeded ? 0 : 1);
+					return;
+				}
+
+				finishLoad(sound, succeeded);
+
+				ArrayList<Preload> preloads = pendingPreloads.get(soundId);
+				if (preloads != null)
+				{
+					pendingPreloads.remove(soundId);
+
+					for (Preload preload : preloads)
+					{
+						preload.soundFinished(sound.fileBytes, succeeded);
+					}
+				}
+
+				for (SoundPlayer player : players.toArray(
+						new SoundPlayer[players.size()]))
+				{
+					player.soundLoaded(sound, succeeded);
+				}
+			}
+		}
+	};
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import android.util.SparseArray;
+
+//-------------------------------------------------------------------------
+/**
+ * Keeps the sounds loaded in a {@link SoundPlayer}'s sound pool in order of
+ * use, with their estimated decoded sizes, so that the player can unload
+ * sounds when it goes over its cache budget. Entries are linked into a list
+ * from least to most recently used, so recording a use is a lookup and a
+ * relink, and never allocates.
+ *
+ * @author Tony Allevato
+ */
+class SoundCache
+{
+	//~ Fields ................................................................
+
+	private final SparseArray<Entry> entries;
+	private final Owner owner;
+
+	// The list runs from the least recently used entry (head.next) to the
+	// most recently used one (head.previous).
+	private final Entry head;
+
+	private long cachedBytes;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a new, empty cache.
+	 *
+	 * @param owner decides which sounds are in use and cannot be unloaded
+	 */
+	SoundCache(Owner owner)
+	{
+		this.owner = owner;
+
+		entries = new SparseArray<Entry>();
+		head = new Entry(0, 0);
+		head.next = head;
+		head.previous = head;
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Adds a newly loaded sound to the cache as its most recently used entry.
+	 *
+	 * @param soundId the sound pool ID of the sound
+	 * @param bytes the estimated size of the decoded sound
+	 */
+	void add(int soundId, long bytes)
+	{
+		Entry entry = new Entry(soundId, bytes);
+		entries.put(soundId, entry);
+		linkLast(entry);
+		cachedBytes += bytes;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Removes a sound from the cache.
+	 *
+	 * @param soundId the sound pool ID of the sound
+	 */
+	void remove(int soundId)
+	{
+		Entry entry = entries.get(soundId);
+
+		if (entry != null)
+		{
+			entries.remove(soundId);
+			unlink(entry);
+			cachedBytes -= entry.bytes;
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Changes the estimated size of a sound that is already in the cache,
+	 * once it has been measured.
+	 *
+	 * @param soundId the sound pool ID of the sound
+	 * @param bytes the estimated size of the decoded sound
+	 */
+	void resize(int soundId, long bytes)
+	{
+		Entry entry = entries.get(soundId);
+
+		if (entry != null)
+		{
+			cachedBytes += bytes - entry.bytes;
+			entry.bytes = bytes;
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Records a request to play a sound that was already loaded.
+	 *
+	 * @param soundId the sound pool ID of the sound
+	 */
+	void hit(int soundId)
+	{
+		hits++;
+
+		Entry entry = entries.get(soundId);
+		if (entry != null)
+		{
+			entry.uses++;
+			unlink(entry);
+			linkLast(entry);
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Records a request to play a sound that had to be loaded first.
+	 */
+	void miss()
+	{
+		misses++;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Pins or unpins a sound. Pinned sounds are never chosen for eviction.
+	 *
+	 * @param soundId the sound pool ID of the sound
+	 * @param pinned true to pin the sound, false to unpin it
+	 */
+	void setPinned(int soundId, boolean pinned)
+	{
+		Entry entry = entries.get(soundId);
+
+		if (entry != null)
+		{
+			entry.pinned = pinned;
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Chooses the sound to unload next, and counts it as an eviction.
+	 *
+	 * @param policy the eviction policy
+	 * @param keepId the sound pool ID of a sound that must not be chosen
+	 *     (normally the one that was just loaded), or 0
+	 * @return the sound pool ID of the sound to unload, or 0 if every sound
+	 *     is pinned or in use
+	 */
+	int evict(EvictionPolicy policy, int keepId)
+	{
+		Entry victim = null;
+
+		for (Entry entry = head.next; entry != head; entry = entry.next)
+		{
+			if (entry.pinned || entry.soundId == keepId
+					|| owner.isInUse(entry.soundId))
+			{
+				continue;
+			}
+
+			if (policy == EvictionPolicy.LEAST_RECENTLY_USED)
+			{
+				victim = entry;
+				break;
+			}
+			else if (victim == null || entry.uses < victim.uses)
+			{
+				victim = entry;
+			}
+		}
+
+		if (victim == null)
+		{
+			return 0;
+		}
+
+		evictions++;
+		return victim.soundId;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the estimated size of the decoded sounds in the cache.
+	 *
+	 * @return the size of the cache, in bytes
+	 */
+	long getCachedBytes()
+	{
+		return cachedBytes;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets a snapshot of the cache's counters.
+	 *
+	 * @param budgetBytes the cache budget, which the owner keeps
+	 * @return a snapshot of the cache
+	 */
+	CacheStats getStats(long budgetBytes)
+	{
+		return new CacheStats(hits, misses, evictions, cachedBytes,
+				budgetBytes);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Removes every sound from the cache. The counters are kept.
+	 */
+	void clear()
+	{
+		entries.clear();
+		head.next = head;
+		head.previous = head;
+		cachedBytes = 0;
+	}
+
+
+	// ----------------------------------------------------------
+	private void linkLast(Entry entry)
+	{
+		entry.previous = head.previous;
+		entry.next = head;
+		head.previous.next = entry;
+		head.previous = entry;
+	}
+
+
+	// ----------------------------------------------------------
+	private void unlink(Entry entry)
+	{
+		entry.previous.next = entry.next;
+		entry.next.previous = entry.previous;
+	}
+
+
+	//~ Inner classes .........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Decides whether a sound is in use (playing or waiting to play), in
+	 * which case it cannot be unloaded.
+	 */
+	interface Owner
+	{
+		// ----------------------------------------------------------
+		/**
+		 * Gets a value indicating whether a sound is in use.
+		 *
+		 * @param soundId the sound pool ID of the sound
+		 * @return true if the sound is in use
+		 */
+		boolean isInUse(int soundId);
+	}
+
+
+	// ----------------------------------------------------------
+	private static class Entry
+	{
+		final int soundId;
+		long bytes;
+		int uses;
+		boolean pinned;
+		Entry previous;
+		Entry next;
+
+
+		// ----------------------------------------------------------
+		Entry(int soundId, long bytes)
+		{
+			this.soundId = soundId;
+			this.bytes = bytes;
+		}
+	}
+}
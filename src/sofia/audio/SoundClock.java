@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+//-------------------------------------------------------------------------
+/**
+ * The clock that sound players measure time by: when voices end, when
+ * scheduled plays are due, how far ramps have got, and how long ago a
+ * sound was last played.
+ *
+ * @author Tony Allevato
+ */
+interface SoundClock
+{
+	//~ Fields ................................................................
+
+	/**
+	 * The clock of a device, {@link System#nanoTime()}.
+	 */
+	SoundClock SYSTEM = new SoundClock()
+	{
+		// ----------------------------------------------------------
+		@Override
+		public long nanoTime()
+		{
+			return System.nanoTime();
+		}
+	};
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the current time. Only differences between times mean anything.
+	 *
+	 * @return the current time, in nanoseconds
+	 */
+	long nanoTime();
+}
@@ -0,0 +1,404 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+//-------------------------------------------------------------------------
+/**
+ * Sends requests to a {@link SoundPlayer} without waiting for the lock that
+ * the player's own methods take, so that it can be used from a game loop or
+ * an audio callback that must not stall. Get one from
+ * {@link SoundPlayer#getCommands()}.
+ * <p>
+ * Each method checks its arguments right away, then adds the request to a
+ * queue that a background thread carries out in order. Nothing is
+ * allocated along the way. If the queue is full, the request is dropped and
+ * the method returns false. Because the request has not been carried out
+ * when the method returns, the play methods cannot return a stream ID.
+ * </p><p>
+ * Sounds can be named or given by handle. Looking up a name does not take
+ * a lock, but it does create a handle the first time a name is used, so
+ * code that plays sounds every frame should still hold on to the handles.
+ * A sound that is not loaded yet is loaded on the background thread.
+ * </p>
+ *
+ * @author Tony Allevato
+ */
+public final class SoundCommands
+{
+	//~ Fields ................................................................
+
+	private final SoundPlayer player;
+	private final SoundBank bank;
+	private final CommandQueue queue;
+
+
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates the commands of a player. Only {@link SoundPlayer} creates
+	 * these.
+	 *
+	 * @param player the player that carries out the requests
+	 * @param bank the player's sound bank
+	 */
+	SoundCommands(SoundPlayer player, SoundBank bank)
+	{
+		this.player = player;
+		this.bank = bank;
+		this.queue = bank.getCommandQueue();
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Queues a request to play the sound with the specified name once.
+	 *
+	 * @param name the name of the sound to play
+	 * @return true if the request was queued, or false if the queue was full
+	 */
+	public boolean play(String name)
+	{
+		return play(bank.handleFor(name), 0);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Queues a request to play the sound with the specified name, repeating
+	 * it a given number of times.
+	 *
+	 * @param name the name of the sound to play
+	 * @param loopCount the number of times to repeat the sound, or -1 to
+	 *     repeat it forever
+	 * @return true if the request was queued, or false if the queue was full
+	 */
+	public boolean play(String name, int loopCount)
+	{
+		return play(bank.handleFor(name), loopCount);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Queues a request to play the sound with the specified name at a given
+	 * volume, pan, and rate.
+	 *
+	 * @param name the name of the sound to play
+	 * @param volume the volume, from 0 (silent) to 1 (loudest)
+	 * @param pan the pan, from -1 (left channel only) through 0 (centered)
+	 *     to 1 (right channel only)
+	 * @param rate the playback rate, from 0.5 (half speed) to 2 (double
+	 *     speed)
+	 * @param loopCount the number of times to repeat the sound
+	 * @return true if the request was queued, or false if the queue was full
+	 *
+	 * @throws IllegalArgumentException if the volume, pan, or rate is out of
+	 *     range
+	 */
+	public boolean play(String name, float volume, float pan, float rate,
+			int loopCount)
+	{
+		return play(bank.handleFor(name), volume, pan, rate, loopCount);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Queues a request to stop the most recently started instance of the
+	 * sound with the specified name. If the name has never been used,
+	 * nothing is queued.
+	 *
+	 * @param name the name of the sound
+	 * @return true if the request was queued or there was nothing to stop,
+	 *     or false if the queue was full
+	 */
+	public boolean stop(String name)
+	{
+		SoundHandle sound = bank.find(name);
+		return sound == null || stop(sound);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Queues a request to stop every instance of the sound with the
+	 * specified name. If the name has never been used, nothing is queued.
+	 *
+	 * @param name the name of the sound
+	 * @return true if the request was queued or there was nothing to stop,
+	 *     or false if the queue was full
+	 */
+	public boolean stopAll(String name)
+	{
+		SoundHandle sound = bank.find(name);
+		return sound == null || stopAll(sound);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Queues a request to play a sound once.
+	 *
+	 * @param sound the handle of the sound to play
+	 * @return true if the request was queued, or false if the queue was full
+	 */
+	public boolean play(SoundHandle sound)
+	{
+		return play(sound, 0);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Queues a request to play a sound, repeating it a given number of
+	 * times.
+	 *
+	 * @param sound the handle of the sound to play
+	 * @param loopCount the number of times to repeat the sound, or -1 to
+	 *     repeat it forever
+	 * @return true if the request was queued, or false if the queue was full
+	 */
+	public boolean play(SoundHandle sound, int loopCount)
+	{
+		player.checkOwner(sound);
+		return submitPlay(sound, loopCount, SoundPlayer.SOUND_PRIORITY,
+				SoundPlayer.DEFAULT_VOLUME, SoundPlayer.DEFAULT_PAN,
+				SoundPlayer.DEFAULT_RATE);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Queues a request to play a sound with a priority that overrides the
+	 * sound's own.
+	 *
+	 * @param sound the handle of the sound to play
+	 * @param loopCount the number of times to repeat the sound
+	 * @param priority the priority of this play; higher numbers are more
+	 *     important, and 0 is the lowest
+	 * @return true if the request was queued, or false if the queue was full
+	 *
+	 * @throws IllegalArgumentException if priority is negative
+	 */
+	public boolean play(SoundHandle sound, int loopCount, int priority)
+	{
+		player.checkOwner(sound);
+		SoundPlayer.checkPriority(priority);
+		return submitPlay(sound, loopCount, priority,
+				SoundPlayer.DEFAULT_VOLUME, SoundPlayer.DEFAULT_PAN,
+				SoundPlayer.DEFAULT_RATE);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Queues a request to play a sound at a given volume, pan, and rate.
+	 *
+	 * @param sound the handle of the sound to play
+	 * @param volume the volume, from 0 (silent) to 1 (loudest)
+	 * @param pan the pan, from -1 (left channel only) through 0 (centered)
+	 *     to 1 (right channel only)
+	 * @param rate the playback rate, from 0.5 (half speed) to 2 (double
+	 *     speed)
+	 * @param loopCount the number of times to repeat the sound
+	 * @return true if the request was queued, or false if the queue was full
+	 *
+	 * @throws IllegalArgumentException if the volume, pan, or rate is out of
+	 *     range
+	 */
+	public boolean play(SoundHandle sound, float volume, float pan,
+			float rate, int loopCount)
+	{
+		player.checkOwner(sound);
+		SoundPlayer.checkParameters(volume, pan, rate);
+		return submitPlay(sound, loopCount, SoundPlayer.SOUND_PRIORITY,
+				volume, pan, rate);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Queues a request to stop the most recently started instance of a
+	 * sound, as {@link SoundPlayer#stop(SoundHandle)} does.
+	 *
+	 * @param sound the handle of the sound
+	 * @return true if the request was queued, or false if the queue was full
+	 */
+	public boolean stop(SoundHandle sound)
+	{
+		return submitSound(CommandQueue.STOP, sound);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Queues a request to stop every instance of a sound.
+	 *
+	 * @param sound the handle of the sound
+	 * @return true if the request was queued, or false if the queue was full
+	 */
+	public boolean stopAll(SoundHandle sound)
+	{
+		return submitSound(CommandQueue.STOP_ALL, sound);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Queues a request to pause the most recently started instance of a
+	 * sound.
+	 *
+	 * @param sound the handle of the sound
+	 * @return true if the request was queued, or false if the queue was full
+	 */
+	public boolean pause(SoundHandle sound)
+	{
+		return submitSound(CommandQueue.PAUSE, sound);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Queues a request to resume the most recently started instance of a
+	 * sound.
+	 *
+	 * @param sound the handle of the sound
+	 * @return true if the request was queued, or false if the queue was full
+	 */
+	public boolean resume(SoundHandle sound)
+	{
+		return submitSound(CommandQueue.RESUME, sound);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Queues a request to change the volume of a playing sound, as
+	 * {@link SoundPlayer#setVolume(int, float, int)} does.
+	 *
+	 * @param streamId the stream ID of the sound
+	 * @param volume the new volume, from 0 (silent) to 1 (loudest)
+	 * @param rampMillis the time over which to change the volume, in
+	 *     milliseconds, or 0 to change it right away
+	 * @return true if the request was queued, or false if the queue was full
+	 *
+	 * @throws IllegalArgumentException if the volume is out of range or the
+	 *     ramp time is negative
+	 */
+	public boolean setVolume(int streamId, float volume, int rampMillis)
+	{
+		SoundPlayer.checkParameters(volume, SoundPlayer.DEFAULT_PAN,
+				SoundPlayer.DEFAULT_RATE);
+		SoundPlayer.checkRamp(rampMillis);
+
+		CommandQueue.Command command = queue.claim();
+		if (command == null)
+		{
+			return false;
+		}
+
+		command.opcode = CommandQueue.SET_VOLUME;
+		command.player = player;
+		command.streamId = streamId;
+		command.volume = volume;
+		command.rampMillis = rampMillis;
+		queue.publish(command);
+		return true;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Queues a request to change the playback rate of a playing sound, as
+	 * {@link SoundPlayer#setRate(int, float, int)} does.
+	 *
+	 * @param streamId the stream ID of the sound
+	 * @param rate the new playback rate, from 0.5 (half speed) to 2 (double
+	 *     speed)
+	 * @param rampMillis the time over which to change the rate, in
+	 *     milliseconds, or 0 to change it right away
+	 * @return true if the request was queued, or false if the queue was full
+	 *
+	 * @throws IllegalArgumentException if the rate is out of range or the
+	 *     ramp time is negative
+	 */
+	public boolean setRate(int streamId, float rate, int rampMillis)
+	{
+		SoundPlayer.checkParameters(SoundPlayer.DEFAULT_VOLUME,
+				SoundPlayer.DEFAULT_PAN, rate);
+		SoundPlayer.checkRamp(rampMillis);
+
+		CommandQueue.Command command = queue.claim();
+		if (command == null)
+		{
+			return false;
+		}
+
+		command.opcode = CommandQueue.SET_RATE;
+		command.player = player;
+		command.streamId = streamId;
+		command.rate = rate;
+		command.rampMillis = rampMillis;
+		queue.publish(command);
+		return true;
+	}
+
+
+	// ----------------------------------------------------------
+	private boolean submitPlay(SoundHandle sound, int loopCount, int priority,
+			float volume, float pan, float rate)
+	{
+		CommandQueue.Command command = queue.claim();
+		if (command == null)
+		{
+			return false;
+		}
+
+		command.opcode = CommandQueue.PLAY;
+		command.player = player;
+		command.sound = sound;
+		command.loopCount = loopCount;
+		command.priority = priority;
+		command.volume = volume;
+		command.pan = pan;
+		command.rate = rate;
+		queue.publish(command);
+		return true;
+	}
+
+
+	// ----------------------------------------------------------
+	private boolean submitSound(int opcode, SoundHandle sound)
+	{
+		player.checkOwner(sound);
+
+		CommandQueue.Command command = queue.claim();
+		if (command == null)
+		{
+			return false;
+		}
+
+		command.opcode = opcode;
+		command.player = player;
+		command.sound = sound;
+		queue.publish(command);
+		return true;
+	}
+}
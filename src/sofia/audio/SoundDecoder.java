@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import android.content.res.AssetFileDescriptor;
+
+import java.io.IOException;
+
+//-------------------------------------------------------------------------
+/**
+ * Decodes compressed sound files to PCM for a {@link MixerBackend}.
+ *
+ * @author Tony Allevato
+ */
+public interface SoundDecoder
+{
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Decodes a sound file. This is called on a background thread, and the
+	 * descriptor is closed by the caller.
+	 *
+	 * @param fd the descriptor of the sound file
+	 * @return the decoded sound
+	 *
+	 * @throws IOException if the file cannot be read or decoded
+	 */
+	PcmSound decode(AssetFileDescriptor fd) throws IOException;
+}
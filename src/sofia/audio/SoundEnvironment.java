@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import android.content.Context;
+
+//-------------------------------------------------------------------------
+/**
+ * Everything the sound bank and its players need from the platform: a
+ * clock, a main thread to run callbacks on, and a library of sound files.
+ * On a device these come from {@link AndroidSoundEnvironment}; a
+ * {@link SimulatedSoundEnvironment} replaces them with a clock that only
+ * moves when told to and sounds that have no files, so that the player's
+ * logic can be tested and measured on an ordinary JVM (with the android-all
+ * jar on the classpath for the few Android classes that remain, such as
+ * {@link android.util.SparseArray}).
+ * <p>
+ * Every time that the bank, its players, their voice tables and ramps, and
+ * the command thread work with comes from the environment's
+ * {@link #nanoTime() clock}, including the start times given to
+ * {@link SoundPlayer#playAt(String, long)}.
+ * </p>
+ *
+ * @author Tony Allevato
+ */
+interface SoundEnvironment extends SoundClock
+{
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Runs a task on the main thread, after the tasks already posted.
+	 *
+	 * @param task the task
+	 */
+	void post(Runnable task);
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Runs a task on the main thread after a delay.
+	 *
+	 * @param task the task
+	 * @param delayMillis the delay, in milliseconds
+	 */
+	void postDelayed(Runnable task, long delayMillis);
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Removes every pending run of a task that was posted.
+	 *
+	 * @param task the task
+	 */
+	void removeCallbacks(Runnable task);
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the library that sounds are looked up and opened in.
+	 *
+	 * @return the sound library
+	 */
+	SoundLibrary getLibrary();
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the application context, which is handed to the
+	 * {@link AudioBackend.Factory} that creates the bank's backend.
+	 *
+	 * @return the application context, or null when there is no device
+	 */
+	Context getContext();
+}
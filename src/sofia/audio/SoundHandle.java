@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+//-------------------------------------------------------------------------
+/**
+ * A reference to a loaded sound, returned by
+ * {@link SoundPlayer#loadSound(String)}. Playing, stopping, pausing, or
+ * resuming a sound through its handle skips the name lookup that the
+ * {@code String} versions of those methods do, so code that triggers sounds
+ * every frame should hold on to the handles of the sounds it uses.
+ * <p>
+ * Sounds are shared by every {@link SoundPlayer} in an application, so a
+ * handle can be used with any player that is alive at the same time as the
+ * one that returned it. It stays valid even if the sound is unloaded to stay
+ * within the cache budget; the sound is simply loaded again the next time it
+ * is played. Once every player has been destroyed, the handle can no longer
+ * be used.
+ * </p>
+ *
+ * @author Tony Allevato
+ */
+public final class SoundHandle
+{
+	//~ Fields ................................................................
+
+	static final int DEFAULT_PRIORITY = 1;
+
+	final SoundBank bank;
+	final String name;
+
+	// A small number unique to this handle within its bank, which players
+	// use to index their per-sound arrays.
+	final int index;
+
+	// The sound pool ID of the sound, or 0 if it is not loaded. The state
+	// and the most recent load are also read without the bank's lock.
+	int soundId;
+	volatile LoadState state;
+	volatile SoundLoad load;
+	long fileBytes;
+	long decodedBytes;
+
+	// How long one play of the sound lasts, from the manifest or the file's
+	// header, or 0 if that is not known (yet).
+	long durationNanos;
+
+	// When the current load was submitted, for SoundMetrics.
+	long loadStartNanos;
+
+	// The priority used when the sound is played without one, and the ID of
+	// the group its streams are started in.
+	int priority;
+	int group;
+
+	// How many instances may play at once in each player (0 for no limit),
+	// what happens to a play beyond that, and how soon after one play the
+	// next is allowed.
+	int maxInstances;
+	InstanceLimitPolicy instancePolicy;
+	int retriggerMillis;
+
+
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a handle for a sound that has not been loaded yet. Only
+	 * {@link SoundBank} creates these.
+	 *
+	 * @param bank the sound bank that owns the sound
+	 * @param name the name of the sound
+	 * @param index the index of the handle within the bank
+	 */
+	SoundHandle(SoundBank bank, String name, int index)
+	{
+		this.bank = bank;
+		this.name = name;
+		this.index = index;
+		this.instancePolicy = InstanceLimitPolicy.STEAL_OLDEST;
+		this.state = LoadState.UNLOADED;
+		this.priority = DEFAULT_PRIORITY;
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the name of the sound.
+	 *
+	 * @return the name of the sound
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets how far loading the sound has got. This never blocks, so it can
+	 * be used to check whether a sound is ready before playing it.
+	 *
+	 * @return the load state of the sound
+	 */
+	public LoadState getLoadState()
+	{
+		return state;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the most recent attempt to load the sound. Every caller waiting
+	 * for the sound shares it. If the sound has been unloaded since, the
+	 * next play or {@link SoundPlayer#loadSound(String)} starts a new load.
+	 *
+	 * @return the most recent load, or null if the sound has never been
+	 *     loaded
+	 */
+	public SoundLoad getLoad()
+	{
+		return load;
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public String toString()
+	{
+		return "SoundHandle[" + name + "]";
+	}
+}
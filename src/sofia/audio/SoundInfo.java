@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+//-------------------------------------------------------------------------
+/**
+ * What the sound bank manifest says about one sound, returned by
+ * {@link SoundPlayer#getSoundInfo(String)}. The information is computed when
+ * the application is built, so it is available without opening or decoding
+ * the sound file, which makes it suitable for planning preloads and the
+ * cache budget.
+ *
+ * @author Tony Allevato
+ */
+public class SoundInfo
+{
+	//~ Fields ................................................................
+
+	private final String name;
+	private final String path;
+	private final String format;
+	private final long durationMicros;
+	private final int sampleRate;
+	private final int channels;
+	private final long decodedBytes;
+	private final int priority;
+	private final String group;
+
+
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a new entry. Only {@link SoundManifest} creates these.
+	 *
+	 * @param name the name of the sound
+	 * @param path the path of the sound file, relative to the assets folder
+	 * @param format the format of the file, such as "ogg"
+	 * @param durationMicros the duration of the sound, in microseconds
+	 * @param sampleRate the sample rate, in Hz
+	 * @param channels the number of channels
+	 * @param decodedBytes the size of the decoded sound, in bytes
+	 * @param priority the default priority of the sound
+	 * @param group the group the sound belongs to
+	 */
+	SoundInfo(String name, String path, String format, long durationMicros,
+			int sampleRate, int channels, long decodedBytes, int priority,
+			String group)
+	{
+		this.name = name;
+		this.path = path;
+		this.format = format;
+		this.durationMicros = durationMicros;
+		this.sampleRate = sampleRate;
+		this.channels = channels;
+		this.decodedBytes = decodedBytes;
+		this.priority = priority;
+		this.group = group;
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the name of the sound.
+	 *
+	 * @return the name of the sound
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the path of the sound file, relative to the assets folder.
+	 *
+	 * @return the path of the sound file
+	 */
+	public String getPath()
+	{
+		return path;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the format of the sound file, such as "ogg" or "wav".
+	 *
+	 * @return the format of the sound file
+	 */
+	public String getFormat()
+	{
+		return format;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the duration of the sound.
+	 *
+	 * @return the duration, in microseconds
+	 */
+	public long getDurationMicros()
+	{
+		return durationMicros;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the sample rate of the sound.
+	 *
+	 * @return the sample rate, in Hz
+	 */
+	public int getSampleRate()
+	{
+		return sampleRate;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of channels in the sound.
+	 *
+	 * @return 1 for mono, or 2 for stereo
+	 */
+	public int getChannels()
+	{
+		return channels;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the size of the sound once it is decoded, which is how much it
+	 * counts against the cache budget.
+	 *
+	 * @return the decoded size, in bytes
+	 */
+	public long getDecodedBytes()
+	{
+		return decodedBytes;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the priority the sound is played with when no priority is given.
+	 *
+	 * @return the default priority
+	 */
+	public int getPriority()
+	{
+		return priority;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the group the sound is played in unless it is changed with
+	 * {@link SoundPlayer#setGroup(String, String)}.
+	 *
+	 * @return the name of the group
+	 */
+	public String getGroup()
+	{
+		return group;
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public String toString()
+	{
+		return "SoundInfo[" + name + ", " + path + ", "
+				+ durationMicros / 1000 + " ms, " + sampleRate + " Hz, "
+				+ channels + " ch, " + decodedBytes + " bytes]";
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import java.util.Collection;
+
+//-------------------------------------------------------------------------
+/**
+ * Where the sound bank finds its sounds by name. On a device this is
+ * {@link PackagedSoundLibrary}, which searches the manifest, res/raw, and
+ * the assets/sounds folder of the application's package.
+ *
+ * @author Tony Allevato
+ */
+interface SoundLibrary
+{
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the sound bank manifest.
+	 *
+	 * @return the manifest, which is empty if there is none
+	 */
+	SoundManifest getManifest();
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the names of the sounds that can be found by searching, whether
+	 * or not the manifest lists them.
+	 *
+	 * @param extensions the file extensions to accept, in order of
+	 *     preference
+	 * @return the names of the sounds
+	 */
+	Collection<String> names(String[] extensions);
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Opens the file of the sound with the specified name.
+	 *
+	 * @param name the name of the sound, without the file extension
+	 * @param extensions the file extensions to accept, in order of
+	 *     preference
+	 * @param descriptors the tracker that the opened descriptor is counted
+	 *     by
+	 * @return an open, tracked descriptor for the sound file, or null if it
+	 *     could not be found; the caller must close it
+	 */
+	DescriptorTracker.Descriptor open(String name, String[] extensions,
+			DescriptorTracker descriptors);
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Reads the duration of an open sound file and estimates its decoded
+	 * size. Called on the bank's background thread.
+	 *
+	 * @param name the name of the sound
+	 * @param fd the descriptor of the sound file, which is left open
+	 * @return the estimate
+	 */
+	DecodedSizeEstimator.Estimate measure(String name,
+			DescriptorTracker.Descriptor fd);
+}
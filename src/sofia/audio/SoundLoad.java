@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+//-------------------------------------------------------------------------
+/**
+ * One attempt to load a sound, returned by {@link SoundHandle#getLoad()}.
+ * Everything that waits for the same load shares this object, so playing a
+ * sound many times while it is loading still decodes it only once.
+ * <p>
+ * Use {@link #isDone()} or {@link SoundHandle#getLoadState()} to check on
+ * the load without blocking, a {@link Listener} to be told when it
+ * finishes, or {@link #get()} to wait for it on a background thread. Do not
+ * wait on the main thread: the sound pool reports loads there, so the load
+ * would never finish.
+ * </p>
+ *
+ * @author Tony Allevato
+ */
+public final class SoundLoad implements Future<SoundHandle>
+{
+	//~ Fields ................................................................
+
+	private final SoundHandle sound;
+
+	private boolean done;
+	private boolean succeeded;
+	private ArrayList<Listener> listeners;
+
+
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a load that is in progress. Only {@link SoundBank} creates
+	 * these.
+	 *
+	 * @param sound the sound being loaded
+	 */
+	SoundLoad(SoundHandle sound)
+	{
+		this.sound = sound;
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the sound being loaded.
+	 *
+	 * @return the handle of the sound
+	 */
+	public SoundHandle getSound()
+	{
+		return sound;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets a value indicating whether the load has finished, successfully
+	 * or not.
+	 *
+	 * @return true if the load has finished
+	 */
+	@Override
+	public synchronized boolean isDone()
+	{
+		return done;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets a value indicating whether the load finished and the sound can be
+	 * played.
+	 *
+	 * @return true if the sound was decoded successfully
+	 */
+	public synchronized boolean isSucceeded()
+	{
+		return succeeded;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Loads cannot be cancelled, so this does nothing.
+	 *
+	 * @param mayInterruptIfRunning ignored
+	 * @return false
+	 */
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning)
+	{
+		return false;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Loads cannot be cancelled, so this always returns false.
+	 *
+	 * @return false
+	 */
+	@Override
+	public boolean isCancelled()
+	{
+		return false;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Waits for the load to finish.
+	 *
+	 * @return the handle of the sound
+	 *
+	 * @throws InterruptedException if the thread is interrupted while
+	 *     waiting
+	 * @throws ExecutionException if the sound could not be decoded
+	 */
+	@Override
+	public synchronized SoundHandle get()
+			throws InterruptedException, ExecutionException
+	{
+		while (!done)
+		{
+			wait();
+		}
+
+		return result();
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Waits up to the given time for the load to finish.
+	 *
+	 * @param timeout the longest time to wait
+	 * @param unit the unit of the timeout
+	 * @return the handle of the sound
+	 *
+	 * @throws InterruptedException if the thread is interrupted while
+	 *     waiting
+	 * @throws ExecutionException if the sound could not be decoded
+	 * @throws TimeoutException if the load did not finish in time
+	 */
+	@Override
+	public synchronized SoundHandle get(long timeout, TimeUnit unit)
+			throws InterruptedException, ExecutionException, TimeoutException
+	{
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+		while (!done)
+		{
+			long remaining = deadline - System.nanoTime();
+
+			if (remaining <= 0)
+			{
+				throw new TimeoutException(
+						"Timed out loading " + sound.getName());
+			}
+
+			TimeUnit.NANOSECONDS.timedWait(this, remaining);
+		}
+
+		return result();
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Adds a listener that will be notified when this load finishes. If it
+	 * has already finished, the listener is notified immediately.
+	 *
+	 * @param listener the listener
+	 */
+	public void addListener(Listener listener)
+	{
+		synchronized (this)
+		{
+			if (!done)
+			{
+				if (listeners == null)
+				{
+					listeners = new ArrayList<Listener>();
+				}
+
+				listeners.add(listener);
+				return;
+			}
+		}
+
+		listener.loadFinished(this);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Removes a listener that was added with {@link #addListener(Listener)}.
+	 *
+	 * @param listener the listener
+	 */
+	public synchronized void removeListener(Listener listener)
+	{
+		if (listeners != null)
+		{
+			listeners.remove(listener);
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Called by the sound bank when the sound pool has decoded the sound, or
+	 * failed to, or when the sound is unloaded before it finished.
+	 *
+	 * @param loaded true if the sound was decoded successfully
+	 */
+	void finish(boolean loaded)
+	{
+		ArrayList<Listener> toNotify;
+
+		synchronized (this)
+		{
+			if (done)
+			{
+				return;
+			}
+
+			done = true;
+			succeeded = loaded;
+			toNotify = listeners;
+			listeners = null;
+			notifyAll();
+		}
+
+		if (toNotify != null)
+		{
+			for (Listener listener : toNotify)
+			{
+				listener.loadFinished(this);
+			}
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	private SoundHandle result() throws ExecutionException
+	{
+		if (!succeeded)
+		{
+			throw new ExecutionException(new IllegalStateException(
+					"Could not decode the audio file named \""
+					+ sound.getName() + "\""));
+		}
+
+		return sound;
+	}
+
+
+	//~ Inner classes .........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Receives a notification when a {@link SoundLoad} finishes. The
+	 * notification is delivered on the thread that the sound pool reports
+	 * loads on, which is the main thread unless another backend is used.
+	 */
+	public interface Listener
+	{
+		// ----------------------------------------------------------
+		/**
+		 * Called when the load finishes, successfully or not.
+		 *
+		 * @param load the load that finished
+		 */
+		void loadFinished(SoundLoad load);
+	}
+}
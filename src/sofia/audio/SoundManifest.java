@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+
+//-------------------------------------------------------------------------
+/**
+ * A process-wide index of the sounds listed in assets/sounds/manifest.json,
+ * a file that the application's build writes with the metadata of every
+ * sound. When a sound is in the manifest, the sound bank opens its file
+ * directly instead of listing the assets folder, and takes its decoded size
+ * from the manifest instead of reading the file's header. A missing
+ * manifest is the same as an empty one.
+ * <p>
+ * The manifest looks like this; every field except {@code name} and
+ * {@code path} is optional:
+ * </p>
+ * <pre>
+ * {
+ *   "version": 1,
+ *   "sounds": [
+ *     {
+ *       "name": "explosion",
+ *       "path": "sounds/explosion.ogg",
+ *       "format": "ogg",
+ *       "durationMicros": 1250000,
+ *       "sampleRate": 44100,
+ *       "channels": 2,
+ *       "decodedBytes": 220500,
+ *       "priority": 2,
+ *       "group": "effects"
+ *     }
+ *   ]
+ * }
+ * </pre>
+ * <p>
+ * If {@code decodedBytes} is left out, it is computed from the duration,
+ * sample rate, and channel count when those are present. A manifest can
+ * name at most {@link SoundBank#MAX_GROUPS} groups, counting the default
+ * group; sounds in any group past that limit are put in the default group.
+ * </p>
+ *
+ * @author Tony Allevato
+ */
+final class SoundManifest
+{
+	//~ Fields ................................................................
+
+	static final String PATH = AssetSoundIndex.SOUNDS_FOLDER + "/manifest.json";
+
+	private static final String TAG = "SoundManifest";
+	private static final int VERSION = 1;
+
+	private static final HashMap<String, SoundManifest> manifests =
+			new HashMap<String, SoundManifest>();
+
+	private final LinkedHashMap<String, SoundInfo> sounds;
+
+
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	private SoundManifest(LinkedHashMap<String, SoundInfo> sounds)
+	{
+		this.sounds = sounds;
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the manifest for the application that the specified context
+	 * belongs to, reading it if this is the first time it has been
+	 * requested.
+	 *
+	 * @param context the context
+	 * @return the manifest for the context's application
+	 */
+	static SoundManifest forContext(Context context)
+	{
+		String packageName = context.getPackageName();
+
+		synchronized (manifests)
+		{
+			SoundManifest manifest = manifests.get(packageName);
+
+			if (manifest == null)
+			{
+				manifest = new SoundManifest(read(context));
+				manifests.put(packageName, manifest);
+			}
+
+			return manifest;
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a manifest that lists no sounds, for a library that has none.
+	 *
+	 * @return the empty manifest
+	 */
+	static SoundManifest empty()
+	{
+		return new SoundManifest(new LinkedHashMap<String, SoundInfo>());
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the entry for the sound with the specified name.
+	 *
+	 * @param name the name of the sound
+	 * @return the entry, or null if the sound is not in the manifest
+	 */
+	SoundInfo find(String name)
+	{
+		return sounds.get(name);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the names of the sounds in the manifest, in the order they are
+	 * listed.
+	 *
+	 * @return the names of the sounds
+	 */
+	Collection<String> names()
+	{
+		return Collections.unmodifiableSet(sounds.keySet());
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the entries of the sounds in the manifest, in the order they are
+	 * listed.
+	 *
+	 * @return the entries
+	 */
+	Collection<SoundInfo> entries()
+	{
+		return Collections.unmodifiableCollection(sounds.values());
+	}
+
+
+	// ----------------------------------------------------------
+	private static LinkedHashMap<String, SoundInfo> read(Context context)
+	{
+		LinkedHashMap<String, SoundInfo> sounds =
+				new LinkedHashMap<String, SoundInfo>();
+
+		try
+		{
+			InputStream stream = context.getAssets().open(PATH);
+
+			try
+			{
+				parse(readFully(stream), sounds);
+			}
+			finally
+			{
+				stream.close();
+			}
+		}
+		catch (FileNotFoundException e)
+		{
+			// The application has no manifest.
+		}
+		catch (IOException e)
+		{
+			Log.w(TAG, "Could not read " + PATH, e);
+		}
+		catch (JSONException e)
+		{
+			Log.w(TAG, "Ignoring malformed " + PATH, e);
+			sounds.clear();
+		}
+
+		return sounds;
+	}
+
+
+	// ----------------------------------------------------------
+	private static void parse(String text,
+			LinkedHashMap<String, SoundInfo> sounds) throws JSONException
+	{
+		JSONObject root = new JSONObject(text);
+
+		int version = root.optInt("version", VERSION);
+		if (version > VERSION)
+		{
+			throw new JSONException("Unsupported manifest version " + version);
+		}
+
+		JSONArray entries = root.getJSONArray("sounds");
+
+		HashSet<String> groups = new HashSet<String>();
+		groups.add(SoundPlayer.DEFAULT_GROUP);
+
+		for (int i = 0; i < entries.length(); i++)
+		{
+			JSONObject entry = entries.getJSONObject(i);
+
+			String name = entry.getString("name");
+			String path = entry.getString("path");
+			long durationMicros = entry.optLong("durationMicros", 0);
+			int sampleRate = entry.optInt("sampleRate", 0);
+			int channels = entry.optInt("channels", 0);
+			long decodedBytes = entry.optLong("decodedBytes",
+					DecodedSizeEstimator.decodedSize(
+							durationMicros, sampleRate, channels));
+			int priority = entry.optInt(
+					"priority", SoundHandle.DEFAULT_PRIORITY);
+
+			if (priority < 0)
+			{
+				throw new JSONException("The priority of " + name
+						+ " cannot be negative, but was " + priority);
+			}
+
+			String format = entry.optString("format",
+					path.substring(path.lastIndexOf('.') + 1));
+			String group = entry.optString(
+					"group", SoundPlayer.DEFAULT_GROUP);
+
+			if (!groups.contains(group))
+			{
+				if (groups.size() < SoundBank.MAX_GROUPS)
+				{
+					groups.add(group);
+				}
+				else
+				{
+					Log.w(TAG, "Putting " + name + " in the default group; "
+							+ PATH + " names more than " + SoundBank.MAX_GROUPS
+							+ " groups");
+					group = SoundPlayer.DEFAULT_GROUP;
+				}
+			}
+
+			sounds.put(name, new SoundInfo(name, path, format, durationMicros,
+					sampleRate, channels, decodedBytes, priority, group));
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	private static String readFully(InputStream stream) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int count;
+
+		while ((count = stream.read(buffer)) != -1)
+		{
+			bytes.write(buffer, 0, count);
+		}
+
+		return bytes.toString("UTF-8");
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+//-------------------------------------------------------------------------
+/**
+ * Receives measurements from every {@link SoundPlayer} in the application,
+ * so that audio problems reported from the field can be diagnosed. Install
+ * one with {@link SoundPlayer#setMetrics(SoundMetrics)}.
+ * <p>
+ * Every method does nothing by default, so a subclass only overrides the
+ * measurements it records. When no metrics are installed, the players call
+ * these empty methods and measure nothing else, so the cost is a method
+ * call per event.
+ * </p><p>
+ * The methods are called with the sound bank's lock held, on whichever
+ * thread caused the event. They must return quickly and must not wait for
+ * another thread that uses a sound player.
+ * </p>
+ *
+ * @author Tony Allevato
+ */
+public abstract class SoundMetrics
+{
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Called when the backend finishes decoding a sound, successfully or
+	 * not.
+	 *
+	 * @param name the name of the sound
+	 * @param latencyNanos the time from submitting the sound to the backend
+	 *     until it was decoded, in nanoseconds
+	 * @param succeeded true if the sound was decoded successfully
+	 */
+	public void soundLoaded(String name, long latencyNanos, boolean succeeded)
+	{
+		// Does nothing by default.
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Called when a sound starts playing.
+	 *
+	 * @param name the name of the sound
+	 * @param waitNanos the time the play waited for the sound to load, in
+	 *     nanoseconds, or 0 if the sound was already loaded
+	 * @param activeVoices the number of sounds the player is playing,
+	 *     including this one
+	 */
+	public void playStarted(String name, long waitNanos, int activeVoices)
+	{
+		// Does nothing by default.
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Called when a sound could not be played, either because it could not
+	 * be decoded or because every voice was busy with a more important
+	 * sound.
+	 *
+	 * @param name the name of the sound
+	 */
+	public void playFailed(String name)
+	{
+		// Does nothing by default.
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Called when a playing sound is stopped to make room for a new one.
+	 *
+	 * @param name the name of the sound that was stopped
+	 */
+	public void voiceStolen(String name)
+	{
+		// Does nothing by default.
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Called when a sound is unloaded to keep the decoded sounds within the
+	 * cache budget.
+	 *
+	 * @param name the name of the sound
+	 * @param decodedBytes the estimated size of the decoded sound
+	 */
+	public void soundEvicted(String name, long decodedBytes)
+	{
+		// Does nothing by default.
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Called when a sound is loaded or unloaded, with the new estimate of
+	 * the memory that the decoded sounds use.
+	 *
+	 * @param cachedBytes the estimated size of every loaded sound
+	 * @param budgetBytes the cache budget
+	 */
+	public void cacheSizeChanged(long cachedBytes, long budgetBytes)
+	{
+		// Does nothing by default.
+	}
+}
@@ -20,20 +20,29 @@ import sofia.app.internal.LifecycleInjection;
 import sofia.app.internal.ScreenMixin;
 
 import android.content.Context;
-import android.content.res.AssetFileDescriptor;
-import android.content.res.AssetManager;
-import android.media.AudioManager;
-import android.media.SoundPool;
-import android.os.SystemClock;
+import android.util.SparseArray;
 import android.util.SparseIntArray;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 
 //-------------------------------------------------------------------------
 /**
  * This class provides a simple interface for playing basic sounds (such as
  * notification chimes or game play effects) in a Sofia application.
+ * <p>
+ * Loaded sounds are shared by every SoundPlayer in the application, so
+ * creating a player for each screen does not load the same sounds again.
+ * Each player only controls the sounds that it started, so pausing one
+ * screen does not pause sounds started by another.
+ * </p><p>
+ * A player can be used from any thread; its methods share one lock with the
+ * sound bank. Threads that must never wait for that lock, such as a game
+ * loop or an audio callback, should send requests through
+ * {@link #getCommands()} instead.
+ * </p>
  *  
  * @author Ellen Boyd, Tony Allevato
  */
@@ -41,22 +50,95 @@ public class SoundPlayer
 {
 	//~ Fields ................................................................
 
+	/**
+	 * The group that sounds belong to until they are put in another one.
+	 */
+	public static final String DEFAULT_GROUP = "default";
+
 	private static final int LOOP_INDEFINITELY = -1;
-	private static final float DEFAULT_RATE = 1.0f;
-	
-	private static final String[] ASSET_EXTENSIONS = {
-		".ogg", ".OGG", ".mp3", ".MP3", ".wav", ".WAV"
-	};
-	
-	private Context context;
-	private SoundPool soundPool;
+	static final float DEFAULT_RATE = 1.0f;
+	static final float DEFAULT_VOLUME = 0.5f;
+	static final float DEFAULT_PAN = 0f;
+	private static final float MIN_RATE = 0.5f;
+	private static final float MAX_RATE = 2.0f;
 
-	// A cache that maps sound names to their sound pool integer IDs, so that
-	// sounds can always be referred to by name for simplicity.
-	private HashMap<String, Integer> soundNamesToPoolIds;
-	
-	// Maps sound pool IDs to currently playing stream IDs.
-	private SparseIntArray poolIdsToStreamIds;
+	// How often volume and rate ramps are advanced, about once per frame.
+	private static final int RAMP_FRAME_MILLIS = 16;
+	// Passed internally in place of a priority to mean "use the sound's own
+	// priority".
+	static final int SOUND_PRIORITY = -1;
+	private static final int DEFAULT_MAX_STREAMS = 1;
+
+	// The last-played time of a sound that has not been played yet, far
+	// enough in the past that subtracting it from the clock cannot
+	// overflow.
+	private static final long NEVER_PLAYED = Long.MIN_VALUE / 2;
+
+	// The start time of a play that was not scheduled with playAt(), which
+	// starts as soon as the backend can start it.
+	static final long UNSCHEDULED = Long.MIN_VALUE;
+
+	// The process-wide bank that loads and caches sounds, and the backend
+	// that it loads them into.
+	private SoundBank bank;
+	private AudioBackend backend;
+
+	// Play requests for sounds that are still loading, keyed by sound pool
+	// ID. They are started when the bank reports that loading is complete.
+	private SparseArray<ArrayList<Playback>> pendingPlaybacks;
+
+	// The streams this player has started, grouped by sound pool ID. Used to
+	// reach every instance of a sound, to decide which stream to stop when
+	// every stream is in use, and to pause only this player's sounds.
+	// Streams that have ended on their own are dropped before the table is
+	// consulted.
+	private VoiceTable voices;
+	private VoiceAllocationPolicy voiceAllocationPolicy;
+
+	// Scratch space for the stream IDs of one sound, so that operating on
+	// every instance of a sound does not allocate.
+	private int[] streamScratch;
+
+	// The streams that pauseAll() paused, so that resumeAll() resumes
+	// exactly those.
+	private int[] pausedStreams;
+	private int pausedCount;
+
+	// How often a playing stream was stopped to make room for a new one (in
+	// total and by sound pool ID), and how often a new stream was dropped
+	// because every voice had a higher priority.
+	private long steals;
+	private long rejections;
+	private SparseIntArray stealsBySound;
+
+	// When each sound with a retrigger interval was last played, indexed by
+	// the handle's index, and how many plays were dropped for coming too
+	// soon. The array grows as sounds with intervals are played.
+	private long[] lastPlayed;
+	private long throttled;
+
+	// Volume and rate changes waiting to be sent to the backend, which are
+	// advanced once per frame on the main thread while any are pending.
+	private ParameterRamps ramps;
+	private boolean rampsScheduled;
+
+	// The clock and main thread of the bank, which every time the player
+	// works with comes from.
+	private SoundEnvironment environment;
+
+	// The volume of each group and whether it is paused, indexed by the
+	// group IDs that the bank hands out.
+	private float[] groupVolumes;
+	private boolean[] pausedGroups;
+
+	// The long sounds this player is streaming rather than playing from
+	// the bank.
+	private ArrayList<MusicStream> musicStreams;
+
+	// Requests queued by threads that cannot wait for the bank's lock, which
+	// are carried out on the bank's command thread.
+	private SoundCommands commands;
+	private boolean destroyed;
 
 
 	//~ Constructors ..........................................................
@@ -64,299 +146,2650 @@ public class SoundPlayer
     // ----------------------------------------------------------
 	/**
 	 * Creates a new SoundPlayer with given context (which is an activity or
-	 * screen).
+	 * screen). The player can only play one sound at a time; starting a new
+	 * sound stops the one that is currently playing.
 	 * 
 	 * @param context the context
 	 */
 	public SoundPlayer(Context context) 
 	{
-		this.context = context;
-		
-		soundNamesToPoolIds = new HashMap<String, Integer>();
-		soundPool = new SoundPool(1, AudioManager.STREAM_MUSIC, 0);
-		poolIdsToStreamIds = new SparseIntArray();
-		
+		this(context, DEFAULT_MAX_STREAMS);
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Creates a new SoundPlayer with given context (which is an activity or
+	 * screen) that can play up to the specified number of sounds at the same
+	 * time. When that limit is reached, starting a new sound stops one of the
+	 * playing sounds, chosen according to the player's
+	 * {@link #setVoiceAllocationPolicy(VoiceAllocationPolicy) voice
+	 * allocation policy}.
+	 * 
+	 * @param context the context
+	 * @param maxStreams the maximum number of sounds that can play at the
+	 *     same time
+	 * 
+	 * @throws IllegalArgumentException if maxStreams is less than 1 or more
+	 *     than 32
+	 */
+	public SoundPlayer(Context context, int maxStreams) 
+	{
+		this(new AndroidSoundEnvironment(context), maxStreams);
+
 		ScreenMixin mixin = ScreenMixin.getMixin(context);
 		if (mixin != null)
 		{
 			mixin.addLifecycleInjection(injection);
 		}		
 	}
-	
 
-	//~ Methods ...............................................................
 
     // ----------------------------------------------------------
 	/**
-	 * Plays the sound with the specified name once.
+	 * Creates a new SoundPlayer in the specified environment, which is how
+	 * the player is run without a device. A player created this way is not
+	 * tied to a screen, so it must be {@link #release() released}.
 	 * 
-	 * @param name the name of the sound to play
+	 * @param environment the environment, which is only used if no other
+	 *     player is sharing the sound bank
+	 * @param maxStreams the maximum number of sounds that can play at the
+	 *     same time
+	 * 
+	 * @throws IllegalArgumentException if maxStreams is less than 1 or more
+	 *     than 32
 	 */
-	public void play(String name)
+	SoundPlayer(SoundEnvironment environment, int maxStreams)
 	{
-		play(name, 0);		
+		if (maxStreams < 1 || maxStreams > SoundBank.MAX_STREAMS)
+		{
+			throw new IllegalArgumentException(
+					"maxStreams must be between 1 and " + SoundBank.MAX_STREAMS
+					+ ", but was " + maxStreams);
+		}
+
+		bank = SoundBank.acquire(environment);
+		backend = bank.getBackend();
+		this.environment = bank.getEnvironment();
+		pendingPlaybacks = new SparseArray<ArrayList<Playback>>();
+		voices = new VoiceTable(maxStreams);
+		voiceAllocationPolicy = VoiceAllocationPolicy.OLDEST_FIRST;
+		streamScratch = new int[maxStreams];
+		pausedStreams = new int[maxStreams];
+		stealsBySound = new SparseIntArray();
+		lastPlayed = new long[0];
+		groupVolumes = new float[SoundBank.MAX_GROUPS];
+		pausedGroups = new boolean[SoundBank.MAX_GROUPS];
+		Arrays.fill(groupVolumes, 1.0f);
+		ramps = new ParameterRamps(voices, backend, groupVolumes);
+		musicStreams = new ArrayList<MusicStream>();
+
+		bank.attach(this);
 	}
 	
 
+	//~ Methods ...............................................................
+
     // ----------------------------------------------------------
 	/**
-	 * Plays the sound with the specified name, repeating it a given number of
-	 * times.
+	 * Sets the factory that creates the {@link AudioBackend} the sound
+	 * players play through. Sound players share one backend, which is
+	 * created along with the first player and released with the last one,
+	 * so this must be called before any player is created (or after every
+	 * player has been released) to take effect. Use this to run the players
+	 * against a {@link SimulatedAudioBackend} when there is no device.
+	 *
+	 * @param factory the factory, or null to play through a
+	 *     {@link android.media.SoundPool}
+	 */
+	public static void setBackendFactory(AudioBackend.Factory factory)
+	{
+		SoundBank.setBackendFactory(factory);
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Sets the object that receives measurements, such as load times and
+	 * failed plays, from every sound player in the application. Takes
+	 * effect immediately.
+	 *
+	 * @param metrics the metrics, or null to stop measuring
+	 */
+	public static void setMetrics(SoundMetrics metrics)
+	{
+		SoundBank.setMetrics(metrics);
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Gets an object that queues requests to this player without waiting
+	 * for the lock that its other methods take. The requests are carried out
+	 * in order on a background thread shortly afterwards.
 	 * 
-	 * @param name the name of the sound to play
-	 * @param loopCount the number of times to repeat the sound
+	 * @return the command queue of this player
 	 */
-	public void play(String name, int loopCount) 
+	public SoundCommands getCommands()
 	{
-		if (!isLoaded(name))
+		synchronized (bank)
 		{
-			loadSound(name);
-		}
+			if (commands == null)
+			{
+				commands = new SoundCommands(this, bank);
+			}
 
-		int soundId = soundNamesToPoolIds.get(name);
-		int stream = playHelper(soundId, loopCount);
-		poolIdsToStreamIds.put(soundId, stream);
+			return commands;
+		}
 	}
 
 
     // ----------------------------------------------------------
 	/**
-	 * Plays the sound with the specified name, repeating it forever (until a
-	 * method such as {@link #pause(String)} or {@link #stop(String)} is
-	 * called).
+	 * Gets the maximum number of sounds that this player can play at the
+	 * same time.
 	 * 
-	 * @param name the name of the sound to play
+	 * @return the maximum number of streams
 	 */
-	public void playForever(String name)
+	public int getMaxStreams()
 	{
-		play(name, LOOP_INDEFINITELY);
+		return voices.capacity();
 	}
-	
-	
+
+
     // ----------------------------------------------------------
 	/**
-	 * Stops the sound with the specified name, if it is currently playing. If
-	 * the sound is not currently playing, nothing happens.
+	 * Gets the policy used to choose which sound to stop when a new sound is
+	 * played and every stream is already in use.
 	 * 
-	 * @param name the name of the sound to stop
+	 * @return the voice allocation policy
 	 */
-	public void stop(String name)
+	public VoiceAllocationPolicy getVoiceAllocationPolicy()
 	{
-		if (soundNamesToPoolIds.containsKey(name))
+		synchronized (bank)
 		{
-			soundPool.stop(
-					poolIdsToStreamIds.get(soundNamesToPoolIds.get(name)));
+			return voiceAllocationPolicy;
 		}
 	}
-	
 
-	// ----------------------------------------------------------
+
+    // ----------------------------------------------------------
 	/**
-	 * Resumes the sound with the specified name, if it is paused. If the sound
-	 * is not paused (or was never loaded), nothing happens.
+	 * Sets the policy used to choose which sound to stop when a new sound is
+	 * played and every stream is already in use. The default is
+	 * {@link VoiceAllocationPolicy#OLDEST_FIRST}.
 	 * 
-	 * @param name the name of the sound to resume
+	 * @param policy the voice allocation policy
 	 */
-	public void resume(String name)
+	public void setVoiceAllocationPolicy(VoiceAllocationPolicy policy)
 	{
-		if (soundNamesToPoolIds.containsKey(name))
+		synchronized (bank)
 		{
-			soundPool.resume(
-					poolIdsToStreamIds.get(soundNamesToPoolIds.get(name)));
+			if (policy == null)
+			{
+				throw new IllegalArgumentException("policy cannot be null");
+			}
+
+			voiceAllocationPolicy = policy;
 		}
 	}
-	
+
 
     // ----------------------------------------------------------
 	/**
-	 * Pauses the sound with the specified name, if it is playing. If the sound
-	 * is not playing, nothing happens.
+	 * Sets the file extensions that are accepted when a sound is loaded from
+	 * the assets/sounds folder, in order of preference. If a sound exists
+	 * with more than one of these extensions, the file with the earliest
+	 * extension in the list is used. The default order is .ogg, .OGG, .mp3,
+	 * .MP3, .wav, .WAV. Sounds that have already been loaded are not
+	 * affected. This setting is shared by every SoundPlayer in the
+	 * application.
 	 * 
-	 * @param name the name of the sound to pause
+	 * @param extensions the extensions, including the leading period
 	 */
-	public void pause(String name)
+	public void setAssetExtensions(String... extensions)
 	{
-		if (soundNamesToPoolIds.containsKey(name))
+		if (extensions == null || extensions.length == 0)
 		{
-			soundPool.pause(
-					poolIdsToStreamIds.get(soundNamesToPoolIds.get(name)));
+			throw new IllegalArgumentException(
+					"At least one extension must be given.");
 		}
+
+		bank.setAssetExtensions(extensions);
 	}
 
-	
-	// ----------------------------------------------------------
+
+    // ----------------------------------------------------------
 	/**
-	 * Pauses all currently playing sounds. Call {@link #resumeAll()} to start
-	 * them again where they left off.
+	 * Gets what the sound bank manifest (assets/sounds/manifest.json) says
+	 * about a sound, such as its duration and decoded size, without opening
+	 * the sound file. Sounds in the manifest are found without searching
+	 * the assets folder, and are played with the manifest's priority unless
+	 * it is changed with {@link #setPriority(String, int)}.
+	 * 
+	 * @param name the name of the sound
+	 * @return the manifest entry, or null if the application has no
+	 *     manifest or the sound is not in it
 	 */
-	public void pauseAll()
+	public SoundInfo getSoundInfo(String name)
 	{
-		soundPool.autoPause();
+		return bank.getSoundInfo(name);
 	}
 
 
-	// ----------------------------------------------------------
+    // ----------------------------------------------------------
 	/**
-	 * Resumes all sounds that were playing when {@link #pauseAll()} was
-	 * called.
+	 * Gets every sound in the sound bank manifest, for example to add up
+	 * their decoded sizes before choosing what to preload.
+	 * 
+	 * @return the manifest entries, in the order they are listed, or an
+	 *     empty collection if the application has no manifest
 	 */
-	public void resumeAll()
+	public Collection<SoundInfo> getSoundInfos()
 	{
-		soundPool.autoResume();
+		return bank.getSoundInfos();
 	}
 
 
-	// ----------------------------------------------------------
+    // ----------------------------------------------------------
 	/**
-	 * Attempts to load the sound file with the given name by first checking
-	 * for a resource with the matching name in res/raw, and if it is not found
-	 * there then it is looked up in the assets/sounds folder.
+	 * Plays the sound with the specified name once.
 	 * 
-	 * @param name the name of the sound file, without the file extension
+	 * @param name the name of the sound to play
+	 * @return a {@link Playback} that can be used to find out when the sound
+	 *     actually starts
+	 */
+	public Playback play(String name)
+	{
+		return play(name, 0);
+	}
+	
+
+    // ----------------------------------------------------------
+	/**
+	 * Plays the sound with the specified name, repeating it a given number of
+	 * times.
+	 * <p>
+	 * This method never blocks. If the sound has not finished loading, the
+	 * request is queued and the sound starts as soon as the sound pool
+	 * reports that it is ready; the returned {@link Playback} can be used to
+	 * be notified when that happens.
+	 * </p>
 	 * 
-	 * @throws IllegalArgumentException if a sound with the given name cannot
-	 *     be located
+	 * @param name the name of the sound to play
+	 * @param loopCount the number of times to repeat the sound
+	 * @return a {@link Playback} that can be used to find out when the sound
+	 *     actually starts
 	 */
-	public void loadSound(String name)
+	public Playback play(String name, int loopCount) 
 	{
-		boolean didLoad =
-				loadSoundFromResources(name) || loadSoundFromAssets(name);
+		synchronized (bank)
+		{
+			return playNamed(name, loopCount, SOUND_PRIORITY,
+					DEFAULT_VOLUME, DEFAULT_PAN, DEFAULT_RATE);
+		}
+	}
 
-		if (!didLoad)
+
+    // ----------------------------------------------------------
+	/**
+	 * Plays the sound with the specified name, repeating it a given number of
+	 * times, with a priority that overrides the sound's own. When every voice
+	 * is busy, a sound only replaces sounds whose priority is not higher
+	 * than its own; if there are none, it is not played.
+	 * 
+	 * @param name the name of the sound to play
+	 * @param loopCount the number of times to repeat the sound
+	 * @param priority the priority of this play; higher numbers are more
+	 *     important, and 0 is the lowest
+	 * @return a {@link Playback} that can be used to find out when the sound
+	 *     actually starts
+	 * 
+	 * @throws IllegalArgumentException if priority is negative
+	 */
+	public Playback play(String name, int loopCount, int priority) 
+	{
+		synchronized (bank)
 		{
-			throw new IllegalArgumentException(
-					"Could not find an audio file named \"" + name +
-					"\" in assets or in res/raw.");
+			checkPriority(priority);
+			return playNamed(name, loopCount, priority,
+					DEFAULT_VOLUME, DEFAULT_PAN, DEFAULT_RATE);
 		}
 	}
 
 
     // ----------------------------------------------------------
 	/**
-	 * Attempts to load a sound from a resource stored in the res/raw folder.
+	 * Plays the sound with the specified name at a given volume, pan, and
+	 * rate, repeating it a given number of times. The volume and rate can be
+	 * changed while the sound plays with {@link #setVolume(int, float, int)}
+	 * and {@link #setRate(int, float, int)}, using the stream ID from the
+	 * returned {@link Playback}.
 	 * 
-	 * @param name the name of the sound file, without the file extension
-	 * @return true if the sound was found and loaded successfully
+	 * @param name the name of the sound to play
+	 * @param volume the volume, from 0 (silent) to 1 (loudest)
+	 * @param pan the pan, from -1 (left channel only) through 0 (centered)
+	 *     to 1 (right channel only)
+	 * @param rate the playback rate, from 0.5 (half speed) to 2 (double
+	 *     speed)
+	 * @param loopCount the number of times to repeat the sound
+	 * @return a {@link Playback} that can be used to find out when the sound
+	 *     actually starts
+	 * 
+	 * @throws IllegalArgumentException if the volume, pan, or rate is out of
+	 *     range
+	 */
+	public Playback play(String name, float volume, float pan, float rate,
+			int loopCount) 
+	{
+		synchronized (bank)
+		{
+			checkParameters(volume, pan, rate);
+			return playNamed(name, loopCount, SOUND_PRIORITY, volume, pan, rate);
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Plays a sound by name, loading it first if it has not been loaded.
+	 * The caller must hold the bank's lock and must already have checked
+	 * the parameters.
+	 *
+	 * @param name the name of the sound
+	 * @param loopCount the number of times to loop the sound, or -1 to loop
+	 *     it forever
+	 * @param priority the priority of the play, or {@link #SOUND_PRIORITY}
+	 *     to use the sound's own priority
+	 * @param volume the volume
+	 * @param pan the pan
+	 * @param rate the playback rate
+	 * @return the playback, which fails if the sound could not be played
 	 */
-	private boolean loadSoundFromResources(String name)
+	private Playback playNamed(String name, int loopCount, int priority,
+			float volume, float pan, float rate) 
 	{
-		int resId = context.getResources().getIdentifier(
-				name, "raw", context.getPackageName());
+		SoundHandle sound = bank.handleFor(name);
 
-		if (resId != 0)
+		if (priority == SOUND_PRIORITY)
 		{
-			int soundId = soundPool.load(context, resId, 1);
-			soundNamesToPoolIds.put(name, soundId);
+			priority = sound.priority;
+		}
 
-			return true;
+		Playback playback = new Playback(
+				this, sound, loopCount, priority, volume, pan, rate);
+
+		if (isThrottled(sound))
+		{
+			playback.failed();
+			return playback;
+		}
+
+		bank.prepare(sound);
+
+		if (sound.state == LoadState.READY)
+		{
+			playHelper(playback);
+		}
+		else if (sound.state == LoadState.FAILED)
+		{
+			SoundBank.metrics().playFailed(sound.name);
+			playback.failed();
 		}
 		else
 		{
-			return false;
+			enqueue(playback);
 		}
+
+		return playback;
 	}
 
 
     // ----------------------------------------------------------
 	/**
-	 * Attempts to load a sound from a resource stored in the assets/sounds
-	 * folder.
+	 * Plays the sound with the specified name, repeating it forever (until a
+	 * method such as {@link #pause(String)} or {@link #stop(String)} is
+	 * called).
 	 * 
-	 * @param name the name of the sound file, without the file extension
-	 * @return true if the sound was found and loaded successfully
+	 * @param name the name of the sound to play
+	 * @return a {@link Playback} that can be used to find out when the sound
+	 *     actually starts
 	 */
-	private boolean loadSoundFromAssets(String name)
+	public Playback playForever(String name)
 	{
-		AssetManager assets = context.getAssets();
-		AssetFileDescriptor fd = null;
+		return play(name, LOOP_INDEFINITELY);
+	}
+
 
-		for (String extension : ASSET_EXTENSIONS)
+    // ----------------------------------------------------------
+	/**
+	 * Streams the sound with the specified name once. Use this instead of
+	 * {@link #play(String)} for long sounds such as music: the file is
+	 * decoded a little at a time as it plays, so it is not loaded into the
+	 * shared sound bank and its length is not limited. The stream starts as
+	 * soon as it has been prepared.
+	 * 
+	 * @param name the name of the sound to stream
+	 * @return the stream, which can be used to pause or stop it
+	 * 
+	 * @throws IllegalArgumentException if the sound cannot be located or
+	 *     read
+	 */
+	public MusicStream playStream(String name)
+	{
+		synchronized (bank)
 		{
-			try
-			{
-				fd = assets.openFd("sounds/" + name + extension);
-			}
-			catch (IOException e)
-			{
-				// Do nothing.
-			}
+			return openStream(name, false);
 		}
-		
-		if (fd != null)
-		{
-			int soundId = soundPool.load(fd, 1);
-			soundNamesToPoolIds.put(name, soundId);
+	}
 
-			try
-			{
-				fd.close();
-			}
-			catch (IOException e)
-			{
-				// Do nothing.
-			}
 
-			return true;
+    // ----------------------------------------------------------
+	/**
+	 * Streams the sound with the specified name, repeating it forever (until
+	 * the stream is stopped). This is the usual way to play background
+	 * music.
+	 * 
+	 * @param name the name of the sound to stream
+	 * @return the stream, which can be used to pause or stop it
+	 * 
+	 * @throws IllegalArgumentException if the sound cannot be located or
+	 *     read
+	 */
+	public MusicStream playStreamForever(String name)
+	{
+		synchronized (bank)
+		{
+			return openStream(name, true);
 		}
-		else
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Plays a sound once, given its handle. This is the fastest way to play a
+	 * sound: it does not look up the sound by name, and if the sound is
+	 * already loaded it does not allocate any objects.
+	 * 
+	 * @param sound the handle of the sound to play
+	 * @return the stream ID of the sound, or 0 if the sound is still loading
+	 *     (in which case it starts as soon as it is ready) or could not be
+	 *     played
+	 */
+	public int play(SoundHandle sound)
+	{
+		return play(sound, 0);
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Plays a sound, given its handle, repeating it a given number of times.
+	 * This is the fastest way to play a sound: it does not look up the sound
+	 * by name, and if the sound is already loaded it does not allocate any
+	 * objects.
+	 * 
+	 * @param sound the handle of the sound to play
+	 * @param loopCount the number of times to repeat the sound
+	 * @return the stream ID of the sound, or 0 if the sound is still loading
+	 *     (in which case it starts as soon as it is ready) or could not be
+	 *     played
+	 */
+	public int play(SoundHandle sound, int loopCount)
+	{
+		return play(sound, loopCount, sound.priority);
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Plays a sound, given its handle, repeating it a given number of times,
+	 * with a priority that overrides the sound's own. When every voice is
+	 * busy, a sound only replaces sounds whose priority is not higher than
+	 * its own; if there are none, it is not played.
+	 * 
+	 * @param sound the handle of the sound to play
+	 * @param loopCount the number of times to repeat the sound
+	 * @param priority the priority of this play; higher numbers are more
+	 *     important, and 0 is the lowest
+	 * @return the stream ID of the sound, or 0 if the sound is still loading
+	 *     (in which case it starts as soon as it is ready) or could not be
+	 *     played
+	 * 
+	 * @throws IllegalArgumentException if priority is negative
+	 */
+	public int play(SoundHandle sound, int loopCount, int priority)
+	{
+		synchronized (bank)
 		{
-			return false;
+			checkOwner(sound);
+			checkPriority(priority);
+			return playHandle(sound, loopCount, priority,
+					DEFAULT_VOLUME, DEFAULT_PAN, DEFAULT_RATE);
 		}
 	}
 
 
     // ----------------------------------------------------------
 	/**
-	 * Helper method that plays the given sound a certain amount of times as
-	 * specified by the caller.
+	 * Plays a sound, given its handle, at a given volume, pan, and rate,
+	 * repeating it a given number of times. The volume and rate can be
+	 * changed while the sound plays with {@link #setVolume(int, float, int)}
+	 * and {@link #setRate(int, float, int)}.
+	 * 
+	 * @param sound the handle of the sound to play
+	 * @param volume the volume, from 0 (silent) to 1 (loudest)
+	 * @param pan the pan, from -1 (left channel only) through 0 (centered)
+	 *     to 1 (right channel only)
+	 * @param rate the playback rate, from 0.5 (half speed) to 2 (double
+	 *     speed)
+	 * @param loopCount the number of times to repeat the sound
+	 * @return the stream ID of the sound, or 0 if the sound is still loading
+	 *     (in which case it starts as soon as it is ready) or could not be
+	 *     played
 	 * 
-	 * @param soundId unique sound id
-	 * @param loopCount number of times to repeat the sound
+	 * @throws IllegalArgumentException if the volume, pan, or rate is out of
+	 *     range
 	 */
-	private int playHelper(int soundId, int loopCount)
+	public int play(SoundHandle sound, float volume, float pan, float rate,
+			int loopCount)
 	{
-		// FIXME We need to replace this with a background thread that uses
-		// the sound pool's load-listener to wait for a sound to be loaded
-		// before it is played.
+		synchronized (bank)
+		{
+			checkOwner(sound);
+			checkParameters(volume, pan, rate);
+			return playHandle(sound, loopCount, sound.priority, volume, pan, rate);
+		}
+	}
 
-		int streamId = 0;
-		int waitLimit = 1000;
-		int waitCounter = 0;
-		int throttle = 10;
-		
-		do
+
+    // ----------------------------------------------------------
+	private int playHandle(SoundHandle sound, int loopCount, int priority,
+			float volume, float pan, float rate)
+	{
+		if (isThrottled(sound))
 		{
-			streamId = soundPool.play(soundId, 0.5f, 0.5f, 
-					1, loopCount, DEFAULT_RATE);
-			waitCounter ++;
-			SystemClock.sleep(throttle);
-		} while(streamId == 0 && waitCounter < waitLimit);
-		
-		if (streamId == 0)
+			return 0;
+		}
+
+		bank.prepare(sound);
+
+		if (sound.state == LoadState.READY)
+		{
+			return startStream(sound, 0, UNSCHEDULED, loopCount, priority,
+					volume, pan, rate);
+		}
+		else if (sound.state == LoadState.LOADING)
+		{
+			enqueue(new Playback(
+					this, sound, loopCount, priority, volume, pan, rate));
+		}
+		else
 		{
-			throw new RuntimeException("Failed to load sound file.");
+			SoundBank.metrics().playFailed(sound.name);
 		}
 
-		return streamId;
+		return 0;
 	}
 
 
     // ----------------------------------------------------------
 	/**
-	 * Returns true if a sound with the specified name has been loaded into the
-	 * sound pool.
+	 * Plays the sound with the specified name once, starting at a given time.
+	 * <p>
+	 * The time is measured by {@link System#nanoTime()}, so a sound can be
+	 * placed on a beat by adding the beat's offset to a time taken when the
+	 * music started. The sound starts loading right away, so that it is
+	 * ready when its time comes. A time in the past starts the sound at
+	 * once.
+	 * </p><p>
+	 * How precisely the sound starts depends on the backend. A
+	 * {@link ScheduledAudioBackend}, such as {@link MixerBackend}, starts it
+	 * on the exact sample; other backends start it when the bank's command
+	 * thread wakes at that time, which is usually within a millisecond or
+	 * two, plus the backend's own latency. A sound that is still loading
+	 * when its time comes starts as soon as it is ready, and so late.
+	 * </p>
 	 * 
-	 * @param name the name of the sound
-	 * @return true if the specified sound has been loaded, otherwise false
+	 * @param name the name of the sound to play
+	 * @param timeNanos when the sound should start, in the time base of
+	 *     {@link System#nanoTime()}
+	 * @return a {@link Playback} that can be used to find out when the sound
+	 *     is handed to the backend, or to cancel it before then
 	 */
-	private boolean isLoaded(String name)
+	public Playback playAt(String name, long timeNanos)
 	{
-		return soundNamesToPoolIds.containsKey(name);
+		synchronized (bank)
+		{
+			SoundHandle sound = bank.handleFor(name);
+			return scheduleAt(sound, 0, sound.priority, DEFAULT_VOLUME,
+					DEFAULT_PAN, DEFAULT_RATE, timeNanos);
+		}
 	}
-	
-	
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Plays the sound with the specified name at a given time, with a given
+	 * volume, pan, and rate, repeating it a given number of times. See
+	 * {@link #playAt(String, long)} for how the time is interpreted.
+	 * 
+	 * @param name the name of the sound to play
+	 * @param volume the volume, from 0 (silent) to 1 (loudest)
+	 * @param pan the pan, from -1 (left channel only) through 0 (centered)
+	 *     to 1 (right channel only)
+	 * @param rate the playback rate, from 0.5 (half speed) to 2 (double
+	 *     speed)
+	 * @param loopCount the number of times to repeat the sound
+	 * @param timeNanos when the sound should start, in the time base of
+	 *     {@link System#nanoTime()}
+	 * @return a {@link Playback} that can be used to find out when the sound
+	 *     is handed to the backend, or to cancel it before then
+	 * 
+	 * @throws IllegalArgumentException if the volume, pan, or rate is out of
+	 *     range
+	 */
+	public Playback playAt(String name, float volume, float pan, float rate,
+			int loopCount, long timeNanos)
+	{
+		synchronized (bank)
+		{
+			checkParameters(volume, pan, rate);
+
+			SoundHandle sound = bank.handleFor(name);
+			return scheduleAt(sound, loopCount, sound.priority, volume, pan,
+					rate, timeNanos);
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Plays a sound once, given its handle, starting at a given time. See
+	 * {@link #playAt(String, long)} for how the time is interpreted.
+	 * 
+	 * @param sound the handle of the sound to play
+	 * @param timeNanos when the sound should start, in the time base of
+	 *     {@link System#nanoTime()}
+	 * @return a {@link Playback} that can be used to find out when the sound
+	 *     is handed to the backend, or to cancel it before then
+	 */
+	public Playback playAt(SoundHandle sound, long timeNanos)
+	{
+		synchronized (bank)
+		{
+			checkOwner(sound);
+			return scheduleAt(sound, 0, sound.priority, DEFAULT_VOLUME,
+					DEFAULT_PAN, DEFAULT_RATE, timeNanos);
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	private Playback scheduleAt(SoundHandle sound, int loopCount,
+			int priority, float volume, float pan, float rate, long timeNanos)
+	{
+		Playback playback = new Playback(
+				this, sound, loopCount, priority, volume, pan, rate);
+
+		bank.prepare(sound);
+
+		if (sound.state == LoadState.FAILED)
+		{
+			SoundBank.metrics().playFailed(sound.name);
+			playback.failed();
+			return playback;
+		}
+
+		// A scheduling backend places the sound itself, so it is handed over
+		// early enough that the command thread waking late does not matter.
+		long lead = 0;
+		if (backend instanceof ScheduledAudioBackend)
+		{
+			lead = ((ScheduledAudioBackend) backend).getScheduleLeadNanos();
+		}
+
+		playback.startNanos = timeNanos;
+		playback.dispatchNanos = timeNanos - lead;
+		bank.schedule(playback);
+
+		return playback;
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Changes the volume of a playing sound, gradually if a ramp time is
+	 * given. Changes are applied once per frame, so calling this every frame
+	 * (for example, to fade a sound with distance) costs no more than one
+	 * update per frame. If the stream has already stopped, or belongs to
+	 * another player, nothing happens.
+	 * 
+	 * @param streamId the stream ID of the sound, from
+	 *     {@link Playback#getStreamId()} or a {@code play} method that takes
+	 *     a {@link SoundHandle}
+	 * @param volume the new volume, from 0 (silent) to 1 (loudest)
+	 * @param rampMillis the time over which to change the volume, in
+	 *     milliseconds, or 0 to change it right away
+	 * 
+	 * @throws IllegalArgumentException if the volume is out of range or the
+	 *     ramp time is negative
+	 */
+	public void setVolume(int streamId, float volume, int rampMillis)
+	{
+		synchronized (bank)
+		{
+			checkParameters(volume, DEFAULT_PAN, DEFAULT_RATE);
+			checkRamp(rampMillis);
+
+			if (voices.soundOf(streamId) != 0)
+			{
+				ramps.rampVolume(
+						streamId, volume, environment.nanoTime(), rampMillis);
+				scheduleRamps();
+			}
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Changes the playback rate of a playing sound, gradually if a ramp time
+	 * is given. Like {@link #setVolume(int, float, int)}, changes are applied
+	 * once per frame.
+	 * 
+	 * @param streamId the stream ID of the sound
+	 * @param rate the new playback rate, from 0.5 (half speed) to 2 (double
+	 *     speed)
+	 * @param rampMillis the time over which to change the rate, in
+	 *     milliseconds, or 0 to change it right away
+	 * 
+	 * @throws IllegalArgumentException if the rate is out of range or the
+	 *     ramp time is negative
+	 */
+	public void setRate(int streamId, float rate, int rampMillis)
+	{
+		synchronized (bank)
+		{
+			checkParameters(DEFAULT_VOLUME, DEFAULT_PAN, rate);
+			checkRamp(rampMillis);
+
+			if (voices.soundOf(streamId) != 0)
+			{
+				ramps.rampRate(
+						streamId, rate, environment.nanoTime(), rampMillis);
+				scheduleRamps();
+			}
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Plays a sound, given its handle, repeating it forever (until a method
+	 * such as {@link #pause(SoundHandle)} or {@link #stop(SoundHandle)} is
+	 * called).
+	 * 
+	 * @param sound the handle of the sound to play
+	 * @return the stream ID of the sound, or 0 if the sound is still loading
+	 *     (in which case it starts as soon as it is ready) or could not be
+	 *     played
+	 */
+	public int playForever(SoundHandle sound)
+	{
+		return play(sound, LOOP_INDEFINITELY);
+	}
+	
+	
+    // ----------------------------------------------------------
+	/**
+	 * Stops the sound with the specified name, if it is currently playing. If
+	 * the sound is not currently playing, nothing happens. Any requests to
+	 * play the sound that are still waiting for it to load or for their
+	 * scheduled time are cancelled.
+	 * If the sound is playing more than once, only the most recently started
+	 * instance is stopped; use {@link #stopAll(String)} to stop all of them.
+	 * 
+	 * @param name the name of the sound to stop
+	 */
+	public void stop(String name)
+	{
+		synchronized (bank)
+		{
+			SoundHandle sound = bank.find(name);
+
+			if (sound != null)
+			{
+				stop(sound);
+			}
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Stops a sound, given its handle, if it is currently playing. Any
+	 * requests to play the sound that are still waiting for it to load or
+	 * for their scheduled time are cancelled. If the sound is playing more
+	 * than once, only the most recently started instance is stopped.
+	 * 
+	 * @param sound the handle of the sound to stop
+	 */
+	public void stop(SoundHandle sound)
+	{
+		synchronized (bank)
+		{
+			checkOwner(sound);
+			bank.getScheduler().cancel(this, sound);
+
+			int soundId = sound.soundId;
+			if (soundId != 0)
+			{
+				cancelAllPending(soundId);
+				expireVoices();
+
+				int streamId = voices.newestStream(soundId);
+				if (streamId != 0)
+				{
+					voices.remove(streamId);
+					backend.stop(streamId);
+				}
+			}
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Stops every playing instance of the sound with the specified name, and
+	 * cancels any requests to play it that are still waiting for it to load
+	 * or for their scheduled time.
+	 * 
+	 * @param name the name of the sound to stop
+	 */
+	public void stopAll(String name)
+	{
+		synchronized (bank)
+		{
+			SoundHandle sound = bank.find(name);
+
+			if (sound != null)
+			{
+				stopAll(sound);
+			}
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Stops every playing instance of a sound, given its handle, and cancels
+	 * any requests to play it that are still waiting for it to load or for
+	 * their scheduled time.
+	 * 
+	 * @param sound the handle of the sound to stop
+	 */
+	public void stopAll(SoundHandle sound)
+	{
+		synchronized (bank)
+		{
+			checkOwner(sound);
+			bank.getScheduler().cancel(this, sound);
+
+			int soundId = sound.soundId;
+			if (soundId != 0)
+			{
+				cancelAllPending(soundId);
+
+				int count = voices.copyStreams(soundId, streamScratch);
+				for (int i = 0; i < count; i++)
+				{
+					voices.remove(streamScratch[i]);
+					backend.stop(streamScratch[i]);
+				}
+			}
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Resumes the sound with the specified name, if it is paused. If the sound
+	 * is not paused (or was never loaded), nothing happens. If the sound was
+	 * played more than once, only the most recently started instance is
+	 * resumed; use {@link #resumeAll(String)} to resume all of them.
+	 * 
+	 * @param name the name of the sound to resume
+	 */
+	public void resume(String name)
+	{
+		synchronized (bank)
+		{
+			SoundHandle sound = bank.find(name);
+
+			if (sound != null)
+			{
+				resume(sound);
+			}
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Resumes a sound, given its handle, if it is paused. If the sound was
+	 * played more than once, only the most recently started instance is
+	 * resumed.
+	 * 
+	 * @param sound the handle of the sound to resume
+	 */
+	public void resume(SoundHandle sound)
+	{
+		synchronized (bank)
+		{
+			checkOwner(sound);
+			expireVoices();
+
+			int streamId = voices.newestStream(sound.soundId);
+			if (streamId != 0)
+			{
+				voices.resume(streamId, environment.nanoTime());
+				backend.resume(streamId);
+			}
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Resumes every paused instance of the sound with the specified name.
+	 * 
+	 * @param name the name of the sound to resume
+	 */
+	public void resumeAll(String name)
+	{
+		synchronized (bank)
+		{
+			SoundHandle sound = bank.find(name);
+
+			if (sound != null)
+			{
+				resumeAll(sound);
+			}
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Resumes every paused instance of a sound, given its handle. Instances
+	 * in a paused group stay paused until the group is resumed.
+	 * 
+	 * @param sound the handle of the sound to resume
+	 */
+	public void resumeAll(SoundHandle sound)
+	{
+		synchronized (bank)
+		{
+			checkOwner(sound);
+
+			long now = environment.nanoTime();
+			int count = voices.copyStreams(sound.soundId, streamScratch);
+			for (int i = 0; i < count; i++)
+			{
+				resumeUnlessGroupPaused(streamScratch[i], now);
+			}
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Pauses the sound with the specified name, if it is playing. If the sound
+	 * is not playing, nothing happens. If the sound is playing more than
+	 * once, only the most recently started instance is paused; use
+	 * {@link #pauseAll(String)} to pause all of them.
+	 * 
+	 * @param name the name of the sound to pause
+	 */
+	public void pause(String name)
+	{
+		synchronized (bank)
+		{
+			SoundHandle sound = bank.find(name);
+
+			if (sound != null)
+			{
+				pause(sound);
+			}
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Pauses a sound, given its handle, if it is playing. If the sound is
+	 * playing more than once, only the most recently started instance is
+	 * paused.
+	 * 
+	 * @param sound the handle of the sound to pause
+	 */
+	public void pause(SoundHandle sound)
+	{
+		synchronized (bank)
+		{
+			checkOwner(sound);
+			expireVoices();
+
+			int streamId = voices.newestStream(sound.soundId);
+			if (streamId != 0)
+			{
+				voices.pause(streamId, environment.nanoTime());
+				backend.pause(streamId);
+			}
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Pauses every playing instance of the sound with the specified name.
+	 * Call {@link #resumeAll(String)} to start them again where they left
+	 * off.
+	 * 
+	 * @param name the name of the sound to pause
+	 */
+	public void pauseAll(String name)
+	{
+		synchronized (bank)
+		{
+			SoundHandle sound = bank.find(name);
+
+			if (sound != null)
+			{
+				pauseAll(sound);
+			}
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Pauses every playing instance of a sound, given its handle.
+	 * 
+	 * @param sound the handle of the sound to pause
+	 */
+	public void pauseAll(SoundHandle sound)
+	{
+		synchronized (bank)
+		{
+			checkOwner(sound);
+
+			long now = environment.nanoTime();
+			int count = voices.copyStreams(sound.soundId, streamScratch);
+			for (int i = 0; i < count; i++)
+			{
+				voices.pause(streamScratch[i], now);
+				backend.pause(streamScratch[i]);
+			}
+		}
+	}
+
+	
+	// ----------------------------------------------------------
+	/**
+	 * Pauses all sounds that this player is currently playing. Call
+	 * {@link #resumeAll()} to start them again where they left off. Sounds
+	 * started by other players are not affected.
+	 */
+	public void pauseAll()
+	{
+		synchronized (bank)
+		{
+			expireVoices();
+
+			long now = environment.nanoTime();
+			int count = voices.copyAllStreams(streamScratch);
+
+			// Only the streams that were actually playing are recorded, so
+			// that resumeAll() leaves sounds and groups that were paused on
+			// their own alone.
+			pausedCount = 0;
+			for (int i = 0; i < count; i++)
+			{
+				int stream = streamScratch[i];
+
+				if (!voices.isPaused(stream))
+				{
+					pausedStreams[pausedCount++] = stream;
+					voices.pause(stream, now);
+					backend.pause(stream);
+				}
+			}
+
+			for (int i = 0; i < musicStreams.size(); i++)
+			{
+				musicStreams.get(i).suspend();
+			}
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Resumes all sounds that were playing when {@link #pauseAll()} was
+	 * called, except those in a group that has been paused since.
+	 */
+	public void resumeAll()
+	{
+		synchronized (bank)
+		{
+			long now = environment.nanoTime();
+
+			for (int i = 0; i < pausedCount; i++)
+			{
+				resumeUnlessGroupPaused(pausedStreams[i], now);
+			}
+
+			pausedCount = 0;
+
+			for (int i = 0; i < musicStreams.size(); i++)
+			{
+				musicStreams.get(i).unsuspend();
+			}
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Attempts to load the sound file with the given name by first checking
+	 * for a resource with the matching name in res/raw, and if it is not found
+	 * there then it is looked up in the assets/sounds folder. If the sound has
+	 * already been loaded (by this or any other SoundPlayer), it is not loaded
+	 * again.
+	 * <p>
+	 * The sound is decoded in the background. Use
+	 * {@link SoundHandle#getLoadState()} to check whether it is ready, or
+	 * {@link SoundHandle#getLoad()} to wait for it.
+	 * </p>
+	 * 
+	 * @param name the name of the sound file, without the file extension
+	 * @return a handle that can be used to play the sound without looking it
+	 *     up by name
+	 * 
+	 * @throws IllegalArgumentException if a sound with the given name cannot
+	 *     be located
+	 */
+	public SoundHandle loadSound(String name)
+	{
+		synchronized (bank)
+		{
+			return bank.loadSound(name);
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Loads the sound file with the given name, as {@link #loadSound(String)}
+	 * does, and sets the priority it is played with by default.
+	 * 
+	 * @param name the name of the sound file, without the file extension
+	 * @param priority the default priority of the sound; higher numbers are
+	 *     more important, and 0 is the lowest
+	 * @return a handle that can be used to play the sound without looking it
+	 *     up by name
+	 * 
+	 * @throws IllegalArgumentException if a sound with the given name cannot
+	 *     be located, or priority is negative
+	 */
+	public SoundHandle loadSound(String name, int priority)
+	{
+		synchronized (bank)
+		{
+			checkPriority(priority);
+
+			SoundHandle sound = bank.loadSound(name);
+			sound.priority = priority;
+			return sound;
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Gets the priority that the sound with the specified name is played
+	 * with when no priority is given.
+	 * 
+	 * @param name the name of the sound
+	 * @return the default priority of the sound
+	 */
+	public int getPriority(String name)
+	{
+		synchronized (bank)
+		{
+			SoundHandle sound = bank.find(name);
+			return (sound != null) ? sound.priority : SoundHandle.DEFAULT_PRIORITY;
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Gets the priority that a sound is played with when no priority is
+	 * given.
+	 * 
+	 * @param sound the handle of the sound
+	 * @return the default priority of the sound
+	 */
+	public int getPriority(SoundHandle sound)
+	{
+		synchronized (bank)
+		{
+			checkOwner(sound);
+			return sound.priority;
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Sets the priority that the sound with the specified name is played
+	 * with when no priority is given. When every voice is busy, a sound only
+	 * replaces sounds whose priority is not higher than its own, so giving
+	 * important sounds (such as interface clicks) a higher priority than
+	 * background effects keeps them from being dropped. Every sound starts
+	 * with a priority of 1. The priority is shared by every SoundPlayer in
+	 * the application, and does not affect streams that are already playing.
+	 * 
+	 * @param name the name of the sound
+	 * @param priority the default priority; higher numbers are more
+	 *     important, and 0 is the lowest
+	 * 
+	 * @throws IllegalArgumentException if priority is negative
+	 */
+	public void setPriority(String name, int priority)
+	{
+		synchronized (bank)
+		{
+			checkPriority(priority);
+			bank.handleFor(name).priority = priority;
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Sets the priority that a sound is played with when no priority is
+	 * given. See {@link #setPriority(String, int)}.
+	 * 
+	 * @param sound the handle of the sound
+	 * @param priority the default priority; higher numbers are more
+	 *     important, and 0 is the lowest
+	 * 
+	 * @throws IllegalArgumentException if priority is negative
+	 */
+	public void setPriority(SoundHandle sound, int priority)
+	{
+		synchronized (bank)
+		{
+			checkOwner(sound);
+			checkPriority(priority);
+			sound.priority = priority;
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Limits how many instances of a sound can play at the same time in
+	 * each player, which keeps a sound that is triggered very often (such
+	 * as a footstep or a bullet hit) from using up every voice. When the
+	 * limit is reached, the policy decides whether the oldest instance is
+	 * stopped or the new one is dropped. Like priorities, limits are shared
+	 * by every SoundPlayer in the application.
+	 * 
+	 * @param name the name of the sound
+	 * @param maxInstances the maximum number of instances, or 0 for no limit
+	 * @param policy what to do with a play beyond the limit
+	 * 
+	 * @throws IllegalArgumentException if maxInstances is negative or
+	 *     policy is null
+	 */
+	public void setInstanceLimit(String name, int maxInstances,
+			InstanceLimitPolicy policy)
+	{
+		synchronized (bank)
+		{
+			checkInstanceLimit(maxInstances, policy);
+
+			SoundHandle sound = bank.handleFor(name);
+			sound.maxInstances = maxInstances;
+			sound.instancePolicy = policy;
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Limits how many instances of a sound can play at the same time in
+	 * each player. See
+	 * {@link #setInstanceLimit(String, int, InstanceLimitPolicy)}.
+	 * 
+	 * @param sound the handle of the sound
+	 * @param maxInstances the maximum number of instances, or 0 for no limit
+	 * @param policy what to do with a play beyond the limit
+	 * 
+	 * @throws IllegalArgumentException if maxInstances is negative or
+	 *     policy is null
+	 */
+	public void setInstanceLimit(SoundHandle sound, int maxInstances,
+			InstanceLimitPolicy policy)
+	{
+		synchronized (bank)
+		{
+			checkOwner(sound);
+			checkInstanceLimit(maxInstances, policy);
+
+			sound.maxInstances = maxInstances;
+			sound.instancePolicy = policy;
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Sets the shortest time allowed between two plays of a sound in each
+	 * player. A play that comes sooner after the previous one is dropped
+	 * without loading or playing anything, so calling {@code play} for the
+	 * same sound every frame costs almost nothing. Dropped plays are counted
+	 * by {@link VoiceStats#getThrottled()}.
+	 * 
+	 * @param name the name of the sound
+	 * @param millis the retrigger interval, in milliseconds, or 0 to allow
+	 *     plays at any rate
+	 * 
+	 * @throws IllegalArgumentException if millis is negative
+	 */
+	public void setRetriggerInterval(String name, int millis)
+	{
+		synchronized (bank)
+		{
+			checkRetriggerInterval(millis);
+			bank.handleFor(name).retriggerMillis = millis;
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Sets the shortest time allowed between two plays of a sound in each
+	 * player. See {@link #setRetriggerInterval(String, int)}.
+	 * 
+	 * @param sound the handle of the sound
+	 * @param millis the retrigger interval, in milliseconds, or 0 to allow
+	 *     plays at any rate
+	 * 
+	 * @throws IllegalArgumentException if millis is negative
+	 */
+	public void setRetriggerInterval(SoundHandle sound, int millis)
+	{
+		synchronized (bank)
+		{
+			checkOwner(sound);
+			checkRetriggerInterval(millis);
+			sound.retriggerMillis = millis;
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Loads the sound file with the given name, as {@link #loadSound(String)}
+	 * does, and puts it in a group. See {@link #setGroup(String, String)}.
+	 * 
+	 * @param name the name of the sound file, without the file extension
+	 * @param group the name of the group
+	 * @return a handle that can be used to play the sound without looking it
+	 *     up by name
+	 * 
+	 * @throws IllegalArgumentException if a sound with the given name cannot
+	 *     be located, or there are already 32 groups
+	 */
+	public SoundHandle loadSound(String name, String group)
+	{
+		synchronized (bank)
+		{
+			int groupId = bank.groupId(group);
+
+			SoundHandle sound = bank.loadSound(name);
+			sound.group = groupId;
+			return sound;
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Puts a sound in a group, such as "music", "effects", or "ui", so that
+	 * its streams can be paused, stopped, or made quieter together with the
+	 * other sounds in the group by {@link #pauseGroup(String)},
+	 * {@link #stopGroup(String)}, and
+	 * {@link #setGroupVolume(String, float)}. Sounds are in
+	 * {@link #DEFAULT_GROUP} until they are put in another group. Streams
+	 * that are already playing stay in the group they were started in. Like
+	 * priorities, groups are shared by every SoundPlayer in the application.
+	 * 
+	 * @param name the name of the sound
+	 * @param group the name of the group
+	 * 
+	 * @throws IllegalArgumentException if there are already 32 groups
+	 */
+	public void setGroup(String name, String group)
+	{
+		synchronized (bank)
+		{
+			bank.handleFor(name).group = bank.groupId(group);
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Puts a sound in a group. See {@link #setGroup(String, String)}.
+	 * 
+	 * @param sound the handle of the sound
+	 * @param group the name of the group
+	 * 
+	 * @throws IllegalArgumentException if there are already 32 groups
+	 */
+	public void setGroup(SoundHandle sound, String group)
+	{
+		synchronized (bank)
+		{
+			checkOwner(sound);
+			sound.group = bank.groupId(group);
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Gets the group that a sound is in.
+	 * 
+	 * @param sound the handle of the sound
+	 * @return the name of the group
+	 */
+	public String getGroup(SoundHandle sound)
+	{
+		synchronized (bank)
+		{
+			checkOwner(sound);
+			return bank.groupName(sound.group);
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Pauses every sound in a group that this player is playing. Sounds
+	 * played in the group while it is paused start paused. Call
+	 * {@link #resumeGroup(String)} to start them all again.
+	 * 
+	 * @param group the name of the group
+	 */
+	public void pauseGroup(String group)
+	{
+		synchronized (bank)
+		{
+			int groupId = bank.findGroup(group);
+
+			if (groupId != -1)
+			{
+				pausedGroups[groupId] = true;
+
+				long now = environment.nanoTime();
+				int count = voices.copyGroupStreams(groupId, streamScratch);
+				for (int i = 0; i < count; i++)
+				{
+					voices.pause(streamScratch[i], now);
+					backend.pause(streamScratch[i]);
+				}
+			}
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Resumes every sound in a group that this player is playing.
+	 * 
+	 * @param group the name of the group
+	 */
+	public void resumeGroup(String group)
+	{
+		synchronized (bank)
+		{
+			int groupId = bank.findGroup(group);
+
+			if (groupId != -1)
+			{
+				pausedGroups[groupId] = false;
+
+				long now = environment.nanoTime();
+				int count = voices.copyGroupStreams(groupId, streamScratch);
+				for (int i = 0; i < count; i++)
+				{
+					voices.resume(streamScratch[i], now);
+					backend.resume(streamScratch[i]);
+				}
+			}
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Stops every sound in a group that this player is playing, and cancels
+	 * the plays in the group that are waiting for their sounds to load.
+	 * 
+	 * @param group the name of the group
+	 */
+	public void stopGroup(String group)
+	{
+		synchronized (bank)
+		{
+			int groupId = bank.findGroup(group);
+
+			if (groupId == -1)
+			{
+				return;
+			}
+
+			for (int i = pendingPlaybacks.size() - 1; i >= 0; i--)
+			{
+				ArrayList<Playback> pending = pendingPlaybacks.valueAt(i);
+
+				if (!pending.isEmpty()
+						&& pending.get(0).getSound().group == groupId)
+				{
+					cancelAllPending(pendingPlaybacks.keyAt(i));
+				}
+			}
+
+			int count = voices.copyGroupStreams(groupId, streamScratch);
+			for (int i = 0; i < count; i++)
+			{
+				voices.remove(streamScratch[i]);
+				backend.stop(streamScratch[i]);
+			}
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Sets the volume of a group in this player. The volume of each sound
+	 * in the group is multiplied by it, so 1 (the default) leaves them as
+	 * they are and 0 silences them. Sounds that are playing change right
+	 * away, and sounds played in the group later use the new volume too.
+	 * 
+	 * @param group the name of the group
+	 * @param volume the volume of the group, from 0 (silent) to 1 (loudest)
+	 * 
+	 * @throws IllegalArgumentException if the volume is out of range, or
+	 *     there are already 32 groups
+	 */
+	public void setGroupVolume(String group, float volume)
+	{
+		synchronized (bank)
+		{
+			checkParameters(volume, DEFAULT_PAN, DEFAULT_RATE);
+
+			int groupId = bank.groupId(group);
+			groupVolumes[groupId] = volume;
+
+			int count = voices.copyGroupStreams(groupId, streamScratch);
+			for (int i = 0; i < count; i++)
+			{
+				int streamId = streamScratch[i];
+				float gain = voices.volumeOf(streamId) * volume;
+				float pan = voices.panOf(streamId);
+
+				backend.setVolume(streamId,
+						ParameterRamps.leftGain(gain, pan),
+						ParameterRamps.rightGain(gain, pan));
+			}
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Gets the volume of a group in this player.
+	 * 
+	 * @param group the name of the group
+	 * @return the volume of the group, from 0 to 1
+	 */
+	public float getGroupVolume(String group)
+	{
+		synchronized (bank)
+		{
+			int groupId = bank.findGroup(group);
+			return (groupId != -1) ? groupVolumes[groupId] : 1.0f;
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Gets a snapshot of this player's voices: how many are in use, and how
+	 * often sounds have been stopped early or dropped because every voice
+	 * was busy.
+	 * 
+	 * @return a snapshot of the voices
+	 */
+	public VoiceStats getVoiceStats()
+	{
+		synchronized (bank)
+		{
+			expireVoices();
+			return new VoiceStats(voices.size(), voices.capacity(), steals,
+					rejections, throttled);
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Gets the number of times that the sound with the specified name was
+	 * stopped by this player to make room for another sound.
+	 * 
+	 * @param name the name of the sound
+	 * @return the number of times the sound was stolen
+	 */
+	public int getStealCount(String name)
+	{
+		synchronized (bank)
+		{
+			SoundHandle sound = bank.find(name);
+			return (sound != null) ? getStealCount(sound) : 0;
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Gets the number of times that a sound was stopped by this player to
+	 * make room for another sound. The count starts again from zero if the
+	 * sound is unloaded and loaded again.
+	 * 
+	 * @param sound the handle of the sound
+	 * @return the number of times the sound was stolen
+	 */
+	public int getStealCount(SoundHandle sound)
+	{
+		synchronized (bank)
+		{
+			checkOwner(sound);
+			return (sound.soundId != 0) ? stealsBySound.get(sound.soundId) : 0;
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Gets a snapshot of the native resources held by the sounds that every
+	 * SoundPlayer in the application shares: the sound files that are open,
+	 * and an estimate of the memory used by the decoded sounds. This is
+	 * intended for tracking down leaks and memory problems. Sounds that are
+	 * not in the manifest are only measured while the cache has a
+	 * {@link #setCacheBudget(long) budget}, so an unbounded cache leaves
+	 * them out of the estimate.
+	 * 
+	 * @return a snapshot of the shared resource use
+	 */
+	public ResourceStats getResourceStats()
+	{
+		synchronized (bank)
+		{
+			return bank.getResourceStats();
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Unloads the sound with the specified name, freeing the memory that its
+	 * decoded samples occupy. Any playing instances of the sound, in this or
+	 * any other SoundPlayer, are stopped first. If the sound is played again
+	 * later, it is loaded again.
+	 * 
+	 * @param name the name of the sound to unload
+	 */
+	public void unloadSound(String name)
+	{
+		synchronized (bank)
+		{
+			SoundHandle sound = bank.find(name);
+
+			if (sound != null)
+			{
+				bank.unloadSound(sound);
+			}
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Gets the maximum estimated size, in bytes, of the decoded sounds that
+	 * are kept loaded.
+	 * 
+	 * @return the cache budget, or {@link Long#MAX_VALUE} if the cache is
+	 *     unbounded
+	 */
+	public long getCacheBudget()
+	{
+		synchronized (bank)
+		{
+			return bank.getCacheBudget();
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Sets the maximum estimated size, in bytes, of the decoded sounds that
+	 * are kept loaded. The budget covers the sounds of every SoundPlayer in
+	 * the application. When loading a sound goes over this budget, other
+	 * sounds are unloaded according to the
+	 * {@link #setEvictionPolicy(EvictionPolicy) eviction policy} until the
+	 * cache is back within budget. Sounds that are pinned, playing, or
+	 * waiting to play are never unloaded, so the budget can be exceeded if
+	 * they alone are larger than it. By default the cache is unbounded.
+	 * 
+	 * @param bytes the cache budget, in bytes
+	 */
+	public void setCacheBudget(long bytes)
+	{
+		synchronized (bank)
+		{
+			if (bytes <= 0)
+			{
+				throw new IllegalArgumentException(
+						"The cache budget must be positive, but was " + bytes);
+			}
+
+			bank.setCacheBudget(bytes);
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Gets the policy used to choose which sound to unload when the cache
+	 * goes over its budget.
+	 * 
+	 * @return the eviction policy
+	 */
+	public EvictionPolicy getEvictionPolicy()
+	{
+		synchronized (bank)
+		{
+			return bank.getEvictionPolicy();
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Sets the policy used to choose which sound to unload when the cache
+	 * goes over its budget. The default is
+	 * {@link EvictionPolicy#LEAST_RECENTLY_USED}. This setting is shared by
+	 * every SoundPlayer in the application.
+	 * 
+	 * @param policy the eviction policy
+	 */
+	public void setEvictionPolicy(EvictionPolicy policy)
+	{
+		synchronized (bank)
+		{
+			if (policy == null)
+			{
+				throw new IllegalArgumentException("policy cannot be null");
+			}
+
+			bank.setEvictionPolicy(policy);
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Loads the sound with the specified name, if necessary, and keeps it
+	 * loaded regardless of the cache budget until {@link #unpin(String)} is
+	 * called. Use this for sounds that must always play without delay.
+	 * 
+	 * @param name the name of the sound to pin
+	 */
+	public void pin(String name)
+	{
+		synchronized (bank)
+		{
+			bank.setPinned(name, true);
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Allows a sound that was pinned with {@link #pin(String)} to be unloaded
+	 * again when the cache goes over its budget.
+	 * 
+	 * @param name the name of the sound to unpin
+	 */
+	public void unpin(String name)
+	{
+		synchronized (bank)
+		{
+			bank.setPinned(name, false);
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Gets a snapshot of the sound cache shared by every SoundPlayer in the
+	 * application: how often sounds were already loaded when they were
+	 * played, how many have been unloaded to stay within budget, and how much
+	 * memory the loaded sounds use.
+	 * 
+	 * @return a snapshot of the cache
+	 */
+	public CacheStats getCacheStats()
+	{
+		synchronized (bank)
+		{
+			return bank.getCacheStats();
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Loads the sounds with the specified names on a background thread, so
+	 * that they can be played later without waiting for them to load. Sounds
+	 * that have already been loaded are counted as finished right away.
+	 * 
+	 * @param names the names of the sounds to load
+	 * @return a {@link Preload} that reports progress and completion
+	 */
+	public Preload preload(Collection<String> names)
+	{
+		synchronized (bank)
+		{
+			return bank.preload(names);
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Loads every sound in res/raw and in the assets/sounds folder on a
+	 * background thread, so that they can be played later without waiting
+	 * for them to load.
+	 * 
+	 * @return a {@link Preload} that reports progress and completion
+	 */
+	public Preload preloadAll()
+	{
+		synchronized (bank)
+		{
+			return bank.preloadAll();
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Stops every sound this player is playing, cancels its queued and
+	 * scheduled plays, and gives up its share of the sound bank. A player
+	 * created for a screen does this when the screen is destroyed; a player
+	 * created for any other context must call this when it is no longer
+	 * needed, or the bank (and every sound loaded into it) is never freed.
+	 * Calling this more than once has no further effect, and the player
+	 * cannot be used afterwards.
+	 */
+	public void release()
+	{
+		synchronized (bank)
+		{
+			if (destroyed)
+			{
+				return;
+			}
+
+			destroyed = true;
+			bank.getScheduler().cancel(this, null);
+
+			for (int i = pendingPlaybacks.size() - 1; i >= 0; i--)
+			{
+				cancelAllPending(pendingPlaybacks.keyAt(i));
+			}
+
+			int count = voices.copyAllStreams(streamScratch);
+			for (int i = 0; i < count; i++)
+			{
+				backend.stop(streamScratch[i]);
+			}
+
+			environment.removeCallbacks(rampTick);
+			rampsScheduled = false;
+			ramps.clear();
+
+			voices.clear();
+			pausedCount = 0;
+
+			for (MusicStream stream : musicStreams.toArray(
+					new MusicStream[musicStreams.size()]))
+			{
+				stream.stop();
+			}
+
+			bank.detach(this);
+			bank.release();
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Runs a callback on the main thread.
+	 * 
+	 * @param callback the callback
+	 */
+	void post(Runnable callback)
+	{
+		environment.post(callback);
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Resumes a paused stream, unless its group is paused.
+	 * 
+	 * @param streamId the stream ID
+	 * @param now the current time, from the environment's clock
+	 */
+	private void resumeUnlessGroupPaused(int streamId, long now)
+	{
+		if (voices.isPaused(streamId)
+				&& !pausedGroups[voices.groupOf(streamId)])
+		{
+			voices.resume(streamId, now);
+			backend.resume(streamId);
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Helper method that starts a playback whose sound has finished loading.
+	 * 
+	 * @param playback the playback to start
+	 */
+	private void playHelper(Playback playback)
+	{
+		int streamId = startStream(playback.getSound(), playback.queuedNanos,
+				playback.startNanos, playback.getLoopCount(), playback.getPriority(),
+				playback.getVolume(), playback.getPan(), playback.getRate());
+
+		if (streamId == 0)
+		{
+			playback.failed();
+		}
+		else
+		{
+			playback.started(streamId);
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Starts a stream for a sound that has finished loading, stopping another
+	 * stream first if every stream is in use.
+	 * 
+	 * @param sound the handle of the sound
+	 * @param queuedNanos when the play was queued to wait for the sound to
+	 *     load, or 0 if it was not
+	 * @param startNanos when a play scheduled with {@code playAt} should
+	 *     start, or {@link #UNSCHEDULED} to start it right away
+	 * @param loopCount the number of times to repeat the sound
+	 * @param priority the priority of the stream
+	 * @param volume the volume of the stream
+	 * @param pan the pan of the stream
+	 * @param rate the playback rate of the stream
+	 * @return the stream ID, or 0 if no stream with a low enough priority
+	 *     could be stopped or the backend could not play the sound
+	 */
+	private int startStream(SoundHandle sound, long queuedNanos,
+			long startNanos, int loopCount, int priority, float volume,
+			float pan, float rate)
+	{
+		SoundMetrics metrics = SoundBank.metrics();
+		int soundId = sound.soundId;
+		int group = sound.group;
+		float gain = volume * groupVolumes[group];
+
+		// Streams that ended on their own must neither count against the
+		// instance limit nor block a new stream.
+		expireVoices();
+
+		if (sound.maxInstances != 0
+				&& voices.countStreams(soundId) >= sound.maxInstances)
+		{
+			if (sound.instancePolicy == InstanceLimitPolicy.IGNORE_NEW)
+			{
+				rejections++;
+				metrics.playFailed(sound.name);
+				return 0;
+			}
+
+			int oldest = voices.oldestStream(soundId);
+			stealsBySound.put(soundId, stealsBySound.get(soundId) + 1);
+			steals++;
+			metrics.voiceStolen(sound.name);
+
+			voices.remove(oldest);
+			backend.stop(oldest);
+		}
+
+		if (voices.isFull())
+		{
+			int victim = voices.chooseVictim(voiceAllocationPolicy, priority);
+
+			if (victim == 0)
+			{
+				rejections++;
+				metrics.playFailed(sound.name);
+				return 0;
+			}
+
+			int victimSound = voices.soundOf(victim);
+			stealsBySound.put(victimSound, stealsBySound.get(victimSound) + 1);
+			steals++;
+			metrics.voiceStolen(bank.handleOf(victimSound).name);
+
+			voices.remove(victim);
+			backend.stop(victim);
+		}
+
+		float left = ParameterRamps.leftGain(gain, pan);
+		float right = ParameterRamps.rightGain(gain, pan);
+		long now = environment.nanoTime();
+		long playNanos = now;
+		int streamId;
+
+		if (startNanos != UNSCHEDULED
+				&& backend instanceof ScheduledAudioBackend)
+		{
+			playNanos = Math.max(now, startNanos);
+			streamId = ((ScheduledAudioBackend) backend).playAt(soundId,
+					left, right, priority, loopCount, rate, startNanos);
+		}
+		else
+		{
+			streamId = backend.play(soundId, left, right, priority,
+					loopCount, rate);
+		}
+
+		if (streamId != 0)
+		{
+			long duration = backend.getDurationNanos(soundId);
+			if (duration == 0)
+			{
+				duration = sound.durationNanos;
+			}
+
+			// Until the bank has measured the sound, which can wait behind
+			// a long preload, assume the longest the file could last rather
+			// than keeping the voice forever.
+			if (duration == 0)
+			{
+				duration = DecodedSizeEstimator.maxDurationNanos(
+						sound.fileBytes);
+			}
+
+			voices.add(streamId, soundId, priority, volume, pan, rate, group,
+					VoiceTable.endTime(playNanos, duration, loopCount, rate));
+
+			if (pausedGroups[group])
+			{
+				voices.pause(streamId, now);
+				backend.pause(streamId);
+			}
+
+			recordPlayed(sound);
+
+			metrics.playStarted(sound.name,
+					(queuedNanos != 0) ? environment.nanoTime() - queuedNanos : 0,
+					voices.size());
+		}
+		else
+		{
+			// The backend's own streams, which every player shares, were all
+			// busy with sounds of higher priority.
+			rejections++;
+			metrics.playFailed(sound.name);
+		}
+
+		return streamId;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Opens a sound for streaming and starts tracking the new stream. The
+	 * caller must hold the bank's lock.
+	 *
+	 * @param name the name of the sound
+	 * @param looping true if the stream should loop
+	 * @return the new music stream
+	 *
+	 * @throws IllegalArgumentException if the sound could not be opened
+	 */
+	private MusicStream openStream(String name, boolean looping)
+	{
+		DescriptorTracker.Descriptor fd = bank.openForStreaming(name);
+
+		try
+		{
+			MusicStream stream = new MusicStream(
+					this, name, fd, looping, DEFAULT_VOLUME);
+			musicStreams.add(stream);
+			return stream;
+		}
+		catch (IOException e)
+		{
+			throw new IllegalArgumentException(
+					"Could not stream the audio file named \"" + name + "\"",
+					e);
+		}
+		finally
+		{
+			fd.close();
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Called by a music stream when it finishes or is stopped, so that the
+	 * player stops tracking it.
+	 *
+	 * @param stream the stream
+	 */
+	void streamStopped(MusicStream stream)
+	{
+		synchronized (bank)
+		{
+			musicStreams.remove(stream);
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Queues a playback until its sound finishes loading.
+	 * 
+	 * @param playback the playback to queue
+	 */
+	private void enqueue(Playback playback)
+	{
+		int soundId = playback.getSound().soundId;
+		playback.queuedNanos = environment.nanoTime();
+
+		ArrayList<Playback> pending = pendingPlaybacks.get(soundId);
+		if (pending == null)
+		{
+			pending = new ArrayList<Playback>();
+			pendingPlaybacks.put(soundId, pending);
+		}
+
+		pending.add(playback);
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Removes a cancelled playback from the queue of requests waiting for its
+	 * sound to load, or from the plays waiting for their scheduled time.
+	 * 
+	 * @param playback the playback that was cancelled
+	 */
+	void cancelPending(Playback playback)
+	{
+		synchronized (bank)
+		{
+			bank.getScheduler().remove(playback);
+
+			ArrayList<Playback> pending =
+					pendingPlaybacks.get(playback.getSound().soundId);
+
+			if (pending != null)
+			{
+				pending.remove(playback);
+			}
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Cancels every request that is waiting for the specified sound to load.
+	 * 
+	 * @param soundId the sound pool ID of the sound
+	 */
+	private void cancelAllPending(int soundId)
+	{
+		ArrayList<Playback> pending = pendingPlaybacks.get(soundId);
+
+		if (pending != null)
+		{
+			pendingPlaybacks.remove(soundId);
+
+			for (Playback playback : pending)
+			{
+				playback.cancel();
+			}
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Called by the sound bank when a sound finishes loading, to start (or
+	 * fail) the plays that were queued while it loaded.
+	 * 
+	 * @param sound the handle of the sound
+	 * @param succeeded true if the sound was decoded successfully
+	 */
+	void soundLoaded(SoundHandle sound, boolean succeeded)
+	{
+		int soundId = sound.soundId;
+
+		ArrayList<Playback> pending = pendingPlaybacks.get(soundId);
+		if (pending == null)
+		{
+			return;
+		}
+
+		pendingPlaybacks.remove(soundId);
+
+		for (Playback playback : pending)
+		{
+			if (succeeded)
+			{
+				playHelper(playback);
+			}
+			else
+			{
+				SoundBank.metrics().playFailed(sound.name);
+				playback.failed();
+			}
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Called on the bank's command thread, with the bank's lock held, when a
+	 * play scheduled with {@code playAt} is due. The play starts if its sound
+	 * is ready, and otherwise waits for the sound to finish loading.
+	 * 
+	 * @param playback the play
+	 */
+	void startScheduled(Playback playback)
+	{
+		if (destroyed || !playback.isPending())
+		{
+			return;
+		}
+
+		SoundHandle sound = playback.getSound();
+
+		if (isThrottled(sound))
+		{
+			playback.failed();
+			return;
+		}
+
+		// The sound may have been evicted while the play was waiting.
+		bank.prepare(sound);
+
+		if (sound.state == LoadState.READY)
+		{
+			playHelper(playback);
+		}
+		else if (sound.state == LoadState.FAILED)
+		{
+			SoundBank.metrics().playFailed(sound.name);
+			playback.failed();
+		}
+		else
+		{
+			enqueue(playback);
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Called by the sound bank to find out whether this player is playing a
+	 * sound or waiting to play it, in which case it must not be unloaded.
+	 * Streams that have ended on their own do not count.
+	 * 
+	 * @param soundId the sound pool ID of the sound
+	 * @return true if the sound is in use
+	 */
+	boolean isUsing(int soundId)
+	{
+		ArrayList<Playback> pending = pendingPlaybacks.get(soundId);
+		expireVoices();
+
+		return voices.newestStream(soundId) != 0
+				|| (pending != null && !pending.isEmpty());
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Carries out a request that was queued through {@link SoundCommands}.
+	 * Called on the bank's command thread with the bank's lock held.
+	 * Requests that arrive after the player is released are ignored.
+	 * 
+	 * @param command the request
+	 */
+	void execute(CommandQueue.Command command)
+	{
+		if (destroyed)
+		{
+			return;
+		}
+
+		switch (command.opcode)
+		{
+			case CommandQueue.PLAY:
+				int priority = (command.priority == SOUND_PRIORITY)
+						? command.sound.priority : command.priority;
+				playHandle(command.sound, command.loopCount, priority,
+						command.volume, command.pan, command.rate);
+				break;
+
+			case CommandQueue.STOP:
+				stop(command.sound);
+				break;
+
+			case CommandQueue.STOP_ALL:
+				stopAll(command.sound);
+				break;
+
+			case CommandQueue.PAUSE:
+				pause(command.sound);
+				break;
+
+			case CommandQueue.RESUME:
+				resume(command.sound);
+				break;
+
+			case CommandQueue.SET_VOLUME:
+				setVolume(command.streamId, command.volume,
+						command.rampMillis);
+				break;
+
+			case CommandQueue.SET_RATE:
+				setRate(command.streamId, command.rate, command.rampMillis);
+				break;
+
+			default:
+				break;
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Checks a play against the sound's retrigger interval. The time of the
+	 * play is only recorded once its stream has started, by
+	 * {@link #recordPlayed(SoundHandle)}, so plays that fail do not hold
+	 * off the next one.
+	 * 
+	 * @param sound the handle of the sound
+	 * @return true if the play came too soon after the previous one and
+	 *     must be dropped
+	 */
+	private boolean isThrottled(SoundHandle sound)
+	{
+		int interval = sound.retriggerMillis;
+		int index = sound.index;
+
+		if (interval == 0 || index >= lastPlayed.length)
+		{
+			return false;
+		}
+
+		if (environment.nanoTime() - lastPlayed[index]
+				< interval * 1000000L)
+		{
+			throttled++;
+			return true;
+		}
+
+		return false;
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Records when a sound with a retrigger interval started playing.
+	 * 
+	 * @param sound the handle of the sound
+	 */
+	private void recordPlayed(SoundHandle sound)
+	{
+		if (sound.retriggerMillis == 0)
+		{
+			return;
+		}
+
+		int index = sound.index;
+		if (index >= lastPlayed.length)
+		{
+			long[] grown = new long[Math.max(index + 1, lastPlayed.length * 2)];
+			System.arraycopy(lastPlayed, 0, grown, 0, lastPlayed.length);
+			Arrays.fill(grown, lastPlayed.length, grown.length, NEVER_PLAYED);
+			lastPlayed = grown;
+		}
+
+		lastPlayed[index] = environment.nanoTime();
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Frees the voices whose streams have ended on their own, so that they
+	 * are neither counted nor chosen as the stream to act on.
+	 */
+	private void expireVoices()
+	{
+		voices.expire(environment.nanoTime());
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Makes sure that the ramps are advanced on the next frame.
+	 */
+	private void scheduleRamps()
+	{
+		if (!rampsScheduled)
+		{
+			rampsScheduled = true;
+			environment.post(rampTick);
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Makes sure that a volume, pan, and rate are in range.
+	 * 
+	 * @param volume the volume
+	 * @param pan the pan
+	 * @param rate the playback rate
+	 */
+	static void checkParameters(float volume, float pan, float rate)
+	{
+		if (!(volume >= 0 && volume <= 1))
+		{
+			throw new IllegalArgumentException(
+					"volume must be between 0 and 1, but was " + volume);
+		}
+
+		if (!(pan >= -1 && pan <= 1))
+		{
+			throw new IllegalArgumentException(
+					"pan must be between -1 and 1, but was " + pan);
+		}
+
+		if (!(rate >= MIN_RATE && rate <= MAX_RATE))
+		{
+			throw new IllegalArgumentException("rate must be between "
+					+ MIN_RATE + " and " + MAX_RATE + ", but was " + rate);
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Makes sure that the length of a ramp is valid.
+	 * 
+	 * @param rampMillis the length of the ramp, in milliseconds
+	 */
+	static void checkRamp(int rampMillis)
+	{
+		if (rampMillis < 0)
+		{
+			throw new IllegalArgumentException(
+					"rampMillis cannot be negative, but was " + rampMillis);
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Makes sure that a priority is valid.
+	 * 
+	 * @param priority the priority
+	 */
+	static void checkPriority(int priority)
+	{
+		if (priority < 0)
+		{
+			throw new IllegalArgumentException(
+					"priority cannot be negative, but was " + priority);
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Makes sure that an instance limit and its policy are valid.
+	 * 
+	 * @param maxInstances the maximum number of instances, or 0 for no limit
+	 * @param policy what to do with a play beyond the limit
+	 */
+	private static void checkInstanceLimit(
+			int maxInstances, InstanceLimitPolicy policy)
+	{
+		if (maxInstances < 0)
+		{
+			throw new IllegalArgumentException(
+					"maxInstances cannot be negative, but was " + maxInstances);
+		}
+
+		if (policy == null)
+		{
+			throw new IllegalArgumentException("policy cannot be null");
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Makes sure that a retrigger interval is valid.
+	 * 
+	 * @param millis the retrigger interval, in milliseconds, or 0 to allow
+	 *     plays at any rate
+	 */
+	private static void checkRetriggerInterval(int millis)
+	{
+		if (millis < 0)
+		{
+			throw new IllegalArgumentException(
+					"millis cannot be negative, but was " + millis);
+		}
+	}
+
+
+    // ----------------------------------------------------------
+	/**
+	 * Makes sure that a handle belongs to the sound bank this player uses.
+	 * 
+	 * @param sound the handle of the sound
+	 */
+	void checkOwner(SoundHandle sound)
+	{
+		if (sound.bank != bank)
+		{
+			throw new IllegalArgumentException(
+					sound + " was loaded before every SoundPlayer was "
+					+ "destroyed, and can no longer be used.");
+		}
+	}
+	
+	
 	//~ Inner classes .........................................................
 
+	// ----------------------------------------------------------
+	/**
+	 * Advances the volume and rate ramps, and runs again a frame later while
+	 * any are still in progress.
+	 */
+	private final Runnable rampTick = new Runnable()
+	{
+		// ----------------------------------------------------------
+		@Override
+		public void run()
+		{
+			synchronized (bank)
+			{
+				if (ramps.tick(environment.nanoTime()))
+				{
+					environment.postDelayed(this, RAMP_FRAME_MILLIS);
+				}
+				else
+				{
+					rampsScheduled = false;
+				}
+			}
+		}
+	};
+
+
 	// ----------------------------------------------------------
 	/**
 	 * This object is injected into the owning screen's lifecycle so that
@@ -384,7 +2817,7 @@ public class SoundPlayer
 		@Override
 		public void destroy()
 		{
-			soundPool.release();
+			release();
 		}
 	};
 }
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.media.AudioManager;
+import android.media.SoundPool;
+
+//-------------------------------------------------------------------------
+/**
+ * The default {@link AudioBackend}, which plays sounds through an Android
+ * {@link SoundPool}. Load-complete notifications are delivered on the thread
+ * that created the backend, if it has a looper, or else on the main thread.
+ *
+ * @author Tony Allevato
+ */
+class SoundPoolBackend implements AudioBackend
+{
+	//~ Fields ................................................................
+
+	/**
+	 * Creates the default backend.
+	 */
+	static final Factory FACTORY = new Factory()
+	{
+		// ----------------------------------------------------------
+		@Override
+		public AudioBackend create(Context context, int maxStreams)
+		{
+			return new SoundPoolBackend(maxStreams);
+		}
+	};
+
+	private final SoundPool soundPool;
+	private LoadListener loadListener;
+
+
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a new backend.
+	 *
+	 * @param maxStreams the maximum number of streams
+	 */
+	SoundPoolBackend(int maxStreams)
+	{
+		soundPool = new SoundPool(maxStreams, AudioManager.STREAM_MUSIC, 0);
+		soundPool.setOnLoadCompleteListener(
+				new SoundPool.OnLoadCompleteListener()
+		{
+			// ----------------------------------------------------------
+			@Override
+			public void onLoadComplete(SoundPool pool, int soundId, int status)
+			{
+				LoadListener listener = loadListener;
+
+				if (listener != null)
+				{
+					listener.loadComplete(soundId, status == 0);
+				}
+			}
+		});
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	@Override
+	public int load(AssetFileDescriptor fd, int priority)
+	{
+		return soundPool.load(fd, priority);
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public void unload(int soundId)
+	{
+		soundPool.unload(soundId);
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public int play(int soundId, float leftVolume, float rightVolume,
+			int priority, int loopCount, float rate)
+	{
+		return soundPool.play(soundId, leftVolume, rightVolume, priority,
+				loopCount, rate);
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public long getDurationNanos(int soundId)
+	{
+		// The sound pool does not say how long its sounds are.
+		return 0;
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public void stop(int streamId)
+	{
+		soundPool.stop(streamId);
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public void pause(int streamId)
+	{
+		soundPool.pause(streamId);
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public void resume(int streamId)
+	{
+		soundPool.resume(streamId);
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public void setVolume(int streamId, float leftVolume, float rightVolume)
+	{
+		soundPool.setVolume(streamId, leftVolume, rightVolume);
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public void setRate(int streamId, float rate)
+	{
+		soundPool.setRate(streamId, rate);
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public void setLoadListener(LoadListener listener)
+	{
+		loadListener = listener;
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public void release()
+	{
+		soundPool.release();
+	}
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+//-------------------------------------------------------------------------
+/**
+ * Determines which currently playing sound a {@link SoundPlayer} stops in
+ * order to make room for a new one when all of its streams are in use.
+ *
+ * @author Tony Allevato
+ */
+public enum VoiceAllocationPolicy
+{
+	/**
+	 * Stops the sound that started playing the longest time ago.
+	 */
+	OLDEST_FIRST,
+
+	/**
+	 * Stops the sound with the lowest priority. If several sounds share the
+	 * lowest priority, the oldest of them is stopped.
+	 */
+	LOWEST_PRIORITY_FIRST,
+
+	/**
+	 * Stops the sound with the lowest volume. If several sounds share the
+	 * lowest volume, the oldest of them is stopped.
+	 */
+	QUIETEST_FIRST
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+//-------------------------------------------------------------------------
+/**
+ * A snapshot of the voices of one {@link SoundPlayer}, returned by
+ * {@link SoundPlayer#getVoiceStats()}. A steal is a playing sound that was
+ * stopped to make room for a new one; a rejection is a new sound that was
+ * not played because every voice was busy with a sound of higher priority,
+ * or because too many instances of it were playing; a throttled play is one
+ * that came too soon after the previous play of the same sound.
+ *
+ * @author Tony Allevato
+ */
+public class VoiceStats
+{
+	//~ Fields ................................................................
+
+	private final int activeVoices;
+	private final int maxVoices;
+	private final long steals;
+	private final long rejections;
+	private final long throttled;
+
+
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a new snapshot. Only {@link SoundPlayer} creates these.
+	 *
+	 * @param activeVoices the number of voices in use
+	 * @param maxVoices the maximum number of voices
+	 * @param steals the number of sounds stopped to make room for others
+	 * @param rejections the number of sounds that could not get a voice
+	 * @param throttled the number of plays dropped by a retrigger interval
+	 */
+	VoiceStats(int activeVoices, int maxVoices, long steals, long rejections,
+			long throttled)
+	{
+		this.activeVoices = activeVoices;
+		this.maxVoices = maxVoices;
+		this.steals = steals;
+		this.rejections = rejections;
+		this.throttled = throttled;
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of voices that were in use when the snapshot was
+	 * taken. Sounds that have finished on their own may still be counted
+	 * until their voice is reused.
+	 *
+	 * @return the number of active voices
+	 */
+	public int getActiveVoices()
+	{
+		return activeVoices;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the maximum number of voices the player can use.
+	 *
+	 * @return the maximum number of voices
+	 */
+	public int getMaxVoices()
+	{
+		return maxVoices;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of playing sounds that were stopped to make room for
+	 * a new sound.
+	 *
+	 * @return the number of steals
+	 */
+	public long getSteals()
+	{
+		return steals;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of sounds that were not played because every voice
+	 * was playing a sound of higher priority, or because the sound's
+	 * instance limit was reached.
+	 *
+	 * @return the number of rejections
+	 */
+	public long getRejections()
+	{
+		return rejections;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of plays that were dropped because they came sooner
+	 * after the previous play of the same sound than its retrigger interval
+	 * allows.
+	 *
+	 * @return the number of throttled plays
+	 */
+	public long getThrottled()
+	{
+		return throttled;
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	public String toString()
+	{
+		return "VoiceStats[activeVoices=" + activeVoices + ", maxVoices="
+				+ maxVoices + ", steals=" + steals + ", rejections="
+				+ rejections + ", throttled=" + throttled + "]";
+	}
+}
@@ -0,0 +1,684 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import android.util.SparseIntArray;
+
+//-------------------------------------------------------------------------
+/**
+ * Keeps track of the streams that a {@link SoundPlayer} has started, so that
+ * it can choose which one to stop when all of the sound pool's streams are
+ * in use, and so that every instance of a sound can be reached when the same
+ * sound is playing more than once.
+ * <p>
+ * Voices are stored in parallel primitive arrays sized to the maximum number
+ * of streams. The voices that belong to the same sound are linked into a
+ * ring through those arrays, so adding and removing a voice takes constant
+ * time and never allocates.
+ * </p><p>
+ * The sound pool does not report when a stream finishes on its own, so each
+ * voice records when it will end, worked out from the sound's duration when
+ * it starts, and {@link #expire(long)} frees the voices whose time has
+ * passed. Looping voices, and voices of sounds whose duration is unknown,
+ * stay in the table until they are stopped or stolen. Stopping a stream
+ * that has already finished is harmless.
+ * </p>
+ *
+ * @author Tony Allevato
+ */
+class VoiceTable
+{
+	//~ Fields ................................................................
+
+	/**
+	 * The end time of a voice that does not end on its own.
+	 */
+	static final long FOREVER = Long.MAX_VALUE;
+
+	private static final int NONE = -1;
+
+	private final int[] streamIds;
+	private final int[] soundIds;
+	private final int[] priorities;
+	private final float[] volumes;
+	private final float[] pans;
+	private final float[] rates;
+	private final int[] groups;
+	private final long[] ages;
+
+	// When each voice ends on its own, in the time base of the player's
+	// clock, or FOREVER. While a voice is paused, it holds the time it has left.
+	private final long[] endTimes;
+	private final boolean[] paused;
+
+	// The ring of voices playing the same sound, and the free list.
+	private final int[] next;
+	private final int[] previous;
+	private int firstFree;
+
+	// Maps a sound pool ID to the oldest slot playing it, and a stream ID to
+	// its slot.
+	private final SparseIntArray soundHeads;
+	private final SparseIntArray streamSlots;
+
+	private int size;
+	private long nextAge;
+
+
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a new, empty voice table.
+	 *
+	 * @param capacity the maximum number of voices
+	 */
+	VoiceTable(int capacity)
+	{
+		streamIds = new int[capacity];
+		soundIds = new int[capacity];
+		priorities = new int[capacity];
+		volumes = new float[capacity];
+		pans = new float[capacity];
+		rates = new float[capacity];
+		groups = new int[capacity];
+		ages = new long[capacity];
+		endTimes = new long[capacity];
+		paused = new boolean[capacity];
+		next = new int[capacity];
+		previous = new int[capacity];
+		soundHeads = new SparseIntArray(capacity);
+		streamSlots = new SparseIntArray(capacity);
+
+		clear();
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the maximum number of voices in the table.
+	 *
+	 * @return the capacity of the table
+	 */
+	int capacity()
+	{
+		return streamIds.length;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of voices in the table.
+	 *
+	 * @return the number of voices
+	 */
+	int size()
+	{
+		return size;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets a value indicating whether every voice is in use.
+	 *
+	 * @return true if the table is full
+	 */
+	boolean isFull()
+	{
+		return size == streamIds.length;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Adds a voice to the table. The table must not be full.
+	 *
+	 * @param streamId the sound pool stream ID
+	 * @param soundId the sound pool ID of the sound being played
+	 * @param priority the priority the stream was started with
+	 * @param volume the volume the stream was started with
+	 * @param pan the pan the stream was started with
+	 * @param rate the playback rate the stream was started with
+	 * @param group the ID of the group the sound belonged to when the
+	 *     stream was started
+	 * @param endNanos when the stream ends on its own, from
+	 *     {@link #endTime(long, long, int, float)}
+	 */
+	void add(int streamId, int soundId, int priority, float volume,
+			float pan, float rate, int group, long endNanos)
+	{
+		int slot = firstFree;
+		firstFree = next[slot];
+		size++;
+
+		streamIds[slot] = streamId;
+		soundIds[slot] = soundId;
+		priorities[slot] = priority;
+		volumes[slot] = volume;
+		pans[slot] = pan;
+		rates[slot] = rate;
+		groups[slot] = group;
+		ages[slot] = nextAge++;
+		endTimes[slot] = endNanos;
+		paused[slot] = false;
+
+		int head = soundHeads.get(soundId, NONE);
+		if (head == NONE)
+		{
+			next[slot] = slot;
+			previous[slot] = slot;
+			soundHeads.put(soundId, slot);
+		}
+		else
+		{
+			int tail = previous[head];
+			next[tail] = slot;
+			previous[slot] = tail;
+			next[slot] = head;
+			previous[head] = slot;
+		}
+
+		streamSlots.put(streamId, slot);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Removes the voice with the specified stream ID, if it is in the table.
+	 *
+	 * @param streamId the sound pool stream ID
+	 * @return true if the voice was removed
+	 */
+	boolean remove(int streamId)
+	{
+		int slot = streamSlots.get(streamId, NONE);
+
+		if (slot == NONE)
+		{
+			return false;
+		}
+
+		streamSlots.delete(streamId);
+
+		int soundId = soundIds[slot];
+		if (next[slot] == slot)
+		{
+			soundHeads.delete(soundId);
+		}
+		else
+		{
+			next[previous[slot]] = next[slot];
+			previous[next[slot]] = previous[slot];
+
+			if (soundHeads.get(soundId) == slot)
+			{
+				soundHeads.put(soundId, next[slot]);
+			}
+		}
+
+		streamIds[slot] = 0;
+		next[slot] = firstFree;
+		firstFree = slot;
+		size--;
+
+		return true;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the stream ID of the most recently started voice that is playing
+	 * the specified sound.
+	 *
+	 * @param soundId the sound pool ID of the sound
+	 * @return the stream ID, or 0 if the sound has no voices
+	 */
+	int newestStream(int soundId)
+	{
+		int head = soundHeads.get(soundId, NONE);
+		return (head == NONE) ? 0 : streamIds[previous[head]];
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the stream ID of the oldest voice that is playing the specified
+	 * sound.
+	 *
+	 * @param soundId the sound pool ID of the sound
+	 * @return the stream ID, or 0 if the sound has no voices
+	 */
+	int oldestStream(int soundId)
+	{
+		int head = soundHeads.get(soundId, NONE);
+		return (head == NONE) ? 0 : streamIds[head];
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Counts the voices that are playing the specified sound. Call
+	 * {@link #expire(long)} first to leave out the voices that have ended.
+	 *
+	 * @param soundId the sound pool ID of the sound
+	 * @return the number of voices
+	 */
+	int countStreams(int soundId)
+	{
+		int head = soundHeads.get(soundId, NONE);
+		if (head == NONE)
+		{
+			return 0;
+		}
+
+		int count = 0;
+		int slot = head;
+
+		do
+		{
+			count++;
+			slot = next[slot];
+		}
+		while (slot != head);
+
+		return count;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the sound that a voice is playing.
+	 *
+	 * @param streamId the stream ID of the voice
+	 * @return the sound pool ID of the sound, or 0 if the stream is not in
+	 *     the table
+	 */
+	int soundOf(int streamId)
+	{
+		int slot = streamSlots.get(streamId, NONE);
+		return (slot == NONE) ? 0 : soundIds[slot];
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the current volume of a voice.
+	 *
+	 * @param streamId the stream ID of the voice, which must be in the table
+	 * @return the volume
+	 */
+	float volumeOf(int streamId)
+	{
+		return volumes[streamSlots.get(streamId)];
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the pan of a voice.
+	 *
+	 * @param streamId the stream ID of the voice, which must be in the table
+	 * @return the pan, from -1 (left) to 1 (right)
+	 */
+	float panOf(int streamId)
+	{
+		return pans[streamSlots.get(streamId)];
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the current playback rate of a voice.
+	 *
+	 * @param streamId the stream ID of the voice, which must be in the table
+	 * @return the playback rate
+	 */
+	float rateOf(int streamId)
+	{
+		return rates[streamSlots.get(streamId)];
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the group of a voice.
+	 *
+	 * @param streamId the stream ID of the voice, which must be in the table
+	 * @return the ID of the group
+	 */
+	int groupOf(int streamId)
+	{
+		return groups[streamSlots.get(streamId)];
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets whether a voice is paused.
+	 *
+	 * @param streamId the stream ID of the voice
+	 * @return true if the voice is in the table and paused
+	 */
+	boolean isPaused(int streamId)
+	{
+		int slot = streamSlots.get(streamId, NONE);
+		return slot != NONE && paused[slot];
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Records a change to the volume of a voice.
+	 *
+	 * @param streamId the stream ID of the voice, which must be in the table
+	 * @param volume the new volume
+	 */
+	void setVolume(int streamId, float volume)
+	{
+		volumes[streamSlots.get(streamId)] = volume;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Records a change to the playback rate of a voice, which also changes
+	 * how soon it ends.
+	 *
+	 * @param streamId the stream ID of the voice, which must be in the table
+	 * @param rate the new playback rate
+	 * @param now the current time, from the player's {@link SoundClock}
+	 */
+	void setRate(int streamId, float rate, long now)
+	{
+		int slot = streamSlots.get(streamId);
+
+		if (endTimes[slot] != FOREVER)
+		{
+			long left = paused[slot] ? endTimes[slot] : endTimes[slot] - now;
+			left = Math.max(0, (long) ((double) left * rates[slot] / rate));
+			endTimes[slot] = paused[slot] ? left : now + left;
+		}
+
+		rates[slot] = rate;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Records that a voice was paused, so that it does not expire while it
+	 * is not playing. Does nothing if the voice is not in the table or is
+	 * already paused.
+	 *
+	 * @param streamId the stream ID of the voice
+	 * @param now the current time, from the player's {@link SoundClock}
+	 */
+	void pause(int streamId, long now)
+	{
+		int slot = streamSlots.get(streamId, NONE);
+
+		if (slot != NONE && !paused[slot])
+		{
+			paused[slot] = true;
+
+			if (endTimes[slot] != FOREVER)
+			{
+				endTimes[slot] = Math.max(0, endTimes[slot] - now);
+			}
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Records that a paused voice was resumed. Does nothing if the voice is
+	 * not in the table or is not paused.
+	 *
+	 * @param streamId the stream ID of the voice
+	 * @param now the current time, from the player's {@link SoundClock}
+	 */
+	void resume(int streamId, long now)
+	{
+		int slot = streamSlots.get(streamId, NONE);
+
+		if (slot != NONE && paused[slot])
+		{
+			paused[slot] = false;
+
+			if (endTimes[slot] != FOREVER)
+			{
+				endTimes[slot] += now;
+			}
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Removes the voices whose streams have ended on their own by the
+	 * specified time.
+	 *
+	 * @param now the current time, from the player's {@link SoundClock}
+	 */
+	void expire(long now)
+	{
+		for (int slot = 0; slot < streamIds.length; slot++)
+		{
+			if (streamIds[slot] != 0 && !paused[slot]
+					&& endTimes[slot] != FOREVER && now - endTimes[slot] >= 0)
+			{
+				remove(streamIds[slot]);
+			}
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Copies the stream IDs of every voice playing the specified sound into
+	 * an array, oldest first. Copying lets the caller stop or remove those
+	 * voices while it walks the array.
+	 *
+	 * @param soundId the sound pool ID of the sound
+	 * @param destination the array that receives the stream IDs; it must be
+	 *     at least as long as the capacity of the table
+	 * @return the number of stream IDs copied
+	 */
+	int copyStreams(int soundId, int[] destination)
+	{
+		int head = soundHeads.get(soundId, NONE);
+		if (head == NONE)
+		{
+			return 0;
+		}
+
+		int count = 0;
+		int slot = head;
+
+		do
+		{
+			destination[count++] = streamIds[slot];
+			slot = next[slot];
+		}
+		while (slot != head);
+
+		return count;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Copies the stream IDs of every voice in the table into an array.
+	 *
+	 * @param destination the array that receives the stream IDs; it must be
+	 *     at least as long as the capacity of the table
+	 * @return the number of stream IDs copied
+	 */
+	int copyAllStreams(int[] destination)
+	{
+		int count = 0;
+
+		for (int slot = 0; slot < streamIds.length; slot++)
+		{
+			if (streamIds[slot] != 0)
+			{
+				destination[count++] = streamIds[slot];
+			}
+		}
+
+		return count;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Copies the stream IDs of every voice in a group into an array, in one
+	 * pass over the table.
+	 *
+	 * @param group the ID of the group
+	 * @param destination the array that receives the stream IDs; it must be
+	 *     at least as long as the capacity of the table
+	 * @return the number of stream IDs copied
+	 */
+	int copyGroupStreams(int group, int[] destination)
+	{
+		int count = 0;
+
+		for (int slot = 0; slot < streamIds.length; slot++)
+		{
+			if (streamIds[slot] != 0 && groups[slot] == group)
+			{
+				destination[count++] = streamIds[slot];
+			}
+		}
+
+		return count;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Chooses the voice that should be stopped to make room for a new one.
+	 * Voices with a higher priority than the new one are never chosen,
+	 * whatever the policy.
+	 *
+	 * @param policy the policy used to choose the voice
+	 * @param maxPriority the priority of the new voice
+	 * @return the stream ID of the chosen voice, or 0 if no voice has a low
+	 *     enough priority
+	 */
+	int chooseVictim(VoiceAllocationPolicy policy, int maxPriority)
+	{
+		int victim = NONE;
+
+		for (int slot = 0; slot < streamIds.length; slot++)
+		{
+			if (streamIds[slot] != 0 && priorities[slot] <= maxPriority
+					&& (victim == NONE
+						|| isBetterVictim(policy, slot, victim)))
+			{
+				victim = slot;
+			}
+		}
+
+		return (victim == NONE) ? 0 : streamIds[victim];
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Removes every voice from the table.
+	 */
+	void clear()
+	{
+		for (int slot = 0; slot < streamIds.length; slot++)
+		{
+			streamIds[slot] = 0;
+			next[slot] = slot + 1;
+		}
+
+		if (streamIds.length > 0)
+		{
+			next[streamIds.length - 1] = NONE;
+		}
+
+		firstFree = 0;
+		size = 0;
+		soundHeads.clear();
+		streamSlots.clear();
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Works out when a stream ends on its own.
+	 *
+	 * @param startNanos when the stream starts, from the player's
+	 *     {@link SoundClock}
+	 * @param durationNanos how long one play of the sound lasts at its
+	 *     normal rate, {@link #FOREVER} if it never ends, or 0 if that is
+	 *     not known
+	 * @param loopCount the number of times the sound is repeated, or -1 to
+	 *     repeat it forever
+	 * @param rate the playback rate
+	 * @return the end time, or {@link #FOREVER} if the stream does not end
+	 *     on its own or its length is not known
+	 */
+	static long endTime(long startNanos, long durationNanos, int loopCount,
+			float rate)
+	{
+		if (loopCount < 0 || durationNanos <= 0 || durationNanos == FOREVER)
+		{
+			return FOREVER;
+		}
+
+		// Anything close to the range of a long lasts longer than the
+		// device will be on.
+		double nanos = (double) durationNanos * (loopCount + 1) / rate;
+		return (nanos >= FOREVER / 2) ? FOREVER : startNanos + (long) nanos;
+	}
+
+
+	// ----------------------------------------------------------
+	private boolean isBetterVictim(
+			VoiceAllocationPolicy policy, int slot, int victim)
+	{
+		switch (policy)
+		{
+			case LOWEST_PRIORITY_FIRST:
+				if (priorities[slot] != priorities[victim])
+				{
+					return priorities[slot] < priorities[victim];
+				}
+				break;
+
+			case QUIETEST_FIRST:
+				if (volumes[slot] != volumes[victim])
+				{
+					return volumes[slot] < volumes[victim];
+				}
+				break;
+
+			default:
+				break;
+		}
+
+		return ages[slot] < ages[victim];
+	}
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import android.content.Context;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+//-------------------------------------------------------------------------
+/**
+ * Tests for {@link CommandQueue}, on its own and through the
+ * {@link SoundCommands} of a player that runs in a
+ * {@link SimulatedSoundEnvironment}.
+ *
+ * @author Tony Allevato
+ */
+public class CommandQueueTest extends TestCase
+{
+	//~ Fields ................................................................
+
+	private static final long TIMEOUT_SECONDS = 5;
+
+	private static final Executor DIRECT = new Executor()
+	{
+		// ----------------------------------------------------------
+		@Override
+		public void execute(Runnable command)
+		{
+			command.run();
+		}
+	};
+
+	private SimulatedSoundEnvironment environment;
+	private CountingBackend backend;
+	private SoundPlayer player;
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		environment = new SimulatedSoundEnvironment();
+		environment.addSound("blip", 4096, 0);
+
+		SoundPlayer.setBackendFactory(new AudioBackend.Factory()
+		{
+			// ----------------------------------------------------------
+			@Override
+			public AudioBackend create(Context context, int maxStreams)
+			{
+				backend = new CountingBackend(maxStreams, environment);
+				return backend;
+			}
+		});
+
+		player = new SoundPlayer(environment, 4);
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	protected void tearDown() throws Exception
+	{
+		player.release();
+		SoundPlayer.setBackendFactory(null);
+		super.tearDown();
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Checks that a capacity that is not a power of two is rejected.
+	 */
+	public void testCapacityMustBePowerOfTwo()
+	{
+		try
+		{
+			new CommandQueue(
+					3, new Object(), new PlaybackScheduler(), environment);
+			fail("a capacity of 3 should be rejected");
+		}
+		catch (IllegalArgumentException e)
+		{
+			// expected
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Checks that no command can be claimed once every slot is taken, or
+	 * once the queue is closed.
+	 */
+	public void testClaimFailsWhenFullOrClosed()
+	{
+		CommandQueue queue = new CommandQueue(
+				2, new Object(), new PlaybackScheduler(), environment);
+
+		try
+		{
+			assertNotNull(queue.claim());
+			assertNotNull(queue.claim());
+			assertNull("a full queue should refuse a command", queue.claim());
+		}
+		finally
+		{
+			queue.close();
+		}
+
+		assertNull("a closed queue should refuse a command", queue.claim());
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Checks that commands submitted through the player's SoundCommands are
+	 * carried out on the command thread, in the order they were submitted.
+	 */
+	public void testCommandsRunInOrder()
+		throws Exception
+	{
+		SoundHandle blip = player.loadSound("blip");
+		blip.getLoad().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+		CountDownLatch played = backend.expectPlays(2);
+		SoundCommands commands = player.getCommands();
+
+		assertTrue(commands.play(blip));
+		assertTrue(commands.play(blip));
+		assertTrue(played.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		assertEquals(2, player.getVoiceStats().getActiveVoices());
+
+		played = backend.expectPlays(1);
+		CountDownLatch stopped = backend.expectStops(2);
+
+		assertTrue(commands.stopAll(blip));
+		assertTrue(commands.play(blip));
+		assertTrue(stopped.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		assertTrue(played.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+		synchronized (backend)
+		{
+			assertEquals("the play after stopAll should still be playing",
+					1, backend.getActiveStreamCount());
+		}
+	}
+
+
+	//~ Inner classes .........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * A simulated backend that counts down latches as streams are played
+	 * and stopped, so that the test can wait for the command thread.
+	 */
+	private static class CountingBackend extends SimulatedAudioBackend
+	{
+		private CountDownLatch plays = new CountDownLatch(0);
+		private CountDownLatch stops = new CountDownLatch(0);
+
+
+		// ----------------------------------------------------------
+		CountingBackend(int maxStreams, SoundClock clock)
+		{
+			super(maxStreams, 0, DIRECT, clock);
+		}
+
+
+		// ----------------------------------------------------------
+		synchronized CountDownLatch expectPlays(int count)
+		{
+			plays = new CountDownLatch(count);
+			return plays;
+		}
+
+
+		// ----------------------------------------------------------
+		synchronized CountDownLatch expectStops(int count)
+		{
+			stops = new CountDownLatch(count);
+			return stops;
+		}
+
+
+		// ----------------------------------------------------------
+		@Override
+		public synchronized int play(int soundId, float leftVolume,
+				float rightVolume, int priority, int loopCount, float rate)
+		{
+			int streamId = super.play(soundId, leftVolume, rightVolume,
+					priority, loopCount, rate);
+			plays.countDown();
+			return streamId;
+		}
+
+
+		// ----------------------------------------------------------
+		@Override
+		public synchronized void stop(int streamId)
+		{
+			super.stop(streamId);
+			stops.countDown();
+		}
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import android.content.Context;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+//-------------------------------------------------------------------------
+/**
+ * Checks that a sound's instance limit only counts the instances that are
+ * still playing, using a {@link SimulatedAudioBackend} whose streams end on
+ * their own, timed by the clock of a {@link SimulatedSoundEnvironment} so
+ * that the test decides exactly when they have finished.
+ *
+ * @author Tony Allevato
+ */
+public class InstanceLimitTest extends TestCase
+{
+	//~ Fields ................................................................
+
+	private static final int MAX_INSTANCES = 2;
+	private static final long SOUND_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+	private static final Executor DIRECT = new Executor()
+	{
+		// ----------------------------------------------------------
+		@Override
+		public void execute(Runnable command)
+		{
+			command.run();
+		}
+	};
+
+	private SimulatedSoundEnvironment environment;
+	private SoundPlayer player;
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		environment = new SimulatedSoundEnvironment();
+		environment.addSound("blip", 4096, SOUND_NANOS);
+
+		SoundPlayer.setBackendFactory(new AudioBackend.Factory()
+		{
+			// ----------------------------------------------------------
+			@Override
+			public AudioBackend create(Context context, int maxStreams)
+			{
+				SimulatedAudioBackend backend = new SimulatedAudioBackend(
+						maxStreams, 0, DIRECT, environment);
+				backend.setSoundDuration(SOUND_NANOS);
+				return backend;
+			}
+		});
+
+		player = new SoundPlayer(environment, MAX_INSTANCES + 2);
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	protected void tearDown() throws Exception
+	{
+		player.release();
+		SoundPlayer.setBackendFactory(null);
+		super.tearDown();
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Plays a one-shot sound as many times as its limit allows, lets those
+	 * plays finish, and checks that the next play still starts.
+	 */
+	public void testFinishedInstancesDoNotCountAgainstLimit()
+		throws Exception
+	{
+		SoundHandle blip = player.loadSound("blip");
+		blip.getLoad().get(1, TimeUnit.SECONDS);
+		assertEquals(LoadState.READY, blip.getLoadState());
+
+		player.setInstanceLimit(blip, MAX_INSTANCES,
+				InstanceLimitPolicy.IGNORE_NEW);
+
+		for (int i = 0; i < MAX_INSTANCES; i++)
+		{
+			assertTrue("play " + (i + 1) + " should start",
+					player.play(blip) != 0);
+		}
+
+		assertEquals("a play beyond the limit should be dropped",
+				0, player.play(blip));
+
+		environment.advance(SOUND_NANOS - 1);
+		assertEquals("a play should still be dropped while the others last",
+				0, player.play(blip));
+
+		environment.advance(1);
+
+		assertTrue("a play after the others finished should start",
+				player.play(blip) != 0);
+		assertEquals(1, player.getVoiceStats().getActiveVoices());
+	}
+}
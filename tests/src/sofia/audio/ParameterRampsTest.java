@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import java.util.concurrent.Executor;
+
+import junit.framework.TestCase;
+
+//-------------------------------------------------------------------------
+/**
+ * Tests for {@link ParameterRamps}.
+ *
+ * @author Tony Allevato
+ */
+public class ParameterRampsTest extends TestCase
+{
+	//~ Fields ................................................................
+
+	private static final int STREAM = 11;
+	private static final int SOUND = 3;
+	private static final long MILLIS = 1000000L;
+
+	private static final Executor DIRECT = new Executor()
+	{
+		// ----------------------------------------------------------
+		@Override
+		public void execute(Runnable command)
+		{
+			command.run();
+		}
+	};
+
+	private VoiceTable voices;
+	private RecordingBackend backend;
+	private float[] groupVolumes;
+	private ParameterRamps ramps;
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		voices = new VoiceTable(4);
+		backend = new RecordingBackend();
+		groupVolumes = new float[] { 1.0f, 1.0f };
+		ramps = new ParameterRamps(voices, backend, groupVolumes);
+
+		voices.add(STREAM, SOUND, 0, 1.0f, 0.0f, 1.0f, 0, 100 * MILLIS);
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	protected void tearDown() throws Exception
+	{
+		backend.release();
+		super.tearDown();
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Checks that a change with no ramp time is sent on the next tick, and
+	 * that the ramp is then finished.
+	 */
+	public void testImmediateChange()
+	{
+		ramps.rampVolume(STREAM, 0.25f, 0, 0);
+		assertEquals("nothing is sent until the next tick",
+				0, backend.volumeUpdates);
+
+		assertFalse(ramps.tick(0));
+		assertEquals(1, backend.volumeUpdates);
+		assertEquals(0.25f, backend.left, 0.0001f);
+		assertEquals(0.25f, backend.right, 0.0001f);
+		assertEquals(0.25f, voices.volumeOf(STREAM), 0.0001f);
+
+		assertFalse(ramps.tick(1));
+		assertEquals(1, backend.volumeUpdates);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Checks that a ramp moves linearly from the current volume to the
+	 * target over its length, and stops there.
+	 */
+	public void testVolumeRamp()
+	{
+		ramps.rampVolume(STREAM, 0.0f, 0, 100);
+
+		assertTrue(ramps.tick(50 * MILLIS));
+		assertEquals(0.5f, voices.volumeOf(STREAM), 0.0001f);
+
+		assertTrue(ramps.tick(75 * MILLIS));
+		assertEquals(0.25f, voices.volumeOf(STREAM), 0.0001f);
+
+		assertFalse(ramps.tick(100 * MILLIS));
+		assertEquals(0.0f, voices.volumeOf(STREAM), 0.0001f);
+		assertEquals(3, backend.volumeUpdates);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Checks that several changes between two ticks are sent as one update,
+	 * with the last target winning.
+	 */
+	public void testChangesAreCoalesced()
+	{
+		ramps.rampVolume(STREAM, 0.2f, 0, 0);
+		ramps.rampVolume(STREAM, 0.4f, 0, 0);
+		ramps.rampVolume(STREAM, 0.6f, 0, 0);
+
+		ramps.tick(0);
+
+		assertEquals(1, backend.volumeUpdates);
+		assertEquals(0.6f, voices.volumeOf(STREAM), 0.0001f);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Checks that the pan and the group volume are applied to the gains sent
+	 * to the backend, but not to the volume kept for the voice.
+	 */
+	public void testPanAndGroupVolume()
+	{
+		voices.remove(STREAM);
+		voices.add(STREAM, SOUND, 0, 1.0f, 0.5f, 1.0f, 1, VoiceTable.FOREVER);
+		groupVolumes[1] = 0.5f;
+
+		ramps.rampVolume(STREAM, 0.8f, 0, 0);
+		ramps.tick(0);
+
+		assertEquals(0.8f, voices.volumeOf(STREAM), 0.0001f);
+		assertEquals(0.2f, backend.left, 0.0001f);
+		assertEquals(0.4f, backend.right, 0.0001f);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Checks that changing the rate is sent to the backend and moves the
+	 * time at which the voice ends.
+	 */
+	public void testRateChangesEndTime()
+	{
+		ramps.rampRate(STREAM, 2.0f, 0, 0);
+		ramps.tick(0);
+
+		assertEquals(1, backend.rateUpdates);
+		assertEquals(2.0f, backend.rate, 0.0001f);
+		assertEquals(2.0f, voices.rateOf(STREAM), 0.0001f);
+
+		voices.expire(50 * MILLIS - 1);
+		assertEquals(SOUND, voices.soundOf(STREAM));
+
+		voices.expire(50 * MILLIS);
+		assertEquals(0, voices.soundOf(STREAM));
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Checks that the ramp of a stream that has stopped is dropped without
+	 * sending anything.
+	 */
+	public void testStoppedStreamIsDropped()
+	{
+		ramps.rampVolume(STREAM, 0.0f, 0, 100);
+		voices.remove(STREAM);
+
+		assertFalse(ramps.tick(50 * MILLIS));
+		assertEquals(0, backend.volumeUpdates);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Checks the channel gains for centered and panned sounds.
+	 */
+	public void testGains()
+	{
+		assertEquals(0.8f, ParameterRamps.leftGain(0.8f, 0.0f), 0.0001f);
+		assertEquals(0.8f, ParameterRamps.rightGain(0.8f, 0.0f), 0.0001f);
+		assertEquals(0.0f, ParameterRamps.leftGain(0.8f, 1.0f), 0.0001f);
+		assertEquals(0.8f, ParameterRamps.rightGain(0.8f, 1.0f), 0.0001f);
+		assertEquals(0.8f, ParameterRamps.leftGain(0.8f, -0.5f), 0.0001f);
+		assertEquals(0.4f, ParameterRamps.rightGain(0.8f, -0.5f), 0.0001f);
+	}
+
+
+	//~ Inner classes .........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * A simulated backend that remembers the updates it was sent.
+	 */
+	private static class RecordingBackend extends SimulatedAudioBackend
+	{
+		int volumeUpdates;
+		int rateUpdates;
+		float left;
+		float right;
+		float rate;
+
+
+		// ----------------------------------------------------------
+		RecordingBackend()
+		{
+			super(4, 0, DIRECT);
+		}
+
+
+		// ----------------------------------------------------------
+		@Override
+		public void setVolume(int streamId, float leftVolume,
+				float rightVolume)
+		{
+			volumeUpdates++;
+			left = leftVolume;
+			right = rightVolume;
+		}
+
+
+		// ----------------------------------------------------------
+		@Override
+		public void setRate(int streamId, float newRate)
+		{
+			rateUpdates++;
+			rate = newRate;
+		}
+	}
+}
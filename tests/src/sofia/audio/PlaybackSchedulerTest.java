@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import android.content.Context;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+//-------------------------------------------------------------------------
+/**
+ * Tests for {@link PlaybackScheduler}, using plays of sounds loaded into a
+ * player that runs in a {@link SimulatedSoundEnvironment}.
+ *
+ * @author Tony Allevato
+ */
+public class PlaybackSchedulerTest extends TestCase
+{
+	//~ Fields ................................................................
+
+	private static final Executor DIRECT = new Executor()
+	{
+		// ----------------------------------------------------------
+		@Override
+		public void execute(Runnable command)
+		{
+			command.run();
+		}
+	};
+
+	private SoundPlayer player;
+	private SoundHandle blip;
+	private SoundHandle boom;
+	private PlaybackScheduler scheduler;
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		final SimulatedSoundEnvironment environment =
+			new SimulatedSoundEnvironment();
+		environment.addSound("blip", 4096, 0);
+		environment.addSound("boom", 4096, 0);
+
+		SoundPlayer.setBackendFactory(new AudioBackend.Factory()
+		{
+			// ----------------------------------------------------------
+			@Override
+			public AudioBackend create(Context context, int maxStreams)
+			{
+				return new SimulatedAudioBackend(
+						maxStreams, 0, DIRECT, environment);
+			}
+		});
+
+		player = new SoundPlayer(environment, 4);
+		blip = player.loadSound("blip");
+		boom = player.loadSound("boom");
+		blip.getLoad().get(1, TimeUnit.SECONDS);
+		boom.getLoad().get(1, TimeUnit.SECONDS);
+
+		scheduler = new PlaybackScheduler();
+	}
+
+
+	// ----------------------------------------------------------
+	@Override
+	protected void tearDown() throws Exception
+	{
+		player.release();
+		SoundPlayer.setBackendFactory(null);
+		super.tearDown();
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Checks that plays come off the heap in the order they are due, and
+	 * only once they are due, whatever order they were added in.
+	 */
+	public void testPollInDueOrder()
+	{
+		long[] times = { 50, 10, 40, 30, 20, 60, 5 };
+		Playback[] plays = new Playback[times.length];
+
+		for (int i = 0; i < times.length; i++)
+		{
+			plays[i] = playbackAt(blip, times[i]);
+			scheduler.add(plays[i]);
+		}
+
+		assertNull(scheduler.poll(4));
+		assertEquals(1, scheduler.nanosUntilNext(4));
+		assertEquals(5, scheduler.nanosUntilNext(0));
+
+		long last = Long.MIN_VALUE;
+
+		for (int i = 0; i < times.length; i++)
+		{
+			Playback playback = scheduler.poll(100);
+			assertNotNull(playback);
+			assertTrue(playback.dispatchNanos >= last);
+			last = playback.dispatchNanos;
+		}
+
+		assertNull(scheduler.poll(100));
+		assertEquals(Long.MAX_VALUE, scheduler.nanosUntilNext(100));
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Checks that add reports when a play becomes the first one due, which
+	 * is when the command thread has to be woken.
+	 */
+	public void testAddReportsNewFirst()
+	{
+		assertTrue(scheduler.add(playbackAt(blip, 100)));
+		assertFalse(scheduler.add(playbackAt(blip, 200)));
+		assertTrue(scheduler.add(playbackAt(blip, 50)));
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Checks that a removed play never comes off the heap, and that removing
+	 * it twice is harmless.
+	 */
+	public void testRemove()
+	{
+		Playback early = playbackAt(blip, 10);
+		Playback middle = playbackAt(blip, 20);
+		Playback late = playbackAt(blip, 30);
+		scheduler.add(late);
+		scheduler.add(early);
+		scheduler.add(middle);
+
+		scheduler.remove(early);
+		scheduler.remove(early);
+
+		assertSame(middle, scheduler.poll(100));
+		assertSame(late, scheduler.poll(100));
+		assertNull(scheduler.poll(100));
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Checks that cancelling one sound's plays leaves the other sound's
+	 * plays scheduled, and cancels the plays that were removed.
+	 */
+	public void testCancelOneSound()
+	{
+		Playback blipPlay = playbackAt(blip, 10);
+		Playback boomPlay = playbackAt(boom, 20);
+		scheduler.add(blipPlay);
+		scheduler.add(boomPlay);
+
+		assertTrue(scheduler.isScheduled(blip.soundId));
+		assertTrue(scheduler.isScheduled(boom.soundId));
+
+		scheduler.cancel(player, blip);
+
+		assertTrue(blipPlay.isCancelled());
+		assertFalse(boomPlay.isCancelled());
+		assertFalse(scheduler.isScheduled(blip.soundId));
+		assertSame(boomPlay, scheduler.poll(100));
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Checks that the heap grows past its initial size.
+	 */
+	public void testManyPlays()
+	{
+		for (int i = 100; i > 0; i--)
+		{
+			scheduler.add(playbackAt(blip, i));
+		}
+
+		for (int i = 1; i <= 100; i++)
+		{
+			assertEquals(i, scheduler.poll(i).dispatchNanos);
+		}
+
+		assertNull(scheduler.poll(Long.MAX_VALUE));
+	}
+
+
+	// ----------------------------------------------------------
+	private Playback playbackAt(SoundHandle sound, long dispatchNanos)
+	{
+		Playback playback =
+			new Playback(player, sound, 0, 0, 1.0f, 0.0f, 1.0f);
+		playback.dispatchNanos = dispatchNanos;
+		return playback;
+	}
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+//-------------------------------------------------------------------------
+/**
+ * Tests for {@link SoundCache}.
+ *
+ * @author Tony Allevato
+ */
+public class SoundCacheTest extends TestCase
+{
+	//~ Fields ................................................................
+
+	private Set<Integer> inUse;
+	private SoundCache cache;
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		inUse = new HashSet<Integer>();
+		cache = new SoundCache(new SoundCache.Owner()
+		{
+			// ----------------------------------------------------------
+			@Override
+			public boolean isInUse(int soundId)
+			{
+				return inUse.contains(soundId);
+			}
+		});
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Checks that the cached size follows sounds being added, measured and
+	 * removed.
+	 */
+	public void testCachedBytes()
+	{
+		cache.add(1, 100);
+		cache.add(2, 50);
+		assertEquals(150, cache.getCachedBytes());
+
+		cache.resize(2, 80);
+		assertEquals(180, cache.getCachedBytes());
+
+		cache.remove(1);
+		cache.remove(1);
+		assertEquals(80, cache.getCachedBytes());
+
+		cache.resize(1, 1000);
+		assertEquals("resizing a removed sound has no effect",
+				80, cache.getCachedBytes());
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Checks that the least recently used sound is evicted first, and that
+	 * a hit makes a sound the most recently used.
+	 */
+	public void testLeastRecentlyUsed()
+	{
+		cache.add(1, 10);
+		cache.add(2, 10);
+		cache.add(3, 10);
+
+		assertEquals(1, cache.evict(EvictionPolicy.LEAST_RECENTLY_USED, 0));
+
+		cache.hit(1);
+		assertEquals(2, cache.evict(EvictionPolicy.LEAST_RECENTLY_USED, 0));
+
+		cache.remove(2);
+		assertEquals(3, cache.evict(EvictionPolicy.LEAST_RECENTLY_USED, 0));
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Checks that the least frequently used sound is evicted first, with
+	 * ties going to the one used least recently.
+	 */
+	public void testLeastFrequentlyUsed()
+	{
+		cache.add(1, 10);
+		cache.add(2, 10);
+		cache.add(3, 10);
+
+		cache.hit(1);
+		cache.hit(1);
+		cache.hit(2);
+		cache.hit(3);
+
+		assertEquals(2,
+				cache.evict(EvictionPolicy.LEAST_FREQUENTLY_USED, 0));
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Checks that pinned sounds, sounds in use and the sound to keep are
+	 * never evicted.
+	 */
+	public void testProtectedSoundsAreNotEvicted()
+	{
+		cache.add(1, 10);
+		cache.add(2, 10);
+		cache.add(3, 10);
+
+		cache.setPinned(1, true);
+		inUse.add(2);
+
+		assertEquals(0, cache.evict(EvictionPolicy.LEAST_RECENTLY_USED, 3));
+
+		cache.setPinned(1, false);
+		assertEquals(1, cache.evict(EvictionPolicy.LEAST_RECENTLY_USED, 3));
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Checks the counters reported in the cache's statistics, and that
+	 * clearing the cache keeps them.
+	 */
+	public void testStats()
+	{
+		cache.add(1, 10);
+		cache.add(2, 20);
+		cache.miss();
+		cache.hit(1);
+		cache.hit(2);
+		cache.evict(EvictionPolicy.LEAST_RECENTLY_USED, 0);
+
+		CacheStats stats = cache.getStats(1000);
+		assertEquals(2, stats.getHits());
+		assertEquals(1, stats.getMisses());
+		assertEquals(1, stats.getEvictions());
+		assertEquals(30, stats.getCachedBytes());
+		assertEquals(1000, stats.getBudgetBytes());
+
+		cache.clear();
+
+		stats = cache.getStats(1000);
+		assertEquals(0, stats.getCachedBytes());
+		assertEquals(2, stats.getHits());
+		assertEquals(0, cache.evict(EvictionPolicy.LEAST_RECENTLY_USED, 0));
+	}
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2011 Virginia Tech Department of Computer Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sofia.audio;
+
+import junit.framework.TestCase;
+
+//-------------------------------------------------------------------------
+/**
+ * Tests for {@link VoiceTable}.
+ *
+ * @author Tony Allevato
+ */
+public class VoiceTableTest extends TestCase
+{
+	//~ Fields ................................................................
+
+	private static final int SOUND = 7;
+	private static final int OTHER_SOUND = 8;
+
+	private VoiceTable voices;
+	private int[] streams;
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		voices = new VoiceTable(4);
+		streams = new int[voices.capacity()];
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Checks that voices can be added until the table is full, and that a
+	 * removed voice frees its slot for the next one.
+	 */
+	public void testAddAndRemove()
+	{
+		for (int streamId = 1; streamId <= 4; streamId++)
+		{
+			assertFalse(voices.isFull());
+			add(streamId, SOUND, 0, 1.0f, VoiceTable.FOREVER);
+		}
+
+		assertTrue(voices.isFull());
+		assertEquals(4, voices.size());
+
+		assertTrue(voices.remove(2));
+		assertFalse("a stream is only removed once", voices.remove(2));
+		assertEquals(0, voices.soundOf(2));
+		assertFalse(voices.isFull());
+
+		add(5, OTHER_SOUND, 0, 1.0f, VoiceTable.FOREVER);
+		assertTrue(voices.isFull());
+		assertEquals(OTHER_SOUND, voices.soundOf(5));
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Checks that the voices of one sound are kept in the order they were
+	 * started, apart from those of other sounds.
+	 */
+	public void testStreamsOfOneSound()
+	{
+		add(1, SOUND, 0, 1.0f, VoiceTable.FOREVER);
+		add(2, OTHER_SOUND, 0, 1.0f, VoiceTable.FOREVER);
+		add(3, SOUND, 0, 1.0f, VoiceTable.FOREVER);
+		add(4, SOUND, 0, 1.0f, VoiceTable.FOREVER);
+
+		assertEquals(3, voices.countStreams(SOUND));
+		assertEquals(1, voices.oldestStream(SOUND));
+		assertEquals(4, voices.newestStream(SOUND));
+
+		voices.remove(1);
+		voices.remove(4);
+
+		assertEquals(1, voices.countStreams(SOUND));
+		assertEquals(3, voices.oldestStream(SOUND));
+		assertEquals(3, voices.newestStream(SOUND));
+		assertEquals(1, voices.copyStreams(SOUND, streams));
+		assertEquals(3, streams[0]);
+
+		voices.remove(3);
+		assertEquals(0, voices.countStreams(SOUND));
+		assertEquals(0, voices.newestStream(SOUND));
+		assertEquals(1, voices.countStreams(OTHER_SOUND));
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Checks that voices are removed once their end time has passed, and
+	 * that voices which never end are kept.
+	 */
+	public void testExpire()
+	{
+		add(1, SOUND, 0, 1.0f, 100);
+		add(2, SOUND, 0, 1.0f, 200);
+		add(3, SOUND, 0, 1.0f, VoiceTable.FOREVER);
+
+		voices.expire(99);
+		assertEquals(3, voices.size());
+
+		voices.expire(100);
+		assertEquals(0, voices.soundOf(1));
+		assertEquals(2, voices.size());
+
+		voices.expire(Long.MAX_VALUE - 1);
+		assertEquals(1, voices.size());
+		assertEquals(SOUND, voices.soundOf(3));
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Checks that a paused voice does not expire, and that it ends as much
+	 * later as it was paused for once it is resumed.
+	 */
+	public void testPauseHoldsEndTime()
+	{
+		add(1, SOUND, 0, 1.0f, 100);
+
+		voices.pause(1, 40);
+		assertTrue(voices.isPaused(1));
+
+		voices.expire(1000);
+		assertEquals("a paused voice must not expire", 1, voices.size());
+
+		voices.resume(1, 1000);
+		assertFalse(voices.isPaused(1));
+
+		voices.expire(1059);
+		assertEquals(1, voices.size());
+
+		voices.expire(1060);
+		assertEquals(0, voices.size());
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Checks that changing the rate of a voice scales the time it has left.
+	 */
+	public void testSetRateScalesTimeLeft()
+	{
+		add(1, SOUND, 0, 1.0f, 100);
+
+		voices.setRate(1, 2.0f, 20);
+		assertEquals(2.0f, voices.rateOf(1), 0.0001f);
+
+		voices.expire(59);
+		assertEquals(1, voices.size());
+
+		voices.expire(60);
+		assertEquals(0, voices.size());
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Checks the end times worked out for one-shot, looping and unmeasured
+	 * sounds.
+	 */
+	public void testEndTime()
+	{
+		assertEquals(1100, VoiceTable.endTime(1000, 100, 0, 1.0f));
+		assertEquals(1300, VoiceTable.endTime(1000, 100, 2, 1.0f));
+		assertEquals(1050, VoiceTable.endTime(1000, 100, 0, 2.0f));
+		assertEquals(VoiceTable.FOREVER,
+				VoiceTable.endTime(1000, 100, -1, 1.0f));
+		assertEquals(VoiceTable.FOREVER,
+				VoiceTable.endTime(1000, 0, 0, 1.0f));
+		assertEquals(VoiceTable.FOREVER,
+				VoiceTable.endTime(1000, VoiceTable.FOREVER, 0, 1.0f));
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Checks that each policy chooses the expected victim, and that voices
+	 * with a higher priority than the new one are never chosen.
+	 */
+	public void testChooseVictim()
+	{
+		add(1, SOUND, 5, 0.2f, VoiceTable.FOREVER);
+		add(2, SOUND, 1, 0.9f, VoiceTable.FOREVER);
+		add(3, SOUND, 3, 0.1f, VoiceTable.FOREVER);
+
+		assertEquals(1, voices.chooseVictim(
+				VoiceAllocationPolicy.OLDEST_FIRST, 5));
+		assertEquals(2, voices.chooseVictim(
+				VoiceAllocationPolicy.LOWEST_PRIORITY_FIRST, 5));
+		assertEquals(3, voices.chooseVictim(
+				VoiceAllocationPolicy.QUIETEST_FIRST, 5));
+
+		assertEquals(2, voices.chooseVictim(
+				VoiceAllocationPolicy.OLDEST_FIRST, 2));
+		assertEquals(0, voices.chooseVictim(
+				VoiceAllocationPolicy.OLDEST_FIRST, 0));
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Checks that clearing the table removes every voice and frees every
+	 * slot.
+	 */
+	public void testClear()
+	{
+		for (int streamId = 1; streamId <= 4; streamId++)
+		{
+			add(streamId, SOUND, 0, 1.0f, VoiceTable.FOREVER);
+		}
+
+		voices.clear();
+
+		assertEquals(0, voices.size());
+		assertEquals(0, voices.countStreams(SOUND));
+		assertEquals(0, voices.copyAllStreams(streams));
+
+		for (int streamId = 5; streamId <= 8; streamId++)
+		{
+			add(streamId, SOUND, 0, 1.0f, VoiceTable.FOREVER);
+		}
+
+		assertTrue(voices.isFull());
+	}
+
+
+	// ----------------------------------------------------------
+	private void add(int streamId, int soundId, int priority, float volume,
+			long endNanos)
+	{
+		voices.add(streamId, soundId, priority, volume, 0, 1.0f, 0, endNanos);
+	}
+}